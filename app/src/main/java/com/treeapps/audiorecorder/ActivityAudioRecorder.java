@@ -4,6 +4,7 @@ import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Fragment;
 import android.app.FragmentManager;
+import android.app.ProgressDialog;
 import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.DialogInterface;
@@ -13,9 +14,7 @@ import android.content.pm.ActivityInfo;
 import android.content.res.Configuration;
 import android.media.AudioFormat;
 import android.media.AudioManager;
-import android.media.AudioRecord;
 import android.media.AudioTrack;
-import android.media.MediaRecorder;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -32,18 +31,10 @@ import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.Toast;
 
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.ArrayList;
+import java.io.InterruptedIOException;
 
 import com.treeapps.audiorecorder.AudioLib.AudioSample;
 
@@ -62,6 +53,8 @@ public class ActivityAudioRecorder extends ActionBarActivity {
     private final String TAG = "Recorder";
 
     private static final int GRAPH_PAGE_SIZE_IN_MS = 10000;
+    private static final int CAPTURE_RING_SIZE_IN_SECONDS = 4; // Disk stalls up to this long are absorbed without losing audio
+    private static final int CAPTURE_WRITE_BUFFER_SIZE_IN_BYTES = 64 * 1024;
 
 
 
@@ -75,10 +68,7 @@ public class ActivityAudioRecorder extends ActionBarActivity {
     }
 
     String strAudioCurrentPlayFilenameWithoutExt = "audiocurrent";
-    String strAudioLeftFilenameWithoutExt = "audioleft";
     String strAudioInsertFilenameWithoutExt = "audioinsert";
-    String strAudioRightFilenameWithoutExt = "audioright";
-    String strAudioScratchFilenameWithoutExt = "audioscratch";
     String strMailFilenameWithExtension = "audionote.wav";
 
     // GUI items
@@ -111,12 +101,11 @@ public class ActivityAudioRecorder extends ActionBarActivity {
         public PlayBackAsyncTask playBackAsyncTask = null;
 
         public AudioSample audioSampleCurrent;
-        public AudioSample audioSampleLeft;
-        public AudioSample audioSampleRight;
         public AudioSample audioSampleInsert;
 
         public AudioGraph audioGraph;
         public int intSampleRate;
+        public AudioJob resampleJob = null; // Converting the capture to another rate, edits, exports, record and play wait for it
 
         // Recording
         public double fltPlayPercentBeforeRecording;
@@ -133,10 +122,14 @@ public class ActivityAudioRecorder extends ActionBarActivity {
     Context context;
     SessionDataFragment sd;
     AudioLib audioLib;
+    private final GraphPageLoader graphPageLoader = new GraphPageLoader("Page", AudioExecutors.getGraphExecutor());
+    private final GraphPageLoader graphPageLoaderAfterEndCursor = new GraphPageLoader("AfterEndCursor", AudioExecutors.getGraphExecutor());
+    private final GraphPagePrefetcher graphPagePrefetcher = new GraphPagePrefetcher(AudioExecutors.getGraphExecutor());
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        AndroidPlatform.install();
         setContentView(R.layout.activity_audio_recorder);
 
         context = this;
@@ -158,28 +151,41 @@ public class ActivityAudioRecorder extends ActionBarActivity {
             fragmentManager.beginTransaction().add(sd, "SESSION_DATA").commit();
         }
 
-        try {
-            if (savedInstanceState == null) {
-
-                // Fill session data
-                Bundle bundle = getIntent().getExtras();
-                sd.strWorkFolderFullPath = bundle.getString(INTENT_WORK_FOLDER_FULL_PATH);
-                // Setup state machine
-                setupStateMachine();
-
-                // Audio files
-                audioLib = new AudioLib(sd.strWorkFolderFullPath);
-                sd.strAudioEditFullFilename = bundle.getString(INTENT_AUDIO_FULL_FILENAME);
-
-                sd.audioSampleCurrent = audioLib.new AudioSample(strAudioCurrentPlayFilenameWithoutExt); // Fill this on AudioGraph init callback
-                sd.audioSampleInsert = audioLib.new AudioSample(strAudioInsertFilenameWithoutExt);
-                sd.intSampleRate = getSampleRate();
+        if (savedInstanceState == null) {
+
+            // Fill session data
+            Bundle bundle = getIntent().getExtras();
+            sd.strWorkFolderFullPath = bundle.getString(INTENT_WORK_FOLDER_FULL_PATH);
+            // Setup state machine
+            setupStateMachine();
+
+            // Audio files, opened once they are in the current format
+            audioLib = new AudioLib(sd.strWorkFolderFullPath);
+            sd.strAudioEditFullFilename = bundle.getString(INTENT_AUDIO_FULL_FILENAME);
+            audioLib.migrateAsync(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isFinishing()) {
+                        openSession();
+                    }
+                }
+            });
+        }
+    }
 
-                // Setup GUI
-                setupGui();
+    private void openSession() {
+        try {
+            sd.audioSampleCurrent = audioLib.openSample(strAudioCurrentPlayFilenameWithoutExt, isWavStorage()); // Fill this on AudioGraph init callback
+            sd.audioSampleInsert = audioLib.new AudioSample(strAudioInsertFilenameWithoutExt);
+            if (sd.audioSampleCurrent.isRestored() && sd.audioSampleInsert.isRestored()) {
+                // Left over from a previous session. Without the manifests the piece files may still hold audio.
+                audioLib.deleteUnusedPieceFiles(sd.audioSampleCurrent, sd.audioSampleInsert);
+            }
+            sd.intSampleRate = getSampleRate();
 
+            // Setup GUI
+            setupGui();
 
-            }
         } catch (IOException e) {
             Toast.makeText(this, "There has been an IO error. See stack trace", Toast.LENGTH_SHORT).show();
             Log.e(TAG, "IO exception", e);
@@ -213,6 +219,10 @@ public class ActivityAudioRecorder extends ActionBarActivity {
     protected void onPause() {
         // TODO Auto-generated method stub
         super.onPause();
+        AudioLib.getGraphPageCache().logMetrics();
+        graphPageLoader.logMetrics();
+        graphPageLoaderAfterEndCursor.logMetrics();
+        graphPagePrefetcher.logMetrics();
     }
 
     @Override
@@ -249,13 +259,52 @@ public class ActivityAudioRecorder extends ActionBarActivity {
             case "4":
                return 11025;
             default:
-                SharedPreferences.Editor editor = prefs.edit();
-                editor.putString(ActivityPreferences.KEY_LIST_PREFERENCE,"4");
-                editor.commit();
+                setSampleRatePreference(11025);
                 return 11025;
         }
     }
 
+    /**
+     * @return True to keep the capture as a WAV file, applies when the session gets opened
+     */
+    private boolean isWavStorage() {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        return prefs.getBoolean(ActivityPreferences.KEY_WAV_STORAGE_PREFERENCE, true);
+    }
+
+    private void setSampleRatePreference(int intSampleRate) {
+        String strValue;
+        switch (intSampleRate) {
+            case 44100:
+                strValue = "1";
+                break;
+            case 22050:
+                strValue = "2";
+                break;
+            case 16000:
+                strValue = "3";
+                break;
+            default:
+                strValue = "4";
+                break;
+        }
+        SharedPreferences.Editor editor = PreferenceManager.getDefaultSharedPreferences(this).edit();
+        editor.putString(ActivityPreferences.KEY_LIST_PREFERENCE, strValue);
+        editor.commit();
+    }
+
+    /**
+     * @return True, after telling the user, while the capture is being converted to another sample rate. The
+     * conversion replaces the sample's file and piece table, nothing else may touch the sample meanwhile.
+     */
+    private boolean isBusyResampling() {
+        if (sd.resampleJob == null) {
+            return false;
+        }
+        Toast.makeText(context, "Wait for the sample rate conversion to finish", Toast.LENGTH_SHORT).show();
+        return true;
+    }
+
 
 
 
@@ -391,12 +440,9 @@ public class ActivityAudioRecorder extends ActionBarActivity {
                                 public void run() {
                                 // Update the display with latest
                                 try {
-                                    double fltRmsFrameSizeInShorts = sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
-                                    int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
                                     AudioGraph.PageValue pageValue = sd.audioGraph.getPageValue();
-                                    double fltStartRmsFrame = (long) ((pageValue.fltPageNum -1) * intPageSizeInRmsFrames);
-                                    int[] intGraphBuffer = sd.audioSampleCurrent.getGraphBuffer(fltStartRmsFrame, intPageSizeInRmsFrames, fltRmsFrameSizeInShorts);
-                                    sd.audioGraph.updateGraph(intGraphBuffer);
+                                    int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
+                                    loadGraphPage((long) ((pageValue.fltPageNum -1) * intPageSizeInRmsFrames));
                                     sd.audioGraph.setPageValue(pageValue);
                                     sd.audioGraph.invalidate();
                                 } catch (Exception e) {
@@ -515,6 +561,7 @@ public class ActivityAudioRecorder extends ActionBarActivity {
                     File fileEditFile = new File(sd.strAudioEditFullFilename);
                     if (fileEditFile.exists()) {
                         final WavFile wavFile = new WavFile(context);
+                        wavFile.setTargetSampleRate(sd.intSampleRate);
                         wavFile.ReadFileAsync(fileEditFile, sd.audioSampleCurrent, new WavFile.OnReadWriteCompleteListener() {
                             @Override
                             public void onComplete(final boolean boolIsSuccess, final String strErrorMessage) {
@@ -524,6 +571,7 @@ public class ActivityAudioRecorder extends ActionBarActivity {
                                         if (boolIsSuccess) {
                                             try {
                                                 sd.intSampleRate = wavFile.getSampleRate();
+                                                mergeRecoveredAudio();
                                                 displayAudioSampleCurrent();
                                                 sd.sm.setInitialState(ReadyWithSample);
                                                 return;
@@ -533,8 +581,7 @@ public class ActivityAudioRecorder extends ActionBarActivity {
                                         } else {
                                             Toast.makeText(context, "Could not read wav file. " + strErrorMessage, Toast.LENGTH_SHORT).show();
                                         }
-                                        sd.sm.setInitialState(ReadyWithNoSample);
-                                        sd.audioGraph.setPageValue(sd.audioGraph.new PageValue(1, 0, 0, 0, 100));
+                                        startSessionWithoutEditFile();
                                     }
                                 });
                             }
@@ -542,9 +589,10 @@ public class ActivityAudioRecorder extends ActionBarActivity {
 
                     }  else {
                         Toast.makeText(context, "Source file does not exist", Toast.LENGTH_SHORT).show();
-                        sd.sm.setInitialState(ReadyWithNoSample);
-                        sd.audioGraph.setPageValue(sd.audioGraph.new PageValue(1,0,0,0,100));
+                        startSessionWithoutEditFile();
                     }
+                } else {
+                    startSessionWithoutEditFile();
                 }
             }
         });
@@ -555,11 +603,8 @@ public class ActivityAudioRecorder extends ActionBarActivity {
                 if (sd.audioSampleCurrent.exists()) {
                     try {
                         sd.audioGraph.setPageSizeInMs(GRAPH_PAGE_SIZE_IN_MS); // This is done here because orientation can change any time
-                        double fltRmsFrameSizeInShorts = sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
                         int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
-                        double fltStartRmsFrame =  (pageValue.fltPageNum -1) * intPageSizeInRmsFrames;
-                        int[] intGraphBuffer = sd.audioSampleCurrent.getGraphBuffer(fltStartRmsFrame, intPageSizeInRmsFrames, fltRmsFrameSizeInShorts);
-                        sd.audioGraph.updateGraph(intGraphBuffer);
+                        loadGraphPage((pageValue.fltPageNum -1) * intPageSizeInRmsFrames);
                         sd.audioGraph.setPageValue(pageValue);
                     } catch (Exception e) {
                         Log.e(TAG, "Could not get graph values", e);
@@ -574,11 +619,8 @@ public class ActivityAudioRecorder extends ActionBarActivity {
                 if (sd.audioSampleCurrent.exists()) {
                     try {
                         sd.audioGraph.setPageSizeInMs(GRAPH_PAGE_SIZE_IN_MS); // This is done here because orientation can change any time
-                        double fltRmsFrameSizeInShorts = sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
                         int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
-                        double fltStartRmsFrame = (pageValue.fltPageNum -1) * intPageSizeInRmsFrames;
-                        int[] intGraphBuffer = sd.audioSampleCurrent.getGraphBuffer(fltStartRmsFrame, intPageSizeInRmsFrames, fltRmsFrameSizeInShorts);
-                        sd.audioGraph.updateGraph(intGraphBuffer);
+                        loadGraphPage((pageValue.fltPageNum -1) * intPageSizeInRmsFrames);
                     } catch (Exception e) {
                         Log.e(TAG, "Could not get graph values", e);
                     }
@@ -588,19 +630,22 @@ public class ActivityAudioRecorder extends ActionBarActivity {
 
         sd.audioGraph.setOnEndCursorChangedListener(new AudioGraph.OnEndCursorChangedListener() {
             @Override
-            public int[] getSinglePageAfterCursorBuffer(double fltPercent) {
-                int[] intGraphBuffer = null;
-                try {
-
-                    double fltRmsFrameSizeInShorts = sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
-                    int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
-                    long lngStartRmsFrame = sd.audioGraph.percentToRmsFrame(fltPercent, sd.audioSampleCurrent.lngSizePcmInShorts, sd.intSampleRate);
-                    intGraphBuffer = sd.audioSampleCurrent.getGraphBuffer(lngStartRmsFrame, intPageSizeInRmsFrames, fltRmsFrameSizeInShorts);
+            public void onEndCursorChanged(final double fltPercent) {
+                double fltRmsFrameSizeInShorts = sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
+                int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
+                long lngStartRmsFrame = sd.audioGraph.percentToRmsFrame(fltPercent, sd.audioSampleCurrent.lngSizePcmInShorts, sd.intSampleRate);
+                graphPageLoaderAfterEndCursor.load(sd.audioSampleCurrent, lngStartRmsFrame, intPageSizeInRmsFrames, fltRmsFrameSizeInShorts,
+                        new GraphPageLoader.OnPageLoadedListener() {
+                            @Override
+                            public void onPageLoaded(int[] intGraphBuffer) {
+                                sd.audioGraph.setSinglePageAfterCursorBuffer(fltPercent, intGraphBuffer);
+                            }
 
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-                return intGraphBuffer;
+                            @Override
+                            public void onPageFailed(String strErrorMessage) {
+                                // The graph then just shows no data after the end cursor, the loader logged it
+                            }
+                        });
             }
         });
 
@@ -608,26 +653,19 @@ public class ActivityAudioRecorder extends ActionBarActivity {
         buttonSkipToStart.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                try {
-                    // Calculate new PageValue
-                    AudioGraph.PageValue pageValue = sd.audioGraph.getPageValue();
-                    pageValue.fltPlayPercent = 0;
-                    pageValue.fltPageNum = 1;
-                    sd.audioGraph.setPageValue(pageValue);
-
-                    // Get the accompanying buffer data
-                    if (sd.audioSampleCurrent.exists()) {
-                        double fltRmsFrameSizeInShorts = sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
-                        int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
-                        double fltStartRmsFrame = (long) ((pageValue.fltPageNum -1) * intPageSizeInRmsFrames);
-                        int[] intGraphBuffer = sd.audioSampleCurrent.getGraphBuffer(fltStartRmsFrame, intPageSizeInRmsFrames, fltRmsFrameSizeInShorts);
-                        sd.audioGraph.updateGraph(intGraphBuffer);
-                    }
+                // Calculate new PageValue
+                AudioGraph.PageValue pageValue = sd.audioGraph.getPageValue();
+                pageValue.fltPlayPercent = 0;
+                pageValue.fltPageNum = 1;
+                sd.audioGraph.setPageValue(pageValue);
 
-                    sd.audioGraph.invalidate();
-                } catch (IOException e) {
-                    Log.e(TAG, "Could not skip to end of timeline", e);
+                // Get the accompanying buffer data
+                if (sd.audioSampleCurrent.exists()) {
+                    int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
+                    loadGraphPage((long) ((pageValue.fltPageNum -1) * intPageSizeInRmsFrames));
                 }
+
+                sd.audioGraph.invalidate();
             }
 
         });
@@ -636,6 +674,9 @@ public class ActivityAudioRecorder extends ActionBarActivity {
         buttonPlay.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
+                if (isBusyResampling()) {
+                    return;
+                }
                 switch ((State) sd.sm.getState()) {
                     case ReadyWithSample:
                         sd.sm.triggerEvent(Event.PlayPressed);
@@ -648,7 +689,9 @@ public class ActivityAudioRecorder extends ActionBarActivity {
         buttonRecord.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-
+                if (isBusyResampling()) {
+                    return;
+                }
                 if (sd.sm.getState() == State.ReadyWithSample) {
                     // Warn user there can be some overwrite
                     if (!sd.audioGraph.isPlayCursorAtEndOfFile()) {
@@ -683,6 +726,9 @@ public class ActivityAudioRecorder extends ActionBarActivity {
         buttonRecord.setOnLongClickListener(new View.OnLongClickListener() {
             @Override
             public boolean onLongClick(View v) {
+                if (isBusyResampling()) {
+                    return true;
+                }
                 switch ((State) sd.sm.getState()) {
                     case ReadyWithNoSample:
                     case ReadyWithSample:
@@ -713,25 +759,18 @@ public class ActivityAudioRecorder extends ActionBarActivity {
         buttonSkipToEnd.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                try {
-                    // Calculate new PageValue
-                    AudioGraph.PageValue pageValue = sd.audioGraph.getPageValue();
-                    pageValue = sd.audioGraph.updatePageValueToDisplayEndPage(pageValue, sd.audioSampleCurrent.lngSizePcmInShorts, sd.intSampleRate);
-                    sd.audioGraph.setPageValue(pageValue);
+                // Calculate new PageValue
+                AudioGraph.PageValue pageValue = sd.audioGraph.getPageValue();
+                pageValue = sd.audioGraph.updatePageValueToDisplayEndPage(pageValue, sd.audioSampleCurrent.lngSizePcmInShorts, sd.intSampleRate);
+                sd.audioGraph.setPageValue(pageValue);
 
 
-                    // Get the accompanying buffer data
-                    if (sd.audioSampleCurrent.exists()) {
-                        double fltRmsFrameSizeInShorts = sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
-                        int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
-                        double fltStartRmsFrame = (long) ((pageValue.fltPageNum -1) * intPageSizeInRmsFrames);
-                        int[] intGraphBuffer = sd.audioSampleCurrent.getGraphBuffer(fltStartRmsFrame, intPageSizeInRmsFrames, fltRmsFrameSizeInShorts);
-                        sd.audioGraph.updateGraph(intGraphBuffer);
-                    }
-                    sd.audioGraph.invalidate();
-                } catch (IOException e) {
-                    Log.e(TAG, "Could not skip to end of timeline", e);
+                // Get the accompanying buffer data
+                if (sd.audioSampleCurrent.exists()) {
+                    int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
+                    loadGraphPage((long) ((pageValue.fltPageNum -1) * intPageSizeInRmsFrames));
                 }
+                sd.audioGraph.invalidate();
             }
         });
 
@@ -739,12 +778,17 @@ public class ActivityAudioRecorder extends ActionBarActivity {
         buttonDelete.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
+                if (isBusyResampling()) {
+                    return;
+                }
                 AlertDialog.Builder builder = new AlertDialog.Builder(context);
                 builder.setTitle("Delete options?");
                 builder.setPositiveButton("Complete\nrecording", new DialogInterface.OnClickListener() {
                     @Override
                     public void onClick(DialogInterface dialogInterface, int i) {
-
+                        if (isBusyResampling()) {
+                            return;
+                        }
                         switch ((State) sd.sm.getState()) {
                             case ReadyWithSample:
                                 sd.sm.triggerEvent(Event.ClearAll);
@@ -756,19 +800,16 @@ public class ActivityAudioRecorder extends ActionBarActivity {
 
                     @Override
                     public void onClick(DialogInterface dialogInterface, int i) {
+                        if (isBusyResampling()) {
+                            return;
+                        }
                         try {
-                            // Merge shortened file
+                            // Cut the range out of the piece table
                             AudioGraph.PageValue pageValue = sd.audioGraph.getPageValue();
                             long lngStartCursorPositionInShort = sd.audioGraph.percentToShort(pageValue.fltStartPercent, sd.audioSampleCurrent.lngSizePcmInShorts, sd.intSampleRate);
                             long lngEndCursorPositionInShort = sd.audioGraph.percentToShort(pageValue.fltEndPercent, sd.audioSampleCurrent.lngSizePcmInShorts, sd.intSampleRate);
-                            sd.audioSampleLeft = audioLib.new AudioSample(strAudioLeftFilenameWithoutExt, strAudioCurrentPlayFilenameWithoutExt);
-                            sd.audioSampleLeft.trimRight(lngStartCursorPositionInShort*2);
-                            sd.audioSampleRight = audioLib.new AudioSample(strAudioRightFilenameWithoutExt, strAudioCurrentPlayFilenameWithoutExt);
-                            sd.audioSampleRight.trimLeft(lngEndCursorPositionInShort*2);
-                            ArrayList<AudioSample> nameList = new ArrayList<AudioSample> ();
-                            nameList.add(sd.audioSampleLeft);
-                            nameList.add(sd.audioSampleRight);
-                            sd.audioSampleCurrent.mergeInto(nameList);
+                            sd.audioSampleCurrent.deleteRange(lngStartCursorPositionInShort * 2, lngEndCursorPositionInShort * 2);
+                            audioLib.deleteUnusedPieceFiles(sd.audioSampleCurrent, sd.audioSampleInsert);
 
                             // Refresh display
                             // Calculate new PageValue
@@ -776,11 +817,8 @@ public class ActivityAudioRecorder extends ActionBarActivity {
                             sd.audioGraph.setPageValue(updatePageValue);
 
                             // Get the accompanying buffer data
-                            double fltRmsFrameSizeInShorts = sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
                             int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
-                            double fltStartRmsFrame = (long) ((updatePageValue.fltPageNum -1) * intPageSizeInRmsFrames);
-                            int[] intGraphBuffer = sd.audioSampleCurrent.getGraphBuffer(fltStartRmsFrame, intPageSizeInRmsFrames, fltRmsFrameSizeInShorts);
-                            sd.audioGraph.updateGraph(intGraphBuffer);
+                            loadGraphPage((long) ((updatePageValue.fltPageNum -1) * intPageSizeInRmsFrames));
                             sd.audioGraph.invalidate();
 
                         } catch (Exception e) {
@@ -811,6 +849,9 @@ public class ActivityAudioRecorder extends ActionBarActivity {
         builder.setPositiveButton("Save", new DialogInterface.OnClickListener() {
             @Override
             public void onClick(DialogInterface dialogInterface, int i) {
+                if (isBusyResampling()) {
+                    return;
+                }
                 File fileEditFile = new File(sd.strAudioEditFullFilename);
                 WavFile wavFile = new WavFile(context);
                 wavFile.WriteFileAsync(sd.audioSampleCurrent, sd.intSampleRate, fileEditFile, new WavFile.OnReadWriteCompleteListener() {
@@ -852,13 +893,41 @@ public class ActivityAudioRecorder extends ActionBarActivity {
         builder.show();
     }
 
+    /**
+     * Load the page of the graph that starts at an RMS frame off the UI thread, superseding the page loads
+     * before. The graph shows a placeholder until it is there, unless it was cached. The pages next to it are
+     * prefetched after, so that paging on is answered from the cache.
+     * @param fltStartRmsFrame
+     */
+    private void loadGraphPage(double fltStartRmsFrame) {
+        double fltRmsFrameSizeInShorts = sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
+        int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
+        boolean boolIsLoaded = graphPageLoader.load(sd.audioSampleCurrent, fltStartRmsFrame, intPageSizeInRmsFrames, fltRmsFrameSizeInShorts,
+                new GraphPageLoader.OnPageLoadedListener() {
+                    @Override
+                    public void onPageLoaded(int[] intGraphBuffer) {
+                        // The sample may have been cleared while the page loaded
+                        if (sd.audioSampleCurrent.exists()) {
+                            sd.audioGraph.updateGraph(intGraphBuffer);
+                        }
+                    }
+
+                    @Override
+                    public void onPageFailed(String strErrorMessage) {
+                        sd.audioGraph.hideGraphPlaceholder();
+                        Toast.makeText(context, "Could not load graph. " + strErrorMessage, Toast.LENGTH_SHORT).show();
+                    }
+                });
+        if (!boolIsLoaded) {
+            sd.audioGraph.showGraphPlaceholder();
+        }
+        graphPagePrefetcher.onPageShown(sd.audioSampleCurrent, fltStartRmsFrame, intPageSizeInRmsFrames, fltRmsFrameSizeInShorts);
+    }
+
     private void displayAudioSampleCurrent() throws IOException {
         sd.audioGraph.setPageSizeInMs(GRAPH_PAGE_SIZE_IN_MS); // This is done here because orientation can change any time
         double fltRmsFrameSizeInShorts = sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
-        int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
-        double fltStartRmsFrame = 0;
-        int[] intGraphBuffer = sd.audioSampleCurrent.getGraphBuffer(fltStartRmsFrame, intPageSizeInRmsFrames, fltRmsFrameSizeInShorts);
-        sd.audioGraph.updateGraph(intGraphBuffer);
+        loadGraphPage(0);
         double intDataAmountInRmsFrames = sd.audioSampleCurrent.getDataAmountInRmsFrames(fltRmsFrameSizeInShorts);
         sd.audioGraph.setPageValue(sd.audioGraph.new PageValue(1, (long) intDataAmountInRmsFrames,0,0,100));
     }
@@ -884,7 +953,8 @@ public class ActivityAudioRecorder extends ActionBarActivity {
 
         });
 
-        sd.recordAsyncTask.execute(null,null,null);
+        // On the capture lane, a save or import in progress does not hold it up
+        sd.recordAsyncTask.executeOnExecutor(AudioExecutors.getCaptureExecutor());
     }
 
     public class RecordAsyncTask extends AsyncTask<Void, int[], Void> {
@@ -952,127 +1022,86 @@ public class ActivityAudioRecorder extends ActionBarActivity {
         }
     }
 
-    private void conductRecording(RecordAsyncTask.ProgressProxy progressProxy) {
+    private void conductRecording(final RecordAsyncTask.ProgressProxy progressProxy) throws IOException {
 
 
 
         sd.isRecording = true;
-        File file = sd.audioSampleInsert.filePathPcm;
 
-        try {
-            // Save data to Insert file
-            file.createNewFile();
-
-            OutputStream outputStream = new FileOutputStream(file);
-            BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(outputStream);
-            DataOutputStream dataOutputStream = new DataOutputStream(bufferedOutputStream);
-
-            int minBufferSize = AudioRecord.getMinBufferSize(sd.intSampleRate, AudioFormat.CHANNEL_IN_MONO,
-                    AudioFormat.ENCODING_PCM_16BIT);
-
-            short[] audioData = new short[minBufferSize/2];
-
-            AudioRecord audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, sd.intSampleRate,
-                    AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, minBufferSize);
-
-            audioRecord.startRecording();
-
-            int intRmsDataBufferSize = (int) sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
-            int[] intRmsBuffer = new int[intRmsDataBufferSize];
-            int[] intRmsData = new int[10];
-            int intRmsBufferIndex = 0;
-            int intRmsDataIndex = 0;
-            double sum = 0;
-
-            boolean boolStopRecording = false;
-            while (!boolStopRecording) {
-                int numberOfShort = audioRecord.read(audioData, 0, audioData.length);
-
-                for (int i = 0; i < numberOfShort; i++) {
-                    dataOutputStream.writeShort(audioData[i]);
-                    intRmsBuffer[intRmsBufferIndex] = audioData[i];
-                    intRmsBufferIndex += 1;
-                    if ((intRmsBufferIndex == intRmsBuffer.length)){
-                        sum = 0;
-                        for (int j = 0; j < intRmsBufferIndex; j++) {
-                            sum += intRmsBuffer[j] * intRmsBuffer[j];
-                        }
-                        double amplitude = sum / intRmsBufferIndex;
-                        intRmsData[intRmsDataIndex] = ((int) Math.sqrt(amplitude));
-                        intRmsBufferIndex = 0;
-                        intRmsDataIndex += 1;
-                        if (intRmsDataIndex == intRmsData.length) {
-                            progressProxy.callPublishProgress(intRmsData);
-                            intRmsDataIndex = 0;
-                            if (!sd.isRecording) {
-                                // Ensure the amount of data in the audioBuffer ties up with the Rms frames in the graph
-                                boolStopRecording = true;
-                            }
-                        }
-                    }
-                    if (boolStopRecording) {
-                       break;
+        // Save data to Insert file
+        AudioCapture audioCapture = new AudioCapture(new AudioRecordSource(sd.intSampleRate), sd.audioSampleInsert.filePathPcm,
+                CAPTURE_RING_SIZE_IN_SECONDS, CAPTURE_WRITE_BUFFER_SIZE_IN_BYTES,
+                (int) sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate), 10,
+                new RmsAnalysis.OnRmsFramesListener() {
+                    @Override
+                    public boolean onRmsFrames(int[] intRmsFrames) {
+                        progressProxy.callPublishProgress(intRmsFrames);
+                        return !sd.isRecording;
                     }
-                }
-            }
-
-            audioRecord.stop();
-            dataOutputStream.close();
-            bufferedOutputStream.close();
-            outputStream.close();
-
-            sd.audioSampleInsert.updateFileSize();
-
-            // Merge the result
-            mergeAudio();
-
+                });
+        audioCapture.run();
 
+        sd.audioSampleInsert.updateFileSize();
+        sd.audioSampleInsert.updateIndex();
 
-        } catch (IOException e) {
-            Log.e(TAG, "Recording failed", e);
-        }
+        // Merge the result
+        mergeAudio();
 
     }
 
     public void mergeAudio() throws IOException {
 
         // Overwrite everything after play cursor with new data, appending everything to it after the end cursor
-        if ( sd.fltPlayPercentBeforeRecording == 0) {
-            // Play cursor is at start, so insert sample gets used as root sample
-            sd.audioSampleLeft = audioLib.new AudioSample(strAudioLeftFilenameWithoutExt);
-            sd.audioSampleLeft.clear();
-        } else {
-            // Play cursor is later, so insert sample gets appended after cursor
-            // Strip all to right of cursor
-            long lngPlayCursorStartInBytes = sd.audioGraph.percentToByte(sd.fltPlayPercentBeforeRecording, sd.audioSampleCurrent.lngSizePcmInShorts, sd.intSampleRate);
-            sd.audioSampleLeft = audioLib.new AudioSample(strAudioLeftFilenameWithoutExt, strAudioCurrentPlayFilenameWithoutExt);
-            sd.audioSampleLeft.trimRight(lngPlayCursorStartInBytes);
+        long lngPlayCursorPosInBytes = 0;
+        if ( sd.fltPlayPercentBeforeRecording != 0) {
+            // Play cursor is later, so insert sample gets placed after cursor
+            lngPlayCursorPosInBytes = sd.audioGraph.percentToByte(sd.fltPlayPercentBeforeRecording, sd.audioSampleCurrent.lngSizePcmInShorts, sd.intSampleRate);
         }
         // Use whatever is on the right side of the end cursor
-        if (sd.audioSampleCurrent.exists()) {
-            if ( sd.audioGraph.isPercentEndOfFile(sd.fltEndPercentBeforeRecording)) {
-                // End cursor is at end, so insert sample does not get anything added at end
-                sd.audioSampleRight = audioLib.new AudioSample(strAudioRightFilenameWithoutExt);
-                sd.audioSampleRight.clear();
-            } else {
-                // End cursor is not at end, so insert sample does get something added at end
-                // Get that "something"
-                long lngEndCursorPosInBytes = sd.audioGraph.percentToByte(sd.fltEndPercentBeforeRecording, sd.audioSampleCurrent.lngSizePcmInShorts, sd.intSampleRate);
-                sd.audioSampleRight = audioLib.new AudioSample(strAudioRightFilenameWithoutExt, strAudioCurrentPlayFilenameWithoutExt);
-                sd.audioSampleRight.trimLeft(lngEndCursorPosInBytes);
-            }
-        } else {
-            sd.audioSampleRight = audioLib.new AudioSample(strAudioRightFilenameWithoutExt);
-            sd.audioSampleRight.clear();
+        long lngEndCursorPosInBytes = sd.audioSampleCurrent.getSizeInBytes();
+        if (sd.audioSampleCurrent.exists() && !sd.audioGraph.isPercentEndOfFile(sd.fltEndPercentBeforeRecording)) {
+            // End cursor is not at end, so insert sample does get something added at end
+            lngEndCursorPosInBytes = sd.audioGraph.percentToByte(sd.fltEndPercentBeforeRecording, sd.audioSampleCurrent.lngSizePcmInShorts, sd.intSampleRate);
         }
 
-        // Merge together
-        ArrayList<AudioSample> audioSamples = new ArrayList<AudioSample>();
-        audioSamples.add(sd.audioSampleLeft);
-        audioSamples.add(sd.audioSampleInsert);
-        audioSamples.add(sd.audioSampleRight);
-        sd.audioSampleCurrent.mergeInto(audioSamples);
+        // Splice the insert sample in, only the piece table changes
+        sd.audioSampleCurrent.replaceRange(lngPlayCursorPosInBytes, lngEndCursorPosInBytes, sd.audioSampleInsert);
+        audioLib.deleteUnusedPieceFiles(sd.audioSampleCurrent, sd.audioSampleInsert);
+
+    }
+
+    /**
+     * Start the session with the current sample as it is, no edit file got read. A recovered take is merged in
+     * first, before a recording can truncate the insert file it is in.
+     */
+    private void startSessionWithoutEditFile() {
+        try {
+            mergeRecoveredAudio();
+            if (sd.audioSampleCurrent.exists()) {
+                displayAudioSampleCurrent();
+                sd.sm.setInitialState(ReadyWithSample);
+                return;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not merge the recovered recording", e);
+            Toast.makeText(context, "Could not recover the unfinished recording. " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+        sd.sm.setInitialState(ReadyWithNoSample);
+        sd.audioGraph.setPageValue(sd.audioGraph.new PageValue(1,0,0,0,100));
+    }
 
+    /**
+     * A recording that got cut short by the app dying was recovered into the insert sample when it got opened,
+     * append it to the current sample so that the take is not lost
+     * @throws IOException
+     */
+    private void mergeRecoveredAudio() throws IOException {
+        if (!sd.audioSampleInsert.isRecovered() || !sd.audioSampleInsert.exists()) {
+            return;
+        }
+        sd.audioSampleCurrent.insert(sd.audioSampleCurrent.getSizeInBytes(), sd.audioSampleInsert);
+        audioLib.deleteUnusedPieceFiles(sd.audioSampleCurrent, sd.audioSampleInsert);
+        Toast.makeText(this, "Recovered an unfinished recording", Toast.LENGTH_SHORT).show();
     }
 
     interface OnPlayComplete {
@@ -1090,7 +1119,7 @@ public class ActivityAudioRecorder extends ActionBarActivity {
             }
 
         });
-        sd.playBackAsyncTask.execute(null,null,null);
+        sd.playBackAsyncTask.executeOnExecutor(AudioExecutors.getCaptureExecutor());
 
     }
 
@@ -1145,11 +1174,8 @@ public class ActivityAudioRecorder extends ActionBarActivity {
                     if (pageValueAfter.getCurrentPage() != pageValueBefore.getCurrentPage() ) {
                         // Page changed, get new buffer data from file and display
                         // Get the accompanying buffer data
-                        double fltRmsFrameSizeInShorts = sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
                         int intPageSizeInRmsFrames = sd.audioGraph.getPageSizeInRmsFrames();
-                        double fltStartRmsFrame = (long) ((pageValueAfter.fltPageNum -1) * intPageSizeInRmsFrames);
-                        int[] intGraphBuffer = sd.audioSampleCurrent.getGraphBuffer(fltStartRmsFrame, intPageSizeInRmsFrames, fltRmsFrameSizeInShorts);
-                        sd.audioGraph.updateGraph(intGraphBuffer);
+                        loadGraphPage((long) ((pageValueAfter.fltPageNum -1) * intPageSizeInRmsFrames));
                     }
                     // Set the PageValue to update cursors
                     sd.audioGraph.setPageValue(pageValueAfter);
@@ -1187,7 +1213,7 @@ public class ActivityAudioRecorder extends ActionBarActivity {
 	public void conductPlayBack(PlayBackAsyncTask.ProgressProxy progressProxy){
 
         // Determine where to start in file
-        int intSkipPositionInBytes = (int) sd.audioGraph.percentToByte(sd.audioGraph.getPageValue().fltPlayPercent, sd.audioSampleCurrent.lngSizePcmInShorts, sd.intSampleRate);
+        long lngPositionInShorts = sd.audioGraph.percentToShort(sd.audioGraph.getPageValue().fltPlayPercent, sd.audioSampleCurrent.lngSizePcmInShorts, sd.intSampleRate);
 
 	    int minBufferSize = AudioTrack.getMinBufferSize(sd.intSampleRate,
                 AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT);
@@ -1196,46 +1222,44 @@ public class ActivityAudioRecorder extends ActionBarActivity {
 				AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT, minBufferSize, AudioTrack.MODE_STREAM);
 
 	    int i = 0;
-	    int intDataBufferSize =  (int) sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate) * 2;
-	    byte[] bDataBuffer = new byte[intDataBufferSize];
+	    int intDataBufferSize =  (int) sd.audioGraph.getOptimalDataSampleBufferSizeInShortsAccurate(sd.intSampleRate);
+	    short[] sDataBuffer = new short[intDataBufferSize];
         int intRmsFrameCount = 0;
         int RMS_FRAME_AMOUNT_TO_TRIGGER_PROGRESS_UPDATE = 10;
 
 	    try {
-	    	File file = sd.audioSampleCurrent.filePathPcm;
-	        FileInputStream fin = new FileInputStream(file.getAbsoluteFile());
-	        DataInputStream dis = new DataInputStream(fin);
-            dis.skipBytes(intSkipPositionInBytes);
-
-
-	        sd.audioTrack.play();
-            sd.isPlaying = true;
-
-	        while((i = dis.read(bDataBuffer, 0, intDataBufferSize)) > -1){
-                // Send to audio device - because buffer size is same optimal, each full buffer read accounts for one RMS frame
-                short[] s = byte2short(bDataBuffer);
-                sd.audioTrack.write(s, 0, i/2);
-
-                // Call progress updater if a pre-determined amount of RMS frames has been played
-                intRmsFrameCount += 1;
-                if (intRmsFrameCount == RMS_FRAME_AMOUNT_TO_TRIGGER_PROGRESS_UPDATE) {
-                    progressProxy.callPublishProgress(intRmsFrameCount);
-                    intRmsFrameCount = 0;
-
-                    // Break if needed, placed here to ensure always a full frameCount is displayed
-                    if (!sd.isPlaying) {
-                        break;
+	        PcmReader pcmReader = sd.audioSampleCurrent.openReader();
+            try {
+                sd.audioTrack.play();
+                sd.isPlaying = true;
+
+                while((i = pcmReader.read(lngPositionInShorts, sDataBuffer, 0, intDataBufferSize)) > -1){
+                    lngPositionInShorts += i;
+                    // Send to audio device - because buffer size is same optimal, each full buffer read accounts for one RMS frame
+                    sd.audioTrack.write(sDataBuffer, 0, i);
+
+                    // Call progress updater if a pre-determined amount of RMS frames has been played
+                    intRmsFrameCount += 1;
+                    if (intRmsFrameCount == RMS_FRAME_AMOUNT_TO_TRIGGER_PROGRESS_UPDATE) {
+                        progressProxy.callPublishProgress(intRmsFrameCount);
+                        intRmsFrameCount = 0;
+
+                        // Break if needed, placed here to ensure always a full frameCount is displayed
+                        if (!sd.isPlaying) {
+                            break;
+                        }
                     }
+
                 }
 
+                sd.audioTrack.flush();
+                sd.audioTrack.stop();
+                sd.audioTrack.release();
+            } finally {
+                // Until closed its files count as in use, and are never cleaned up
+                pcmReader.close();
             }
 
-            sd.audioTrack.flush();
-	        sd.audioTrack.stop();
-	        sd.audioTrack.release();
-	        dis.close();
-	        fin.close();
-
 
 	    } catch (FileNotFoundException e) {
 	        e.printStackTrace();
@@ -1244,58 +1268,17 @@ public class ActivityAudioRecorder extends ActionBarActivity {
 	    }
 	}
 
-	// Convert bytes to shorts
-	private short[] byte2short(byte[] sData) {
-		byte[] bytes = sData;
-		short[] shorts = new short[bytes.length/2];
-		// to turn bytes to shorts as either big endian or little endian.
-		ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN).asShortBuffer().get(shorts);
-		return shorts;
-	}
-
-
-    public int[] accumulateBuffer(int[] intRootBuffer, int[] intAppendBuffer) {
-        int[] destination;
-        if (intRootBuffer != null) {
-            destination = new int[intRootBuffer.length + intAppendBuffer.length];
-            for (int i = 0; i < intRootBuffer.length; i++) {
-                destination[i] = intRootBuffer[i];
-            }
-            for (int j = 0; j < intAppendBuffer.length; j++) {
-                destination[j + intRootBuffer.length] = intAppendBuffer[j];
-            }
-        } else {
-            destination = new int[intAppendBuffer.length];
-            for (int j = 0; j < intAppendBuffer.length; j++) {
-                destination[j] = intAppendBuffer[j];
-            }
-        }
-        return destination;
-    }
-
-    // Convert short to byte
-    private byte[] short2byte(short[] sData) {
-        int intArraySize = sData.length;
-        byte[] bytes = new byte[intArraySize * 2];
-        for (int i = 0; i < intArraySize; i++) {
-            bytes[i * 2] = (byte) (sData[i] & 0x00FF);
-            bytes[(i * 2) + 1] = (byte) (sData[i] >> 8);
-            sData[i] = 0;
-        }
-        return bytes;
-
-    }
-
-
-
     public void onMenuSettingsClicked(MenuItem item) {
         Intent intent = new Intent(this,ActivityPreferences.class);
-        intent.putExtra(ActivityPreferences.BOOL_IS_BUSY_RECORDING_OR_PLAYING, sd.isPlaying || sd.isRecording);
+        intent.putExtra(ActivityPreferences.BOOL_IS_BUSY_RECORDING_OR_PLAYING, sd.isPlaying || sd.isRecording || (sd.resampleJob != null));
         startActivityForResult(intent, GET_PREFERENCES);
     }
 
     public void onMenuCreateTestSignalClicked(MenuItem item) {
-        sd.audioSampleCurrent.createTestSignal();
+        if (isBusyResampling()) {
+            return;
+        }
+        sd.audioSampleCurrent.createTestSignal(sd.intSampleRate);
         sd.audioGraph.clearGraph();
         try {
             displayAudioSampleCurrent();
@@ -1312,15 +1295,83 @@ public class ActivityAudioRecorder extends ActionBarActivity {
             if (requestCode == GET_PREFERENCES) {
                 int intNewSampleRate = getSampleRate();
                 if (sd.intSampleRate != intNewSampleRate) {
-                    // Clear current capture
-                    sd.audioGraph.clearGraph();
-                    sd.audioSampleCurrent.clear();
-                    sd.intSampleRate = intNewSampleRate;
+                    if (sd.audioSampleCurrent.exists()) {
+                        // The capture is converted to the new rate, which applies once that succeeded
+                        resampleAudioSampleCurrent(sd.intSampleRate, intNewSampleRate);
+                    } else {
+                        sd.audioGraph.clearGraph();
+                        sd.intSampleRate = intNewSampleRate;
+                    }
                 }
             }
         }
     }
 
+    private void resampleAudioSampleCurrent(final int intFromRate, final int intToRate) {
+        sd.audioGraph.clearGraph();
+        final RobustProgressDialog robustProgressDialog = new RobustProgressDialog(context);
+        robustProgressDialog.setMessage("Converting sample rate... please wait");
+        robustProgressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        robustProgressDialog.setMax(100);
+        robustProgressDialog.setCancelable(true);
+        robustProgressDialog.setCanceledOnTouchOutside(false);
+        final AudioJob audioJob = new AudioJob("Resample " + intFromRate + " to " + intToRate) {
+            @Override
+            protected void work() {
+                String strErrorMessage = null;
+                boolean boolIsCancelled = false;
+                try {
+                    sd.audioSampleCurrent.resample(intFromRate, intToRate, this);
+                } catch (InterruptedIOException e) {
+                    boolIsCancelled = true;
+                } catch (IOException e) {
+                    Log.e(TAG, "Error when converting sample rate", e);
+                    strErrorMessage = e.getMessage();
+                }
+                final boolean boolIsSuccess = !boolIsCancelled && (strErrorMessage == null);
+                final String strError = strErrorMessage;
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        sd.resampleJob = null;
+                        if (robustProgressDialog.isShowing()) {
+                            robustProgressDialog.dismiss();
+                        }
+                        if (boolIsSuccess) {
+                            sd.intSampleRate = intToRate;
+                        } else {
+                            // The capture is untouched, so is the rate it is at
+                            setSampleRatePreference(intFromRate);
+                            if (strError != null) {
+                                Toast.makeText(context, "Could not convert sample rate, kept " + intFromRate + " Hz. " + strError, Toast.LENGTH_LONG).show();
+                            }
+                        }
+                        try {
+                            displayAudioSampleCurrent();
+                        } catch (IOException e) {
+                            Log.e(TAG, "Error when displaying converted sample", e);
+                        }
+                    }
+                });
+            }
+        };
+        audioJob.setOnProgressListener(new AudioJob.OnProgressListener() {
+            @Override
+            public void onProgress(AudioJob audioJob, int intPercent) {
+                robustProgressDialog.setProgress(intPercent);
+            }
+        });
+        robustProgressDialog.setOnCancelListener(new DialogInterface.OnCancelListener() {
+            @Override
+            public void onCancel(DialogInterface dialogInterface) {
+                audioJob.cancel();
+            }
+        });
+        robustProgressDialog.show();
+        sd.resampleJob = audioJob;
+        AudioExecutors.getBackgroundExecutor().execute(audioJob);
+    }
+
     public void disableScreenRotation() {
         if (context.getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT)
             ((Activity) context).setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
@@ -1333,18 +1384,31 @@ public class ActivityAudioRecorder extends ActionBarActivity {
     }
 
     public void onMenuMailClicked(MenuItem item) {
-        try {
-            WavFile wavFile = new WavFile(this);
-            File fileMail = new File(sd.strWorkFolderFullPath, strMailFilenameWithExtension);
-            if (fileMail.exists()) {
-                fileMail.delete();
-            }
-            wavFile.WriteFile(sd.audioSampleCurrent,getSampleRate(),fileMail);
-            mailAudioNote((Activity) this, "Audio Note", "This audio note has been sent from TreeNotes. Please see the attachment.", fileMail);
-        } catch (IOException e) {
-            Log.e(TAG,"Error when mailing audio note", e);
-            Toast.makeText(this,e.getMessage(),Toast.LENGTH_LONG).show();
+        if (isBusyResampling()) {
+            return;
+        }
+        WavFile wavFile = new WavFile(this);
+        final File fileMail = new File(sd.strWorkFolderFullPath, strMailFilenameWithExtension);
+        if (fileMail.exists()) {
+            fileMail.delete();
         }
+        // The rate the sample is at, the preference runs ahead while converting
+        wavFile.WriteFileAsync(sd.audioSampleCurrent, sd.intSampleRate, fileMail, new WavFile.OnReadWriteCompleteListener() {
+            @Override
+            public void onComplete(final boolean boolIsSuccess, final String strErrorMessage) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (boolIsSuccess) {
+                            mailAudioNote(ActivityAudioRecorder.this, "Audio Note", "This audio note has been sent from TreeNotes. Please see the attachment.", fileMail);
+                        } else {
+                            Log.e(TAG, "Error when mailing audio note: " + strErrorMessage);
+                            Toast.makeText(context, strErrorMessage, Toast.LENGTH_LONG).show();
+                        }
+                    }
+                });
+            }
+        });
     }
 
     public static void mailAudioNote(Activity activity, String subject, String text, File fileAttachment) {
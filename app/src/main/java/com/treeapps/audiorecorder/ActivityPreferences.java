@@ -16,6 +16,7 @@ import android.view.MenuItem;
 public class ActivityPreferences extends PreferenceActivity implements SharedPreferences.OnSharedPreferenceChangeListener {
 
     public static final String KEY_LIST_PREFERENCE = "listPref";
+    public static final String KEY_WAV_STORAGE_PREFERENCE = "wavStoragePref";
     public static final String BOOL_IS_BUSY_RECORDING_OR_PLAYING = "com.treeapps.audiorecorder.is_busy_recording_or_playing";
 
     public ListPreference mListPreference;
@@ -0,0 +1,77 @@
+package com.treeapps.audiorecorder;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Plugs the Android logging, threading and file linking into the audio engine's SPIs
+ */
+public class AndroidPlatform {
+
+    private static boolean boolIsInstalled = false;
+
+    public static synchronized void install() {
+        if (boolIsInstalled) {
+            return;
+        }
+        AudioLog.setLogger(new AudioLog.Logger() {
+            @Override
+            public void d(String strTag, String strMessage) {
+                Log.d(strTag, strMessage);
+            }
+
+            @Override
+            public void e(String strTag, String strMessage, Throwable throwable) {
+                Log.e(strTag, strMessage, throwable);
+            }
+        });
+        // Capture and playback get a thread of their own at audio priority, so that no import or export
+        // delays them. The other jobs keep the engine's own pool.
+        AudioExecutors.setCaptureExecutor(Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+                        runnable.run();
+                    }
+                }, "AudioCapture");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+        final Handler handlerMain = new Handler(Looper.getMainLooper());
+        AudioExecutors.setCallbackExecutor(new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                handlerMain.post(runnable);
+            }
+        });
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            WavContainer.setFileLinker(new WavContainer.FileLinker() {
+                @Override
+                public boolean link(File fileExisting, File fileLink) {
+                    try {
+                        Os.link(fileExisting.getPath(), fileLink.getPath());
+                        return true;
+                    } catch (ErrnoException e) {
+                        // E.g. across storage volumes, the caller copies instead
+                        return false;
+                    }
+                }
+            });
+        }
+        boolIsInstalled = true;
+    }
+}
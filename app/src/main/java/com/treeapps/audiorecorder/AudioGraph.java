@@ -48,12 +48,17 @@ public class AudioGraph extends ImageView {
         public void onChanged(PageValue pageValue);
     }
 
+    /**
+     * The listener loads a page length of data following the end cursor and hands it back through
+     * setSinglePageAfterCursorBuffer, with the same percent
+     */
     public interface OnEndCursorChangedListener {
-        public int[] getSinglePageAfterCursorBuffer(double fltPercent);
+        public void onEndCursorChanged(double fltPercent);
     }
 
     private int intPageAmount = 1;
     private long lngTimelineDataAmountInRmsFrames;
+    private final DecimalFormat decimalFormatTime = new DecimalFormat("000.00"); // Shared by every draw
 
     public class PageValue {
         public double fltPageNum = 1;
@@ -91,7 +96,7 @@ public class AudioGraph extends ImageView {
          */
         private String getFinalTimeString() {
             double fltTime = (double)(lngTimelineDataAmountInRmsFrames * fltRmsFramePeriodInMs)/1000.0f;
-            return new DecimalFormat("000.00").format(fltTime);
+            return decimalFormatTime.format(fltTime);
         }
 
         /**
@@ -101,7 +106,7 @@ public class AudioGraph extends ImageView {
         private String getPlayTimeString() {
             double fltPlayPositionInFrames = (fltPlayPercent/100.0f) * lngTimelineDataAmountInRmsFrames;
             double fltTime = (double)(fltPlayPositionInFrames * fltRmsFramePeriodInMs)/1000.0f;
-            return new DecimalFormat("000.00").format(fltTime); // String.format("%3.1f", fltTime);
+            return decimalFormatTime.format(fltTime); // String.format("%3.1f", fltTime);
         }
 
     }
@@ -183,14 +188,33 @@ public class AudioGraph extends ImageView {
     // Paging
     private PageValue pageValue = new PageValue(1, 0, 0, 0, 100);
 
-    // Graph
+    // Graph. The buffers hold at least a page and are reused, only the first intGraphRawLength values count.
+    private static final int NO_GRAPH = -1;
     private int[] intGraphRawValues;
+    private int intGraphRawLength = NO_GRAPH;
     private int[] intAfterEndCursorRawValues;
+    private double fltAfterEndCursorPercent = Double.NaN; // End cursor position a page is loading for
+    private int[] intGraphTailValues; // After end cursor data shown from intGraphTailPosition on, while recording
+    private int intGraphTailPosition = -1;
     private float[] fltGraphNormalizedValues;
-    private float[] floatGraphPoints = new float[8];
+    private int intGraphNormalizedLength = 0;
+    private boolean boolIsGraphLoading = false;
     private int intGraphValuesMax = 0;
+    private boolean boolIsGraphValuesMaxStale = true; // Look at all values for the max on the next recording update
     private double fltRmsFramePeriodInMs;
 
+    // Drawing, laid out again only when the data or the size changes
+    private float[] fltRmsFramePositionsInPx = new float[0]; // x of every RMS frame in the view
+    private float fltRmsFramePositionsGraphWidth = -1;
+    private double fltRmsFramePositionsPeriodInMs = Double.NaN;
+    private int intRmsFramePositionsPageSizeInMs = -1;
+    private float[] fltWaveLines = new float[0]; // A vertical line per RMS frame, 4 floats each
+    private int intWaveLinesLength = 0;
+    private int intWaveLaidOutAmount = 0; // RMS frames at the start whose lines are up to date
+    private Bitmap bmpStaticLayer; // Border, timeline and its time values
+    private long lngStaticLayerTimelineAmount = -1;
+    private double fltStaticLayerPeriodInMs = Double.NaN;
+
 
 
     private interface OnCursorChanged {
@@ -488,9 +512,10 @@ public class AudioGraph extends ImageView {
     private int intGraphPageAmount;
 
     public void clearGraph (){
-        intGraphRawValues = null;
+        removeGraphValues();
         intAfterEndCursorRawValues = null;
-        fltGraphNormalizedValues = null;
+        fltAfterEndCursorPercent = Double.NaN;
+        boolIsGraphLoading = false;
         intGraphPageAmount = 1;
 
         cursorGraphPlay.setValue(0);
@@ -512,32 +537,118 @@ public class AudioGraph extends ImageView {
         public void onError(String strErrorMessage);
     }
 
+    /**
+     * Draw a flat line in place of the graph until the next updateGraph, while its page loads
+     */
+    public void showGraphPlaceholder() {
+        removeGraphValues();
+        boolIsGraphLoading = true;
+        invalidate();
+    }
+
+    /**
+     * Stop drawing the placeholder, the page it stood in for could not be loaded
+     */
+    public void hideGraphPlaceholder() {
+        boolIsGraphLoading = false;
+        invalidate();
+    }
+
+    /**
+     * Hand over the page following the end cursor, as asked for by OnEndCursorChangedListener. Dropped if
+     * the end cursor moved on since.
+     * @param fltPercent - Position of the end cursor it was loaded for
+     * @param intAfterEndCursorRawValues
+     */
+    public void setSinglePageAfterCursorBuffer(double fltPercent, int[] intAfterEndCursorRawValues) {
+        if (Double.compare(fltPercent, fltAfterEndCursorPercent) == 0) {
+            this.intAfterEndCursorRawValues = intAfterEndCursorRawValues;
+        }
+    }
+
+    private void requestSinglePageAfterCursorBuffer(double fltPercent) {
+        if (onEndCursorChangedListener == null) {
+            return;
+        }
+        intAfterEndCursorRawValues = null;
+        if (fltPercent < getDataAmountAsPercent()) {
+            // Only fire event of end cursor NOT at end of data
+            fltAfterEndCursorPercent = fltPercent;
+            onEndCursorChangedListener.onEndCursorChanged(fltPercent);
+        } else {
+            fltAfterEndCursorPercent = Double.NaN;
+        }
+    }
+
     public void updateGraph (int[] intGraphNewValues) {
+        boolIsGraphLoading = false;
         intGraphValuesMax = 0;
-        intGraphRawValues = null;
+        boolIsGraphValuesMaxStale = true;
+        intGraphTailValues = null;
+        intGraphTailPosition = -1;
 
-        intGraphRawValues = new int[intGraphNewValues.length];
+        ensureGraphCapacity(intGraphNewValues.length);
         System.arraycopy(intGraphNewValues, 0, intGraphRawValues,0, intGraphNewValues.length);
+        intGraphRawLength = intGraphNewValues.length;
 
         // Find amplitude of new data
         int intMaxValue = 0;
-        for (int i = 0; i < intGraphRawValues.length; i++) {
+        for (int i = 0; i < intGraphRawLength; i++) {
             if (intGraphRawValues[i] > intMaxValue) {
                 intMaxValue = intGraphRawValues[i];
             }
         }
 
         // Normalise the complete raw graph;
-        fltGraphNormalizedValues = new float[intGraphRawValues.length];
-
-        for (int i = 0; i < intGraphRawValues.length; i++) {
+        for (int i = 0; i < intGraphRawLength; i++) {
             fltGraphNormalizedValues[i] = (intGraphRawValues[i] * 95.0f) / intMaxValue;
         }
+        intGraphNormalizedLength = intGraphRawLength;
+        intWaveLaidOutAmount = 0;
 
         invalidate();
 
     }
 
+    private void removeGraphValues() {
+        intGraphRawLength = NO_GRAPH;
+        intGraphNormalizedLength = 0;
+        intGraphTailValues = null;
+        intGraphTailPosition = -1;
+        intWaveLaidOutAmount = 0;
+    }
+
+    /**
+     * Grow the graph buffers to hold at least a page and intCapacity values, keeping their values
+     * @param intCapacity
+     */
+    private void ensureGraphCapacity(int intCapacity) {
+        intCapacity = Math.max(intCapacity, intPageSizeInRmsFrames);
+        if ((intGraphRawValues != null) && (intGraphRawValues.length >= intCapacity)) {
+            return;
+        }
+        int[] intGraphRawValuesNew = new int[intCapacity];
+        float[] fltGraphNormalizedValuesNew = new float[intCapacity];
+        if (intGraphRawValues != null) {
+            System.arraycopy(intGraphRawValues, 0, intGraphRawValuesNew, 0, Math.max(0, intGraphRawLength));
+            System.arraycopy(fltGraphNormalizedValues, 0, fltGraphNormalizedValuesNew, 0, intGraphNormalizedLength);
+        }
+        intGraphRawValues = intGraphRawValuesNew;
+        fltGraphNormalizedValues = fltGraphNormalizedValuesNew;
+    }
+
+    /**
+     * The value shown at a position of the page, the after end cursor data where it is shown, else the raw data
+     * @param intPosition
+     * @return
+     */
+    private int getGraphDisplayValue(int intPosition) {
+        if ((intGraphTailValues != null) && (intPosition >= intGraphTailPosition)) {
+            return intGraphTailValues[intPosition - intGraphTailPosition];
+        }
+        return (intPosition < intGraphRawLength) ? intGraphRawValues[intPosition] : 0;
+    }
+
     /**
      * Add new buffer data after the current play cursor
      * Clear current data up to the end cursor (if the end cursor is in the same page)
@@ -555,44 +666,23 @@ public class AudioGraph extends ImageView {
     public PageValue updateGraph(int[] intUpdateValues, PageValue currentPageValue) throws Exception {
         // Merge the raw data at the right buffer position
         BufferCursorPositions bufferCursorPositions = getBufferCursorPositionsInRmsFrames(currentPageValue);
-        int[] intCombinedValues;
         int intBufferPosition;
-        if (intGraphRawValues == null) {
+        if (intGraphRawLength == NO_GRAPH) {
             // Brand new chart
             intGraphValuesMax = 0;
+            boolIsGraphValuesMaxStale = true;
             intBufferPosition = 0;
         } else {
             // Already filled
-            intBufferPosition = intGraphRawValues.length;
+            intBufferPosition = intGraphRawLength;
         }
 
         // Play position is not on same page as current buffer - its an error
         if (bufferCursorPositions.intPlayPosition == -1) {
             throw new Exception("Play cursor must be inside the displayed page");
         }
-
-
-        // Re-use the old data where applicable
-        if ((intBufferPosition == 0) && (bufferCursorPositions.intPlayPosition == 0)) {
-            // Current play buffer and  actual buffer position is at zero, just add the new data
-            intCombinedValues = new int[intUpdateValues.length];
-        } else if (intBufferPosition < bufferCursorPositions.intPlayPosition) {
-            // Current buffer is shorter than cursor start position, start with that and pad with zeros till play cursor position
-            intCombinedValues = new int[bufferCursorPositions.intPlayPosition + intUpdateValues.length];
-            // Use all of it
-            if (intBufferPosition != 0) {
-                System.arraycopy(intGraphRawValues, 0, intCombinedValues, 0, intGraphRawValues.length);
-            }
-            // Pad the missing ones with zeros
-            Arrays.fill(intCombinedValues, intGraphRawValues.length, intCombinedValues.length-1,0);
-        } else {
-            // Current buffer is past play cursor start position
-            // Shorten current buffer
-            intCombinedValues = new int[bufferCursorPositions.intPlayPosition + intUpdateValues.length];
-            System.arraycopy(intGraphRawValues, 0, intCombinedValues, 0, bufferCursorPositions.intPlayPosition);
-        }
-        // Add the new data
-        System.arraycopy(intUpdateValues, 0, intCombinedValues, bufferCursorPositions.intPlayPosition, intUpdateValues.length);
+        int intPlayPosition = bufferCursorPositions.intPlayPosition;
+        int intCombinedLength = intPlayPosition + intUpdateValues.length;
 
         // Update cursors positions
         // Calculate new PageValue
@@ -601,49 +691,77 @@ public class AudioGraph extends ImageView {
         Log.d(TAG,"PlayPercentAfter=" + newPageValue.fltPlayPercent);
         BufferCursorPositions bufferNewCursorPositions = getBufferCursorPositionsInRmsFrames(newPageValue);
 
+        // Re-use the old data up to the play cursor, in place, padded with zeros if it is shorter
+        ensureGraphCapacity(intPlayPosition);
+        int intChangedFrom = Math.min(intBufferPosition, intPlayPosition);
+        if (intBufferPosition < intPlayPosition) {
+            Arrays.fill(intGraphRawValues, intBufferPosition, intPlayPosition, 0);
+        }
+
         // Manage paging, if an overflow into next page, just display the ones in the new page
-        if (intCombinedValues.length > intPageSizeInRmsFrames) {
-            // Overflow
-            intGraphRawValues = new int[bufferNewCursorPositions.intPlayPosition];
-            System.arraycopy(intCombinedValues, intCombinedValues.length - bufferNewCursorPositions.intPlayPosition , intGraphRawValues, 0, bufferNewCursorPositions.intPlayPosition);
+        if (intCombinedLength > intPageSizeInRmsFrames) {
+            // Overflow, keep the end of the old data followed by the new data
+            int intKeepAmount = Math.min(bufferNewCursorPositions.intPlayPosition, intCombinedLength);
+            int intKeepStart = intCombinedLength - intKeepAmount;
+            if (intKeepStart >= intPlayPosition) {
+                System.arraycopy(intUpdateValues, intKeepStart - intPlayPosition, intGraphRawValues, 0, intKeepAmount);
+            } else {
+                System.arraycopy(intGraphRawValues, intKeepStart, intGraphRawValues, 0, intPlayPosition - intKeepStart);
+                System.arraycopy(intUpdateValues, 0, intGraphRawValues, intPlayPosition - intKeepStart, intUpdateValues.length);
+            }
+            intGraphRawLength = intKeepAmount;
+            intChangedFrom = 0;
         } else {
-            // No overflow
-            intGraphRawValues = intCombinedValues;
+            // No overflow, add the new data
+            System.arraycopy(intUpdateValues, 0, intGraphRawValues, intPlayPosition, intUpdateValues.length);
+            intGraphRawLength = intCombinedLength;
         }
 
-
-
         // Determine if post-end cursor data need to be added
-        int[] intDisplayValues = intGraphRawValues;
+        int[] intTailValues = null;
+        int intTailPosition = -1;
         if (intAfterEndCursorRawValues != null) {
             if (bufferNewCursorPositions.intEndPosition != -1) {
                 // Play cursor is on current displayed page, now to add the post-end cursor data
                 if (!bufferNewCursorPositions.boolIsEndPositionAtAudioEnd) {
-                    // Only need to add post-end if cursor not at the end
-                    intDisplayValues = new int[intPageSizeInRmsFrames];
-                    int intPostEndCursorDataAmount = intPageSizeInRmsFrames - bufferNewCursorPositions.intEndPosition;
-                    System.arraycopy(intGraphRawValues, 0, intDisplayValues, 0, intGraphRawValues.length);
-                    System.arraycopy(intAfterEndCursorRawValues, 0, intDisplayValues, bufferNewCursorPositions.intEndPosition, intPostEndCursorDataAmount);
+                    // Only need to add post-end if cursor not at the end, it fills the rest of the page
+                    intTailValues = intAfterEndCursorRawValues;
+                    intTailPosition = bufferNewCursorPositions.intEndPosition;
                 }
             }
         }
-
+        if ((intTailValues != intGraphTailValues) || (intTailPosition != intGraphTailPosition)) {
+            intGraphTailValues = intTailValues;
+            intGraphTailPosition = intTailPosition;
+            intChangedFrom = 0;
+        }
+        int intDisplayLength = (intGraphTailValues != null) ? intPageSizeInRmsFrames : intGraphRawLength;
+        int intGraphNormalizedBufSize = Math.min(intPageSizeInRmsFrames, intDisplayLength);
 
         // Scale data
-        // Find amplitude of data
-        for (int i = 0; i < intDisplayValues.length; i++) {
-            if (intDisplayValues[i] > intGraphValuesMax) {
-                intGraphValuesMax = intDisplayValues[i];
+        // Find amplitude of data, it only grows so the values before intChangedFrom were looked at already
+        if (boolIsGraphValuesMaxStale) {
+            intChangedFrom = 0;
+            boolIsGraphValuesMaxStale = false;
+        }
+        int intGraphValuesMaxBefore = intGraphValuesMax;
+        for (int i = intChangedFrom; i < intGraphNormalizedBufSize; i++) {
+            int intValue = getGraphDisplayValue(i);
+            if (intValue > intGraphValuesMax) {
+                intGraphValuesMax = intValue;
             }
         }
+        if (intGraphValuesMax != intGraphValuesMaxBefore) {
+            // A new peak scales all of the graph
+            intChangedFrom = 0;
+        }
 
-        // Normalise the complete raw graph
-        int intGraphNormalizedBufSize = Math.min(intPageSizeInRmsFrames, intDisplayValues.length );
-        fltGraphNormalizedValues = new float[intGraphNormalizedBufSize];
-
-        for (int i = 0; i < intGraphNormalizedBufSize; i++) {
-            fltGraphNormalizedValues[i] = (intDisplayValues[i] * 95.0f) / intGraphValuesMax;
+        // Normalise the changed values, in place
+        for (int i = intChangedFrom; i < intGraphNormalizedBufSize; i++) {
+            fltGraphNormalizedValues[i] = (getGraphDisplayValue(i) * 95.0f) / intGraphValuesMax;
         }
+        intGraphNormalizedLength = intGraphNormalizedBufSize;
+        intWaveLaidOutAmount = Math.min(intWaveLaidOutAmount, intChangedFrom);
         // End of scaling
 
 
@@ -887,38 +1005,14 @@ public class AudioGraph extends ImageView {
         if (isInEditMode()) return;
 
         // Draw static items
-        // Draw graph border
-        canvas.drawRect(rectGraph, paintGraphFill);
-        canvas.drawRect(rectGraph, paintGraphBorder);
-        // Draw timeline
-        canvas.drawLines(new float[] {pointTimelineStart.x, pointTimelineStart.y, pointTimelineEnd.x, pointTimelineEnd.y}, paintDefault);
-
-
-
-        //Draw static positioned time values
-        canvas.drawText("000.00", rectTimeStart.left, rectTimeStart.top , paintTime);
-        canvas.drawText(pageValue.getFinalTimeString(), rectTimeEnd.left, rectTimeEnd.top, paintTime);
-        // Draw time value lines
-        canvas.drawLines(new float[] {pointTimelineStart.x, pointTimelineStart.y, pointTimelineStart.x, rectTimeStart.top - 2* intTimeHeight}, paintGraphBorder);
-        canvas.drawLines(new float[] {pointTimelineEnd.x, pointTimelineStart.y, pointTimelineEnd.x, rectTimeEnd.top - 2* intTimeHeight}, paintGraphBorder);
-
+        canvas.drawBitmap(getStaticLayer(), 0, 0, null);
 
         // Draw graph
-        if (fltGraphNormalizedValues != null) {
-            float intGraphHalfHeight = rectGraph.height()/2;
-            for (int i = 0; i < fltGraphNormalizedValues.length - 1; i++) {
-                floatGraphPoints[0] = rectGraph.left + getRmsFramePositionInPx(i);
-                floatGraphPoints[1] = (rectGraph.top  + intGraphHalfHeight) - (fltGraphNormalizedValues[i]  * intGraphHalfHeight) / 100;
-                floatGraphPoints[2] = rectGraph.left + getRmsFramePositionInPx(i);
-                floatGraphPoints[3] = (rectGraph.top  + intGraphHalfHeight) + (fltGraphNormalizedValues[i]  * intGraphHalfHeight) / 100;
-
-                floatGraphPoints[4] = rectGraph.left + getRmsFramePositionInPx(i + 1);
-                floatGraphPoints[5] = (rectGraph.top  + intGraphHalfHeight) - (fltGraphNormalizedValues[i + 1]  * intGraphHalfHeight) / 100;
-                floatGraphPoints[6] = rectGraph.left + getRmsFramePositionInPx(i + 1);
-                floatGraphPoints[7] = (rectGraph.top  + intGraphHalfHeight) + (fltGraphNormalizedValues[i + 1]  * intGraphHalfHeight) / 100;
-
-                canvas.drawLines(floatGraphPoints, paintWave);
-            }
+        if (intGraphRawLength != NO_GRAPH) {
+            layoutWave();
+            canvas.drawLines(fltWaveLines, 0, intWaveLinesLength, paintWave);
+        } else if (boolIsGraphLoading) {
+            canvas.drawLine(rectGraph.left, rectGraph.centerY(), rectGraph.right, rectGraph.centerY(), paintWave);
         }
 
         // Draw graph cursors
@@ -945,6 +1039,89 @@ public class AudioGraph extends ImageView {
 
 
 
+    /**
+     * The static items, painted into a layer of the size of the view. Painted again only when the size or
+     * the length of the timeline changes.
+     * @return
+     */
+    private Bitmap getStaticLayer() {
+        if ((bmpStaticLayer == null) || (bmpStaticLayer.getWidth() != getWidth()) || (bmpStaticLayer.getHeight() != getHeight())
+                || (lngStaticLayerTimelineAmount != lngTimelineDataAmountInRmsFrames)
+                || (Double.compare(fltStaticLayerPeriodInMs, fltRmsFramePeriodInMs) != 0)) {
+            if (bmpStaticLayer != null) {
+                bmpStaticLayer.recycle();
+            }
+            bmpStaticLayer = Bitmap.createBitmap(Math.max(1, getWidth()), Math.max(1, getHeight()), Bitmap.Config.ARGB_8888);
+            drawStaticItems(new Canvas(bmpStaticLayer));
+            lngStaticLayerTimelineAmount = lngTimelineDataAmountInRmsFrames;
+            fltStaticLayerPeriodInMs = fltRmsFramePeriodInMs;
+        }
+        return bmpStaticLayer;
+    }
+
+    private void drawStaticItems(Canvas canvas) {
+        // Draw graph border
+        canvas.drawRect(rectGraph, paintGraphFill);
+        canvas.drawRect(rectGraph, paintGraphBorder);
+        // Draw timeline
+        canvas.drawLine(pointTimelineStart.x, pointTimelineStart.y, pointTimelineEnd.x, pointTimelineEnd.y, paintDefault);
+
+        //Draw static positioned time values
+        canvas.drawText("000.00", rectTimeStart.left, rectTimeStart.top , paintTime);
+        canvas.drawText(pageValue.getFinalTimeString(), rectTimeEnd.left, rectTimeEnd.top, paintTime);
+        // Draw time value lines
+        canvas.drawLine(pointTimelineStart.x, pointTimelineStart.y, pointTimelineStart.x, rectTimeStart.top - 2* intTimeHeight, paintGraphBorder);
+        canvas.drawLine(pointTimelineEnd.x, pointTimelineStart.y, pointTimelineEnd.x, rectTimeEnd.top - 2* intTimeHeight, paintGraphBorder);
+    }
+
+    /**
+     * Lay out the wave as one vertical line per RMS frame into fltWaveLines, for a single drawLines. Only the
+     * lines from intWaveLaidOutAmount on are laid out, so a recording update costs the values it added. The x
+     * of the RMS frames is looked up, it is computed again only when the size of the graph or the page changes.
+     */
+    private void layoutWave() {
+        int intValuesAmount = intGraphNormalizedLength;
+        if ((fltRmsFramePositionsInPx.length < intValuesAmount) || (fltRmsFramePositionsGraphWidth != rectGraph.width())
+                || (intRmsFramePositionsPageSizeInMs != intPageSizeInMs)
+                || (Double.compare(fltRmsFramePositionsPeriodInMs, fltRmsFramePeriodInMs) != 0)) {
+            fltRmsFramePositionsInPx = new float[Math.max(intValuesAmount, intPageSizeInRmsFrames + 1)];
+            for (int i = 0; i < fltRmsFramePositionsInPx.length; i++) {
+                fltRmsFramePositionsInPx[i] = rectGraph.left + getRmsFramePositionInPx(i);
+            }
+            fltRmsFramePositionsGraphWidth = rectGraph.width();
+            intRmsFramePositionsPageSizeInMs = intPageSizeInMs;
+            fltRmsFramePositionsPeriodInMs = fltRmsFramePeriodInMs;
+            intWaveLaidOutAmount = 0;
+        }
+        if (fltWaveLines.length < intValuesAmount * 4) {
+            fltWaveLines = new float[Math.max(intValuesAmount, intPageSizeInRmsFrames) * 4];
+            intWaveLaidOutAmount = 0;
+        }
+        float fltGraphCenter = rectGraph.top + rectGraph.height()/2;
+        float fltScale = (rectGraph.height()/2) / 100;
+        // A single value draws nothing, as before
+        int intLinesAmount = (intValuesAmount < 2) ? 0 : intValuesAmount;
+        for (int i = intWaveLaidOutAmount; i < intLinesAmount; i++) {
+            float fltHalfLength = fltGraphNormalizedValues[i] * fltScale;
+            int j = i * 4;
+            fltWaveLines[j] = fltRmsFramePositionsInPx[i];
+            fltWaveLines[j + 1] = fltGraphCenter - fltHalfLength;
+            fltWaveLines[j + 2] = fltRmsFramePositionsInPx[i];
+            fltWaveLines[j + 3] = fltGraphCenter + fltHalfLength;
+        }
+        intWaveLinesLength = intLinesAmount * 4;
+        intWaveLaidOutAmount = intLinesAmount;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (bmpStaticLayer != null) {
+            bmpStaticLayer.recycle();
+            bmpStaticLayer = null;
+        }
+    }
+
     float getRmsFramePositionInPx(int intRmsFrameNum) {
         float fltRmsFramePosInMs = (float) (intRmsFrameNum * fltRmsFramePeriodInMs);
         float fltRmsFramePosInPageInPx = (fltRmsFramePosInMs/intPageSizeInMs) * rectGraph.width();
@@ -1604,15 +1781,7 @@ public class AudioGraph extends ImageView {
             cursorGraphEnd.setToCursorTimelineValue(fltEndCursorPercent);
 
             // Trigger event if registered, to save a page length of data following the end cursor
-            if (onEndCursorChangedListener != null) {
-                double fltDataAmountAsPercent = getDataAmountAsPercent();
-                if (this.fltValue < fltDataAmountAsPercent) {
-                    // Only fire event of end cursor NOT at end of data
-                    intAfterEndCursorRawValues = onEndCursorChangedListener.getSinglePageAfterCursorBuffer(this.fltValue);
-                } else {
-                    intAfterEndCursorRawValues = null;
-                }
-            }
+            requestSinglePageAfterCursorBuffer(this.fltValue);
 
         }
 
@@ -1635,15 +1804,7 @@ public class AudioGraph extends ImageView {
             setValue(fltOwnValue);
 
             // Trigger event if registered, to save a page length of data following the end cursor
-            if (onEndCursorChangedListener != null) {
-                double fltDataAmountAsPercent = getDataAmountAsPercent();
-                if (fltOwnValue < fltDataAmountAsPercent) {
-                    // Only fire event of end cursor NOT at end of data
-                    intAfterEndCursorRawValues = onEndCursorChangedListener.getSinglePageAfterCursorBuffer(fltOwnValue);
-                } else {
-                    intAfterEndCursorRawValues = null;
-                }
-            }
+            requestSinglePageAfterCursorBuffer(fltOwnValue);
         }
 
     }
@@ -1662,8 +1823,9 @@ public class AudioGraph extends ImageView {
         private int intRadiusInPx;
         private int intPageColor = Color.parseColor(PAGE_COLOR);
 
-        public PointF pointLeftSide;
-        public PointF pointRightSide;
+        public PointF pointLeftSide = new PointF();
+        public PointF pointRightSide = new PointF();
+        private RectF rectPage = new RectF(); // Reused by every draw
 
         public CursorTimelinePage(Bitmap bmpImageNormal, Bitmap bmpImagePressed, HotSpotType hotSpotType, OnCursorChanged onCursorChanged) {
             super(bmpImageNormal, bmpImagePressed, hotSpotType, onCursorChanged);
@@ -1758,10 +1920,10 @@ public class AudioGraph extends ImageView {
             float fltPageHalfWidth = fltPageWidth/2;
 
             // Draw page rect
-            RectF rectPage = new RectF(0,0, fltPageHalfWidth, intCursorHalfHeight );
+            rectPage.set(0,0, fltPageHalfWidth, intCursorHalfHeight );
             // Draw left side
-            pointLeftSide = new PointF(rectHotspot.centerX() - fltPageHalfWidth, rectHotspot.centerY());
-            pointRightSide = new PointF(pointLeftSide.x + fltPageWidth, rectHotspot.centerY());
+            pointLeftSide.set(rectHotspot.centerX() - fltPageHalfWidth, rectHotspot.centerY());
+            pointRightSide.set(pointLeftSide.x + fltPageWidth, rectHotspot.centerY());
             rectPage.offsetTo(rectHotspot.centerX() - fltPageHalfWidth, rectHotspot.centerY() - intCursorQuarterHeight);
             // canvas.drawRoundRect(rectPage,intRadiusInPx, intRadiusInPx, paintPageCursor);
             canvas.drawRect(rectPage, paintPageCursor);
@@ -1772,8 +1934,6 @@ public class AudioGraph extends ImageView {
 
             // Draw hotspot
             super.draw(canvas, boolIsNormal);
-            Log.d("TAG", "fltValue 4 = " + fltValue);
-            Log.d("TAG", "rectHotspot.centerX() = " + rectHotspot.centerX());
         }
 
         public double getTimelineValue(double fltValueAsPercentInsidePage) {
@@ -0,0 +1,68 @@
+package com.treeapps.audiorecorder;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+
+import java.io.IOException;
+
+/**
+ * The device microphone as an AudioSource
+ */
+public class AudioRecordSource implements AudioSource {
+
+    private final int intSampleRate;
+    private final int minBufferSize;
+    private AudioRecord audioRecord;
+
+    public AudioRecordSource(int intSampleRate) {
+        this.intSampleRate = intSampleRate;
+        this.minBufferSize = AudioRecord.getMinBufferSize(intSampleRate, AudioFormat.CHANNEL_IN_MONO,
+                AudioFormat.ENCODING_PCM_16BIT);
+    }
+
+    @Override
+    public int getSampleRate() {
+        return intSampleRate;
+    }
+
+    @Override
+    public int getBufferSizeInShorts() {
+        return minBufferSize / 2;
+    }
+
+    @Override
+    public void start() throws IOException {
+        audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, intSampleRate,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, minBufferSize);
+        if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+            release();
+            throw new IOException("Microphone could not be initialized");
+        }
+        audioRecord.startRecording();
+    }
+
+    @Override
+    public int read(short[] audioData, int intOffset, int intLength) throws IOException {
+        int numberOfShort = audioRecord.read(audioData, intOffset, intLength);
+        if (numberOfShort < 0) {
+            throw new IOException("Microphone read failed with error " + numberOfShort);
+        }
+        return numberOfShort;
+    }
+
+    @Override
+    public void stop() {
+        if ((audioRecord != null) && (audioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING)) {
+            audioRecord.stop();
+        }
+    }
+
+    @Override
+    public void release() {
+        if (audioRecord != null) {
+            audioRecord.release();
+            audioRecord = null;
+        }
+    }
+}
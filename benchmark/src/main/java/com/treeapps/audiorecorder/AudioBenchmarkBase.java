@@ -0,0 +1,39 @@
+package com.treeapps.audiorecorder;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Common fixture: a work folder with the current sample loaded, for every supported sample rate
+ * and for 1 minute, 1 hour and 8 hour recordings. Narrow down with e.g. -p intDurationInSeconds=60
+ */
+public abstract class AudioBenchmarkBase {
+
+    public static final int GRAPH_PAGE_SIZE_IN_MS = 10000; // As in ActivityAudioRecorder
+
+    @Param({"11025", "16000", "22050", "44100"})
+    public int intSampleRate;
+
+    @Param({"60", "3600", "28800"})
+    public int intDurationInSeconds;
+
+    protected File fileWorkFolder;
+    protected AudioLib audioLib;
+    protected AudioLib.AudioSample audioSampleCurrent;
+
+    @Setup
+    public void setupFixture() throws IOException {
+        fileWorkFolder = BenchmarkData.createWorkFolder();
+        audioLib = new AudioLib(fileWorkFolder.getPath());
+        audioSampleCurrent = BenchmarkData.loadSample(audioLib, "audiocurrent", intSampleRate, intDurationInSeconds);
+    }
+
+    @TearDown
+    public void tearDownFixture() {
+        BenchmarkData.deleteFolder(fileWorkFolder);
+    }
+}
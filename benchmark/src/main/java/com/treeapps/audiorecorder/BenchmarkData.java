@@ -0,0 +1,148 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Generates and caches the audio the benchmarks run on. Files are deterministic, so results stay
+ * comparable between commits, and are only generated once per data folder.
+ */
+public class BenchmarkData {
+
+    private static final String TAG = "BenchmarkData";
+    private static int intWorkFolderCounter = 0;
+
+    public static File getDataDir() {
+        File fileDataDir = new File(System.getProperty("benchmark.dataDir", "build/benchmark-data"));
+        fileDataDir.mkdirs();
+        return fileDataDir;
+    }
+
+    /**
+     * Get a .pcm file of speech-like audio: noise bursts of varying loudness with short pauses
+     * @param intSampleRate
+     * @param intDurationInSeconds
+     * @return
+     * @throws IOException
+     */
+    public static synchronized File getPcmFile(int intSampleRate, int intDurationInSeconds) throws IOException {
+        long lngSizeInShorts = (long) intSampleRate * intDurationInSeconds;
+        File filePcm = new File(getDataDir(), "speech_" + intSampleRate + "_" + intDurationInSeconds + ".pcm");
+        if (filePcm.exists() && (filePcm.length() == PcmFormat.HEADER_SIZE + lngSizeInShorts * 2)
+                && (PcmFormat.readVersion(filePcm) == PcmFormat.VERSION)) {
+            return filePcm;
+        }
+        AudioLog.d(TAG, "Generating " + filePcm.getName());
+        File fileTemp = new File(filePcm.getPath() + ".tmp");
+        FileChannel channel = new FileOutputStream(fileTemp).getChannel();
+        try {
+            PcmFormat.writeHeader(channel);
+            ByteBuffer byteBuffer = ByteBuffer.allocate(64 * 1024).order(PcmFormat.BYTE_ORDER);
+            Random random = new Random(intSampleRate * 31L + intDurationInSeconds);
+            int intSyllableSize = intSampleRate / 5;
+            double fltLoudness = 0;
+            short sPrevious = 0;
+            for (long i = 0; i < lngSizeInShorts; i++) {
+                if (i % intSyllableSize == 0) {
+                    fltLoudness = random.nextInt(4) == 0 ? 0 : 2000 + random.nextInt(10000);
+                }
+                // Low passed noise, roughly the spectrum of voiced speech
+                short s = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, random.nextGaussian() * fltLoudness));
+                sPrevious = (short) ((sPrevious + s) / 2);
+                if (!byteBuffer.hasRemaining()) {
+                    writeFully(channel, byteBuffer);
+                }
+                byteBuffer.putShort(sPrevious);
+            }
+            writeFully(channel, byteBuffer);
+        } finally {
+            channel.close();
+        }
+        if (!fileTemp.renameTo(filePcm)) {
+            throw new IOException("Could not create " + filePcm.getName());
+        }
+        return filePcm;
+    }
+
+    /**
+     * Get the same audio as getPcmFile, as a 16 bit mono WAV file
+     * @param intSampleRate
+     * @param intDurationInSeconds
+     * @return
+     * @throws IOException
+     */
+    public static synchronized File getWavFile(int intSampleRate, int intDurationInSeconds) throws IOException {
+        File fileWav = new File(getDataDir(), "speech_" + intSampleRate + "_" + intDurationInSeconds + ".wav");
+        long lngSizeInBytes = (long) intSampleRate * intDurationInSeconds * 2 + 44;
+        if (fileWav.exists() && fileWav.length() == lngSizeInBytes) {
+            return fileWav;
+        }
+        File fileWorkFolder = createWorkFolder();
+        AudioLib audioLib = new AudioLib(fileWorkFolder.getPath());
+        AudioLib.AudioSample audioSample = loadSample(audioLib, "source", intSampleRate, intDurationInSeconds);
+        new WavCodec().writeFile(audioSample, intSampleRate, fileWav);
+        deleteFolder(fileWorkFolder);
+        return fileWav;
+    }
+
+    /**
+     * Load a sample in the AudioLib's folder without copying the cached audio: the sample's own file
+     * becomes a hard link to it, so edits that rename or delete the own file leave the cache alone. Trims
+     * shorten the own file in place, so only trim copies of the sample, never the sample itself.
+     * @param audioLib
+     * @param strFilenameWithoutExt
+     * @param intSampleRate
+     * @param intDurationInSeconds
+     * @return
+     * @throws IOException
+     */
+    public static AudioLib.AudioSample loadSample(AudioLib audioLib, String strFilenameWithoutExt, int intSampleRate, int intDurationInSeconds) throws IOException {
+        File filePcm = getPcmFile(intSampleRate, intDurationInSeconds);
+        AudioLib.AudioSample audioSample = audioLib.new AudioSample(strFilenameWithoutExt);
+        audioSample.clear();
+        try {
+            Files.createLink(audioSample.filePathPcm.toPath(), filePcm.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(filePcm.toPath(), audioSample.filePathPcm.toPath());
+        }
+        audioSample.updateFileSize();
+        return audioSample;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer byteBuffer) throws IOException {
+        byteBuffer.flip();
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+        byteBuffer.clear();
+    }
+
+    public static synchronized File createWorkFolder() {
+        File fileWorkFolder;
+        do {
+            intWorkFolderCounter += 1;
+            fileWorkFolder = new File(getDataDir(), "work_" + System.nanoTime() + "_" + intWorkFolderCounter);
+        } while (fileWorkFolder.exists());
+        fileWorkFolder.mkdirs();
+        return fileWorkFolder;
+    }
+
+    public static void deleteFolder(File fileFolder) {
+        File[] files = fileFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteFolder(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        fileFolder.delete();
+    }
+}
@@ -0,0 +1,79 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Runs the recording pipeline against a stand-in audio source, for as long as a real session would
+ * last or faster, and reports write throughput and overruns. Arguments are key=value pairs:
+ *
+ *   source=speech|sine|sweep|noise|<file.wav>  sampleRate=44100  durationInSeconds=3600
+ *   speedFactor=1 (0 = as fast as possible)  bufferSizeInShorts=2048  minReadSizeInShorts/maxReadSizeInShorts
+ *   jitterInMs=0  stallIntervalInMs=0  stallDurationInMs=0  ringSizeInSeconds=4
+ */
+public class CaptureSoakTest {
+
+    private static final int RMS_FRAME_SIZE_IN_SHORTS = 400;
+    private static final int WRITE_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        HashMap<String, String> arguments = new HashMap<String, String>();
+        for (String strArg : args) {
+            int intIndex = strArg.indexOf('=');
+            if (intIndex > 0) {
+                arguments.put(strArg.substring(0, intIndex), strArg.substring(intIndex + 1));
+            }
+        }
+        String strSource = get(arguments, "source", "speech");
+        int intSampleRate = Integer.parseInt(get(arguments, "sampleRate", "44100"));
+        long lngDurationInSeconds = Long.parseLong(get(arguments, "durationInSeconds", "3600"));
+        int intBufferSizeInShorts = Integer.parseInt(get(arguments, "bufferSizeInShorts", "2048"));
+
+        PacedAudioSource audioSource;
+        if (strSource.endsWith(".wav")) {
+            audioSource = new WavReplayAudioSource(new File(strSource), true, intBufferSizeInShorts, 0);
+        } else {
+            audioSource = new SyntheticAudioSource(SyntheticAudioSource.Signal.valueOf(strSource.toUpperCase()), intSampleRate,
+                    intBufferSizeInShorts, 0);
+        }
+        audioSource.setSpeedFactor(Double.parseDouble(get(arguments, "speedFactor", "1")))
+                .setReadSize(Integer.parseInt(get(arguments, "minReadSizeInShorts", "" + intBufferSizeInShorts)),
+                        Integer.parseInt(get(arguments, "maxReadSizeInShorts", "" + intBufferSizeInShorts)))
+                .setJitter(Integer.parseInt(get(arguments, "jitterInMs", "0")))
+                .setStalls(Integer.parseInt(get(arguments, "stallIntervalInMs", "0")), Integer.parseInt(get(arguments, "stallDurationInMs", "0")))
+                .setDuration(lngDurationInSeconds * 1000);
+
+        File fileWorkFolder = BenchmarkData.createWorkFolder();
+        File filePcm = new File(fileWorkFolder, "soak.pcm");
+        AudioCapture audioCapture = new AudioCapture(audioSource, filePcm,
+                Integer.parseInt(get(arguments, "ringSizeInSeconds", "4")), WRITE_BUFFER_SIZE_IN_BYTES, RMS_FRAME_SIZE_IN_SHORTS, 10,
+                new RmsAnalysis.OnRmsFramesListener() {
+                    @Override
+                    public boolean onRmsFrames(int[] intRmsFrames) {
+                        return false;
+                    }
+                });
+        try {
+            audioCapture.run();
+
+            CaptureRing captureRing = audioCapture.getCaptureRing();
+            double fltElapsedInSeconds = audioCapture.getElapsedNanos() / 1e9;
+            long lngBytesWritten = audioCapture.getShortsWritten() * 2;
+            System.out.println("Source:           " + strSource + " at " + audioSource.getSampleRate() + " Hz, " + lngDurationInSeconds + " s");
+            System.out.println("Elapsed:          " + String.format("%.1f s", fltElapsedInSeconds));
+            System.out.println("Written:          " + lngBytesWritten + " bytes, file " + filePcm.length() + " bytes");
+            System.out.println("Write throughput: " + String.format("%.1f MB/s", lngBytesWritten / 1e6 / fltElapsedInSeconds));
+            System.out.println("Overruns:         " + captureRing.getOverrunCount() + " blocks, " + captureRing.getOverrunShorts() + " shorts lost");
+            System.out.println("High-water mark:  " + captureRing.getHighWaterMarkInBlocks() + "/" + captureRing.getCapacityInBlocks() + " blocks");
+            System.out.println("Injected stalls:  " + audioSource.getStallCount());
+        } finally {
+            BenchmarkData.deleteFolder(fileWorkFolder);
+        }
+    }
+
+    private static String get(HashMap<String, String> arguments, String strKey, String strDefault) {
+        String strValue = arguments.get(strKey);
+        return (strValue == null) ? strDefault : strValue;
+    }
+}
@@ -0,0 +1,75 @@
+package com.treeapps.audiorecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The edit operations behind recording over a selection and deleting between cursors. Each invocation
+ * starts from a fresh copy of the current sample.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EditBenchmark extends AudioBenchmarkBase {
+
+    private AudioLib.AudioSample audioSampleInsert;
+    private AudioLib.AudioSample audioSampleEdit;
+    private ArrayList<AudioLib.AudioSample> audioSamplesToMerge;
+    private long lngSizeInBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        audioSampleInsert = BenchmarkData.loadSample(audioLib, "audioinsert", intSampleRate, 60);
+        audioSampleEdit = audioLib.new AudioSample("audioedit", audioSampleCurrent);
+        audioSamplesToMerge = new ArrayList<AudioLib.AudioSample>();
+        audioSamplesToMerge.add(audioSampleCurrent);
+        audioSamplesToMerge.add(audioSampleInsert);
+        audioSamplesToMerge.add(audioSampleCurrent);
+        lngSizeInBytes = audioSampleCurrent.getSizeInBytes();
+    }
+
+    @Setup(Level.Invocation)
+    public void resetEdit() throws IOException {
+        audioSampleEdit.copyFrom(audioSampleCurrent);
+    }
+
+    @Benchmark
+    public AudioLib.AudioSample trimLeft() throws IOException {
+        audioSampleEdit.trimLeft(lngSizeInBytes / 2);
+        return audioSampleEdit;
+    }
+
+    @Benchmark
+    public AudioLib.AudioSample trimRight() throws IOException {
+        audioSampleEdit.trimRight(lngSizeInBytes / 2);
+        return audioSampleEdit;
+    }
+
+    @Benchmark
+    public AudioLib.AudioSample mergeInto() throws IOException {
+        audioSampleEdit.mergeInto(audioSamplesToMerge);
+        return audioSampleEdit;
+    }
+
+    @Benchmark
+    public AudioLib.AudioSample replaceRange() throws IOException {
+        audioSampleEdit.replaceRange(lngSizeInBytes / 3, (lngSizeInBytes * 2) / 3, audioSampleInsert);
+        return audioSampleEdit;
+    }
+}
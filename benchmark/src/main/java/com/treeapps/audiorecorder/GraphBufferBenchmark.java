@@ -0,0 +1,92 @@
+package com.treeapps.audiorecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One graph page of RMS frames, as computed when paging through the timeline. Pages are visited
+ * in a fixed scattered order so that consecutive calls do not hit the same data, and the page cache is
+ * emptied before each, so that every page gets computed. flipBackAndForth pages between two neighbours,
+ * which the page cache answers. readEverySample computes the same pages from every sample, which is what
+ * getGraphBuffer costs without the waveform index. At 11025 Hz a page of 1080 px has RMS frames of 102
+ * samples, setup checks that those are answered from the index too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GraphBufferBenchmark extends AudioBenchmarkBase {
+
+    @Param({"1080"})
+    public int intPageWidthInPx;
+
+    private double fltRmsFrameSizeInShorts;
+    private long lngPageAmount;
+    private long lngPage = 0;
+    private long lngFlip = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        audioSampleCurrent.updateIndex();
+        fltRmsFrameSizeInShorts = (intSampleRate * (GRAPH_PAGE_SIZE_IN_MS / 1000.0)) / intPageWidthInPx;
+        lngPageAmount = Math.max(1, audioSampleCurrent.getDataAmountInRmsFrames(fltRmsFrameSizeInShorts) / intPageWidthInPx);
+        if (PcmIndex.getLevelForFrameSize((int) fltRmsFrameSizeInShorts) < 0) {
+            throw new IllegalStateException("RMS frames of " + fltRmsFrameSizeInShorts + " samples are not answered from the index");
+        }
+    }
+
+    @Benchmark
+    public int[] getGraphBuffer() throws IOException {
+        lngPage = (lngPage + 7919) % lngPageAmount;
+        AudioLib.getGraphPageCache().clear();
+        return audioSampleCurrent.getGraphBuffer(lngPage * intPageWidthInPx, intPageWidthInPx, fltRmsFrameSizeInShorts);
+    }
+
+    @Benchmark
+    public int[] readEverySample() throws IOException {
+        lngPage = (lngPage + 7919) % lngPageAmount;
+        int intRmsFrameSizeInShorts = (int) fltRmsFrameSizeInShorts;
+        long lngPosition = (long) (lngPage * intPageWidthInPx * fltRmsFrameSizeInShorts);
+        long lngEndShort = Math.min(audioSampleCurrent.lngSizePcmInShorts, lngPosition + (long) (intPageWidthInPx * fltRmsFrameSizeInShorts));
+        short[] s = new short[intRmsFrameSizeInShorts];
+        int[] intRmsBuffer = new int[intPageWidthInPx];
+        PcmReader pcmReader = audioSampleCurrent.openReader();
+        try {
+            for (int i = 0; (i < intRmsBuffer.length) && (lngPosition < lngEndShort); i++) {
+                int intRead = pcmReader.read(lngPosition, s, 0, (int) Math.min(s.length, lngEndShort - lngPosition));
+                if (intRead <= 0) {
+                    break;
+                }
+                lngPosition += intRead;
+                double sum = 0;
+                for (int j = 0; j < intRead; j++) {
+                    sum += s[j] * s[j];
+                }
+                intRmsBuffer[i] = (int) Math.sqrt(sum / intRead);
+            }
+        } finally {
+            pcmReader.close();
+        }
+        return intRmsBuffer;
+    }
+
+    @Benchmark
+    public int[] flipBackAndForth() throws IOException {
+        lngFlip = (lngFlip + 1) % Math.min(2, lngPageAmount);
+        return audioSampleCurrent.getGraphBuffer(lngFlip * intPageWidthInPx, intPageWidthInPx, fltRmsFrameSizeInShorts);
+    }
+}
@@ -0,0 +1,38 @@
+package com.treeapps.audiorecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the waveform index of a freshly imported or recorded sample
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class PcmIndexBenchmark extends AudioBenchmarkBase {
+
+    @Setup(Level.Invocation)
+    public void deleteIndex() {
+        PcmIndex.delete(audioSampleCurrent.filePathPcm);
+    }
+
+    @Benchmark
+    public void updateIndex() throws IOException {
+        audioSampleCurrent.updateIndex();
+    }
+}
@@ -0,0 +1,82 @@
+package com.treeapps.audiorecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting the current sample to another rate, as done when the sample rate preference changes, on one
+ * thread and on all cores. streamBlocks is the single pass path taken while importing a WAV file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class ResamplerBenchmark extends AudioBenchmarkBase {
+
+    private static final int BLOCK_SIZE_IN_SHORTS = 128 * 1024;
+
+    @Param({"11025", "16000", "22050", "44100", "48000"})
+    public int intToSampleRate;
+
+    private Resampler resampler;
+    private File fileConverted;
+    private short[] audioDataBlock = new short[BLOCK_SIZE_IN_SHORTS];
+    private PcmReader pcmReader;
+
+    @Setup
+    public void setup() throws IOException {
+        resampler = new Resampler(intSampleRate, intToSampleRate);
+        fileConverted = new File(fileWorkFolder, "resampled.pcm");
+        pcmReader = audioSampleCurrent.openReader();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pcmReader.close();
+    }
+
+    @Benchmark
+    public File convertSingleThread() throws IOException {
+        resampler.convert(audioSampleCurrent, fileConverted, 1);
+        return fileConverted;
+    }
+
+    @Benchmark
+    public File convertAllCores() throws IOException {
+        resampler.convert(audioSampleCurrent, fileConverted, Runtime.getRuntime().availableProcessors());
+        return fileConverted;
+    }
+
+    @Benchmark
+    public long streamBlocks() throws IOException {
+        Resampler.Stream stream = resampler.new Stream();
+        long lngChecksum = 0;
+        long lngPosition = 0;
+        int intRead;
+        while ((intRead = pcmReader.read(lngPosition, audioDataBlock, 0, BLOCK_SIZE_IN_SHORTS)) > 0) {
+            short[] audioDataOut = stream.write(audioDataBlock, 0, intRead);
+            if (stream.getOutputLength() > 0) {
+                lngChecksum += audioDataOut[stream.getOutputLength() - 1];
+            }
+            lngPosition += intRead;
+        }
+        stream.finish();
+        return lngChecksum + stream.getOutputLength();
+    }
+}
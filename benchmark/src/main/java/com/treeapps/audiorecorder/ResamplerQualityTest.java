@@ -0,0 +1,116 @@
+package com.treeapps.audiorecorder;
+
+import java.util.HashMap;
+
+/**
+ * Measures the conversion quality of Resampler between every pair of supported rates. A sine is streamed
+ * through the converter and compared with the ideal sine at the output rate, skipping the filter transients
+ * at both ends. Reported per pair:
+ *
+ *   SNR of tones at 100 Hz, 1 kHz and 0.8 of the lower Nyquist frequency
+ *   Rejection of a tone just above the lower Nyquist frequency, which would alias back when downsampling
+ *
+ * Arguments are key=value pairs: durationInSeconds=4  amplitude=12000
+ */
+public class ResamplerQualityTest {
+
+    private static final int[] SAMPLE_RATES = {11025, 16000, 22050, 44100, 48000};
+    private static final int BLOCK_SIZE_IN_SHORTS = 4096;
+
+    public static void main(String[] args) {
+        HashMap<String, String> arguments = new HashMap<String, String>();
+        for (String strArg : args) {
+            int intIndex = strArg.indexOf('=');
+            if (intIndex > 0) {
+                arguments.put(strArg.substring(0, intIndex), strArg.substring(intIndex + 1));
+            }
+        }
+        int intDurationInSeconds = Integer.parseInt(get(arguments, "durationInSeconds", "4"));
+        double dblAmplitude = Double.parseDouble(get(arguments, "amplitude", "12000"));
+
+        System.out.println(" From     To   SNR 100 Hz   SNR 1 kHz   SNR 0.8 Nyq   Rejection 1.1 Nyq");
+        double dblWorstSnr = Double.MAX_VALUE;
+        for (int intFromRate : SAMPLE_RATES) {
+            for (int intToRate : SAMPLE_RATES) {
+                Resampler resampler = new Resampler(intFromRate, intToRate);
+                double dblNyquist = Math.min(intFromRate, intToRate) / 2.0;
+                double dblSnr100 = measureSnr(resampler, 100, dblAmplitude, intDurationInSeconds);
+                double dblSnr1k = measureSnr(resampler, 1000, dblAmplitude, intDurationInSeconds);
+                double dblSnrHigh = measureSnr(resampler, dblNyquist * 0.8, dblAmplitude, intDurationInSeconds);
+                dblWorstSnr = Math.min(dblWorstSnr, Math.min(dblSnr100, Math.min(dblSnr1k, dblSnrHigh)));
+                String strRejection = "-";
+                if (intToRate < intFromRate) {
+                    strRejection = String.format("%.1f dB", measureRejection(resampler, dblNyquist * 1.1, dblAmplitude, intDurationInSeconds));
+                }
+                System.out.println(String.format("%5d  %5d  %8.1f dB  %7.1f dB  %9.1f dB  %18s",
+                        intFromRate, intToRate, dblSnr100, dblSnr1k, dblSnrHigh, strRejection));
+            }
+        }
+        System.out.println(String.format("Worst SNR %.1f dB", dblWorstSnr));
+    }
+
+    /**
+     * @return Ratio in dB of the ideal output to the difference between the ideal and the actual output
+     */
+    private static double measureSnr(Resampler resampler, double dblFrequency, double dblAmplitude, int intDurationInSeconds) {
+        short[] audioDataOut = convertSine(resampler, dblFrequency, dblAmplitude, intDurationInSeconds);
+        int intToRate = resampler.getToRate();
+        double dblSignal = 0;
+        double dblError = 0;
+        for (int i = getSkip(intToRate); i < audioDataOut.length - getSkip(intToRate); i++) {
+            double dblIdeal = dblAmplitude * Math.sin(2 * Math.PI * dblFrequency * i / intToRate);
+            dblSignal += dblIdeal * dblIdeal;
+            dblError += (audioDataOut[i] - dblIdeal) * (audioDataOut[i] - dblIdeal);
+        }
+        return 10 * Math.log10(dblSignal / Math.max(dblError, 1e-9));
+    }
+
+    /**
+     * @return Ratio in dB of the input power to whatever power is left at the output
+     */
+    private static double measureRejection(Resampler resampler, double dblFrequency, double dblAmplitude, int intDurationInSeconds) {
+        short[] audioDataOut = convertSine(resampler, dblFrequency, dblAmplitude, intDurationInSeconds);
+        int intToRate = resampler.getToRate();
+        double dblResidual = 0;
+        int intCount = 0;
+        for (int i = getSkip(intToRate); i < audioDataOut.length - getSkip(intToRate); i++) {
+            dblResidual += (double) audioDataOut[i] * audioDataOut[i];
+            intCount += 1;
+        }
+        double dblSignal = dblAmplitude * dblAmplitude / 2;
+        return 10 * Math.log10(dblSignal / Math.max(dblResidual / intCount, 1e-9));
+    }
+
+    private static short[] convertSine(Resampler resampler, double dblFrequency, double dblAmplitude, int intDurationInSeconds) {
+        int intFromRate = resampler.getFromRate();
+        int intLength = intFromRate * intDurationInSeconds;
+        short[] audioDataOut = new short[(int) resampler.getOutputLength(intLength)];
+        short[] audioDataBlock = new short[BLOCK_SIZE_IN_SHORTS];
+        Resampler.Stream stream = resampler.new Stream();
+        int intOutPosition = 0;
+        for (int intPosition = 0; intPosition < intLength; intPosition += BLOCK_SIZE_IN_SHORTS) {
+            int intBlockLength = Math.min(BLOCK_SIZE_IN_SHORTS, intLength - intPosition);
+            for (int i = 0; i < intBlockLength; i++) {
+                audioDataBlock[i] = (short) Math.round(dblAmplitude * Math.sin(2 * Math.PI * dblFrequency * (intPosition + i) / intFromRate));
+            }
+            short[] audioDataResampled = stream.write(audioDataBlock, 0, intBlockLength);
+            System.arraycopy(audioDataResampled, 0, audioDataOut, intOutPosition, stream.getOutputLength());
+            intOutPosition += stream.getOutputLength();
+        }
+        short[] audioDataResampled = stream.finish();
+        System.arraycopy(audioDataResampled, 0, audioDataOut, intOutPosition, stream.getOutputLength());
+        return audioDataOut;
+    }
+
+    /**
+     * @return Samples at either end left out of the measurement, 200 ms
+     */
+    private static int getSkip(int intSampleRate) {
+        return intSampleRate / 5;
+    }
+
+    private static String get(HashMap<String, String> arguments, String strKey, String strDefault) {
+        String strValue = arguments.get(strKey);
+        return (strValue == null) ? strDefault : strValue;
+    }
+}
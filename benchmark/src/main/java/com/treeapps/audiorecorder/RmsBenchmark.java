@@ -0,0 +1,65 @@
+package com.treeapps.audiorecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The RMS analysis run on captured audio while recording. One operation analyses one second of audio.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RmsBenchmark {
+
+    @Param({"11025", "16000", "22050", "44100"})
+    public int intSampleRate;
+
+    @Param({"1080"})
+    public int intPageWidthInPx;
+
+    private short[] audioData;
+    private RmsAnalysis rmsAnalysis;
+    private long lngChecksum = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        audioData = new short[intSampleRate];
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(BenchmarkData.getPcmFile(intSampleRate, 60))));
+        for (int i = 0; i < audioData.length; i++) {
+            audioData[i] = dis.readShort();
+        }
+        dis.close();
+        int intRmsFrameSizeInShorts = (int) ((intSampleRate * (AudioBenchmarkBase.GRAPH_PAGE_SIZE_IN_MS / 1000.0)) / intPageWidthInPx);
+        rmsAnalysis = new RmsAnalysis(null, null, intRmsFrameSizeInShorts, 10, new RmsAnalysis.OnRmsFramesListener() {
+            @Override
+            public boolean onRmsFrames(int[] intRmsFrames) {
+                lngChecksum += intRmsFrames[0];
+                return false;
+            }
+        });
+    }
+
+    @Benchmark
+    public long analyse() {
+        rmsAnalysis.analyse(audioData, audioData.length);
+        return lngChecksum;
+    }
+}
@@ -0,0 +1,89 @@
+package com.treeapps.audiorecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trims of a sample's own file, where the unused part of the file gets given back. Before each invocation
+ * the own file is recreated as a sparse file of the requested length, which keeps the setup cheap for
+ * 8 hour recordings. trimRight and a small trimLeft should cost the same for every length, only a trimLeft
+ * that drops most of the file moves what is left.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TrimBenchmark {
+
+    @Param({"44100"})
+    public int intSampleRate;
+
+    @Param({"60", "3600", "28800"})
+    public int intDurationInSeconds;
+
+    private File fileWorkFolder;
+    private AudioLib.AudioSample audioSampleEdit;
+    private long lngSizeInBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        fileWorkFolder = BenchmarkData.createWorkFolder();
+        AudioLib audioLib = new AudioLib(fileWorkFolder.getPath());
+        audioSampleEdit = audioLib.new AudioSample("audioedit");
+        lngSizeInBytes = (long) intSampleRate * intDurationInSeconds * 2;
+    }
+
+    @Setup(Level.Invocation)
+    public void resetEdit() throws IOException {
+        audioSampleEdit.clear();
+        RandomAccessFile raf = new RandomAccessFile(audioSampleEdit.filePathPcm, "rw");
+        try {
+            PcmFormat.writeHeader(raf.getChannel());
+            raf.setLength(PcmFormat.HEADER_SIZE + lngSizeInBytes);
+        } finally {
+            raf.close();
+        }
+        audioSampleEdit.updateFileSize();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.deleteFolder(fileWorkFolder);
+    }
+
+    @Benchmark
+    public AudioLib.AudioSample trimRight() throws IOException {
+        audioSampleEdit.trimRight(lngSizeInBytes / 2);
+        return audioSampleEdit;
+    }
+
+    @Benchmark
+    public AudioLib.AudioSample trimLeft() throws IOException {
+        audioSampleEdit.trimLeft(lngSizeInBytes / 10);
+        return audioSampleEdit;
+    }
+
+    @Benchmark
+    public AudioLib.AudioSample trimLeftMost() throws IOException {
+        audioSampleEdit.trimLeft((lngSizeInBytes * 9) / 10);
+        return audioSampleEdit;
+    }
+}
@@ -0,0 +1,51 @@
+package com.treeapps.audiorecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Importing a WAV file into the working sample (Open) and exporting it again (Save/Mail)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class WavCodecBenchmark extends AudioBenchmarkBase {
+
+    private File fileInputWav;
+    private File fileOutputWav;
+    private AudioLib.AudioSample audioSampleImport;
+
+    @Setup
+    public void setup() throws IOException {
+        fileInputWav = BenchmarkData.getWavFile(intSampleRate, intDurationInSeconds);
+        fileOutputWav = new File(fileWorkFolder, "export.wav");
+        audioSampleImport = audioLib.new AudioSample("audioimport");
+    }
+
+    @Benchmark
+    public AudioLib.AudioSample readFile() throws IOException {
+        new WavCodec().readFile(fileInputWav, audioSampleImport);
+        return audioSampleImport;
+    }
+
+    @Benchmark
+    public File writeFile() throws IOException {
+        new WavCodec().writeFile(audioSampleCurrent, intSampleRate, fileOutputWav);
+        return fileOutputWav;
+    }
+}
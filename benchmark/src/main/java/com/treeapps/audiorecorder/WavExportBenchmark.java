@@ -0,0 +1,75 @@
+package com.treeapps.audiorecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exporting the working sample to WAV (Save/Mail) on a growing amount of threads, next to the previous
+ * export that went through the audio one 20 ms frame at a time
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class WavExportBenchmark extends AudioBenchmarkBase {
+
+    @Param({"1", "2", "4"})
+    public int intThreadAmount;
+
+    private File fileOutputWav;
+
+    @Setup
+    public void setup() throws IOException {
+        fileOutputWav = new File(fileWorkFolder, "export.wav");
+    }
+
+    @Benchmark
+    public File writeFile() throws IOException {
+        new WavCodec().writeFile(audioSampleCurrent, intSampleRate, fileOutputWav, intThreadAmount);
+        return fileOutputWav;
+    }
+
+    @Benchmark
+    public File writeFileByFrame() throws IOException {
+        DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileOutputWav), 16 * 1024));
+        try {
+            dout.write(new byte[44]);
+            int intFrameSize = intSampleRate / 50;
+            PcmReader pcmReader = audioSampleCurrent.openReader();
+            short[] s = new short[intFrameSize];
+            ByteBuffer buffer = ByteBuffer.allocate(intFrameSize * 2).order(ByteOrder.LITTLE_ENDIAN);
+            long lngPosition = 0;
+            int i;
+            while ((i = pcmReader.read(lngPosition, s, 0, intFrameSize)) > -1) {
+                lngPosition += i;
+                buffer.clear();
+                buffer.asShortBuffer().put(s, 0, i);
+                dout.write(buffer.array(), 0, i * 2);
+            }
+            pcmReader.close();
+        } finally {
+            dout.close();
+        }
+        return fileOutputWav;
+    }
+}
@@ -0,0 +1,284 @@
+package com.treeapps.audiorecorder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming a whole WAV file through Wave.WavFile in frame buffers. The perByte benchmarks run the same
+ * files through the per byte readSample/writeSample loop Wave.WavFile used before its bulk codecs, as the
+ * baseline to compare with. readFramesParallel scans disjoint regions of one file from a thread per core
+ * through the positional readFrames. writeFramesStreaming writes without giving the length up front.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class WaveBenchmark extends AudioBenchmarkBase {
+
+    private static final int FRAME_BUFFER_SIZE = 4096;
+
+    @Param({"1", "2"})
+    public int intChannels;
+
+    @Param({"16", "24"})
+    public int intValidBits;
+
+    private File fileInputWav;
+    private File fileOutputWav;
+    private long lngFrameAmount;
+    private short[] sampleBuffer;
+
+    @Setup
+    public void setup() throws IOException, Wave.WavFileException {
+        lngFrameAmount = (long) intSampleRate * intDurationInSeconds;
+        sampleBuffer = new short[FRAME_BUFFER_SIZE * intChannels];
+        fileOutputWav = new File(fileWorkFolder, "frames.wav");
+        if ((intChannels == 1) && (intValidBits == 16)) {
+            fileInputWav = BenchmarkData.getWavFile(intSampleRate, intDurationInSeconds);
+        } else {
+            fileInputWav = new File(fileWorkFolder, "input.wav");
+            for (int i = 0; i < sampleBuffer.length; i++) {
+                sampleBuffer[i] = (short) (i * 31);
+            }
+            writeFrames(fileInputWav);
+        }
+    }
+
+    @Benchmark
+    public long readFrames() throws IOException, Wave.WavFileException {
+        Wave.WavFile wavFile = Wave.WavFile.openWavFile(fileInputWav);
+        long lngChecksum = 0;
+        int intFramesRead;
+        while ((intFramesRead = wavFile.readFrames(sampleBuffer, FRAME_BUFFER_SIZE)) > 0) {
+            lngChecksum += sampleBuffer[intFramesRead * intChannels - 1];
+        }
+        wavFile.close();
+        return lngChecksum;
+    }
+
+    @Benchmark
+    public long readFramesParallel() throws IOException, Wave.WavFileException, InterruptedException, ExecutionException {
+        final Wave.WavFile wavFile = Wave.WavFile.openWavFile(fileInputWav);
+        int intThreadAmount = Runtime.getRuntime().availableProcessors();
+        ExecutorService executorService = Executors.newFixedThreadPool(intThreadAmount);
+        try {
+            long lngRegionSize = (wavFile.getNumFrames() + intThreadAmount - 1) / intThreadAmount;
+            ArrayList<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (int i = 0; i < intThreadAmount; i++) {
+                final long lngStartFrame = i * lngRegionSize;
+                final long lngEndFrame = Math.min(wavFile.getNumFrames(), lngStartFrame + lngRegionSize);
+                futures.add(executorService.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        short[] sampleBufferRegion = new short[FRAME_BUFFER_SIZE * intChannels];
+                        long lngChecksum = 0;
+                        long lngFrame = lngStartFrame;
+                        while (lngFrame < lngEndFrame) {
+                            int intFramesRead = wavFile.readFrames(lngFrame, sampleBufferRegion, (int) Math.min(FRAME_BUFFER_SIZE, lngEndFrame - lngFrame));
+                            if (intFramesRead == 0) {
+                                break;
+                            }
+                            lngChecksum += sampleBufferRegion[intFramesRead * intChannels - 1];
+                            lngFrame += intFramesRead;
+                        }
+                        return lngChecksum;
+                    }
+                }));
+            }
+            long lngChecksum = 0;
+            for (Future<Long> future : futures) {
+                lngChecksum += future.get();
+            }
+            return lngChecksum;
+        } finally {
+            executorService.shutdown();
+            wavFile.close();
+        }
+    }
+
+    @Benchmark
+    public File writeFrames() throws IOException, Wave.WavFileException {
+        return writeFrames(fileOutputWav);
+    }
+
+    @Benchmark
+    public File writeFramesStreaming() throws IOException, Wave.WavFileException {
+        Wave.WavFile wavFile = Wave.WavFile.newStreamingWavFile(fileOutputWav, intChannels, intValidBits, intSampleRate);
+        long lngFramesWritten = 0;
+        while (lngFramesWritten < lngFrameAmount) {
+            int intFrames = (int) Math.min(FRAME_BUFFER_SIZE, lngFrameAmount - lngFramesWritten);
+            lngFramesWritten += wavFile.writeFrames(sampleBuffer, intFrames);
+        }
+        wavFile.close();
+        return fileOutputWav;
+    }
+
+    @Benchmark
+    public long readFramesPerByte() throws IOException, Wave.WavFileException {
+        PerByteReader perByteReader = new PerByteReader(fileInputWav);
+        long lngChecksum = 0;
+        int intFramesRead;
+        while ((intFramesRead = perByteReader.readFrames(sampleBuffer, FRAME_BUFFER_SIZE)) > 0) {
+            lngChecksum += sampleBuffer[intFramesRead * intChannels - 1];
+        }
+        perByteReader.close();
+        return lngChecksum;
+    }
+
+    @Benchmark
+    public File writeFramesPerByte() throws IOException, Wave.WavFileException {
+        // Header is written by Wave.WavFile, the samples by the per byte loop
+        Wave.WavFile.newWavFile(fileOutputWav, intChannels, 0, intValidBits, intSampleRate).close();
+        PerByteWriter perByteWriter = new PerByteWriter(fileOutputWav, (intValidBits + 7) / 8);
+        long lngFramesWritten = 0;
+        while (lngFramesWritten < lngFrameAmount) {
+            int intFrames = (int) Math.min(FRAME_BUFFER_SIZE, lngFrameAmount - lngFramesWritten);
+            perByteWriter.writeSamples(sampleBuffer, intFrames * intChannels);
+            lngFramesWritten += intFrames;
+        }
+        perByteWriter.close();
+        return fileOutputWav;
+    }
+
+    private File writeFrames(File fileWav) throws IOException, Wave.WavFileException {
+        Wave.WavFile wavFile = Wave.WavFile.newWavFile(fileWav, intChannels, lngFrameAmount, intValidBits, intSampleRate);
+        long lngFramesWritten = 0;
+        while (lngFramesWritten < lngFrameAmount) {
+            int intFrames = (int) Math.min(FRAME_BUFFER_SIZE, lngFrameAmount - lngFramesWritten);
+            lngFramesWritten += wavFile.writeFrames(sampleBuffer, intFrames);
+        }
+        wavFile.close();
+        return fileWav;
+    }
+
+    /**
+     * The sample loop of Wave.WavFile.readSample before the bulk codecs: a refill check, a branch and a
+     * shift per byte
+     */
+    private static class PerByteReader {
+
+        private final FileInputStream iStream;
+        private final byte[] buffer = new byte[FRAME_BUFFER_SIZE];
+        private final int intBytesPerSample;
+        private final int intChannels;
+        private final long lngFrameAmount;
+        private int intBufferPointer;
+        private int intBytesRead;
+        private long lngFrameCounter;
+
+        PerByteReader(File fileWav) throws IOException, Wave.WavFileException {
+            Wave.WavFile wavFile = Wave.WavFile.openWavFile(fileWav);
+            intBytesPerSample = wavFile.getBytesPerSample();
+            intChannels = wavFile.getNumChannels();
+            lngFrameAmount = wavFile.getNumFrames();
+            long lngDataOffset = wavFile.getDataOffset();
+            wavFile.close();
+            iStream = new FileInputStream(fileWav);
+            iStream.getChannel().position(lngDataOffset);
+        }
+
+        int readFrames(short[] sampleBuffer, int intFramesToRead) throws IOException, Wave.WavFileException {
+            int intOffset = 0;
+            for (int f = 0; f < intFramesToRead; f++) {
+                if (lngFrameCounter == lngFrameAmount) {
+                    return f;
+                }
+                for (int c = 0; c < intChannels; c++) {
+                    sampleBuffer[intOffset] = (short) readSample();
+                    intOffset++;
+                }
+                lngFrameCounter++;
+            }
+            return intFramesToRead;
+        }
+
+        private long readSample() throws IOException, Wave.WavFileException {
+            long val = 0;
+            for (int b = 0; b < intBytesPerSample; b++) {
+                if (intBufferPointer == intBytesRead) {
+                    int read = iStream.read(buffer, 0, buffer.length);
+                    if (read == -1) {
+                        throw new Wave.WavFileException("Not enough data available");
+                    }
+                    intBytesRead = read;
+                    intBufferPointer = 0;
+                }
+                int v = buffer[intBufferPointer];
+                if (b < intBytesPerSample - 1 || intBytesPerSample == 1) {
+                    v &= 0xFF;
+                }
+                val += v << (b * 8);
+                intBufferPointer++;
+            }
+            return val;
+        }
+
+        void close() throws IOException {
+            iStream.close();
+        }
+    }
+
+    /**
+     * The sample loop of Wave.WavFile.writeSample before the bulk codecs
+     */
+    private static class PerByteWriter {
+
+        private final FileOutputStream oStream;
+        private final byte[] buffer = new byte[FRAME_BUFFER_SIZE];
+        private final int intBytesPerSample;
+        private int intBufferPointer;
+
+        PerByteWriter(File fileWav, int intBytesPerSample) throws IOException {
+            this.intBytesPerSample = intBytesPerSample;
+            oStream = new FileOutputStream(fileWav, true);
+        }
+
+        void writeSamples(short[] sampleBuffer, int intSamples) throws IOException {
+            for (int i = 0; i < intSamples; i++) {
+                writeSample(sampleBuffer[i]);
+            }
+        }
+
+        private void writeSample(long val) throws IOException {
+            for (int b = 0; b < intBytesPerSample; b++) {
+                if (intBufferPointer == buffer.length) {
+                    oStream.write(buffer, 0, buffer.length);
+                    intBufferPointer = 0;
+                }
+                buffer[intBufferPointer] = (byte) (val & 0xFF);
+                val >>= 8;
+                intBufferPointer++;
+            }
+        }
+
+        void close() throws IOException {
+            if (intBufferPointer > 0) {
+                oStream.write(buffer, 0, intBufferPointer);
+            }
+            oStream.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+/**
+ * Records an AudioSource into a .pcm file. The capture thread (the caller of run) only fills CaptureRing
+ * blocks; a DiskWriter thread writes them out and an RmsAnalysis thread reports RMS frames and decides
+ * where the capture stops. A PcmJournal next to the .pcm file checkpoints the recording every few seconds,
+ * so that a recording cut short by the process dying can be recovered up to the last checkpoint.
+ */
+public class AudioCapture {
+
+    private final String TAG = "AudioCapture";
+    private static final int DEFAULT_CHECKPOINT_INTERVAL_IN_SECONDS = 2;
+
+    private final AudioSource audioSource;
+    private final File filePcm;
+    private final CaptureRing captureRing;
+    private final CaptureRing.DiskWriter diskWriter;
+    private final RmsAnalysis rmsAnalysis;
+    private int intCheckpointIntervalInSeconds = DEFAULT_CHECKPOINT_INTERVAL_IN_SECONDS;
+    private long lngElapsedNanos = 0;
+
+    /**
+     * @param audioSource
+     * @param filePcm - Gets overwritten
+     * @param intRingSizeInSeconds - Disk stalls up to this long are absorbed without losing audio
+     * @param intWriteBufferSizeInBytes
+     * @param intRmsFrameSizeInShorts
+     * @param intRmsFramesPerBatch
+     * @param onRmsFramesListener - Returns true to stop the capture
+     * @throws IOException
+     */
+    public AudioCapture(AudioSource audioSource, File filePcm, int intRingSizeInSeconds, int intWriteBufferSizeInBytes,
+                        int intRmsFrameSizeInShorts, int intRmsFramesPerBatch, RmsAnalysis.OnRmsFramesListener onRmsFramesListener) throws IOException {
+        this.audioSource = audioSource;
+        this.filePcm = filePcm;
+        int intBlockSizeInShorts = audioSource.getBufferSizeInShorts();
+        captureRing = new CaptureRing((audioSource.getSampleRate() * intRingSizeInSeconds) / intBlockSizeInShorts + 1,
+                intBlockSizeInShorts, 2);
+        diskWriter = new CaptureRing.DiskWriter(captureRing.getConsumer(0), null,
+                Math.max(intWriteBufferSizeInBytes, intBlockSizeInShorts * 2));
+        rmsAnalysis = new RmsAnalysis(captureRing, captureRing.getConsumer(1), intRmsFrameSizeInShorts, intRmsFramesPerBatch,
+                onRmsFramesListener);
+    }
+
+    /**
+     * @param intCheckpointIntervalInSeconds - At most this much audio is lost when the process dies, 0 to not journal
+     * @return
+     */
+    public AudioCapture setCheckpointInterval(int intCheckpointIntervalInSeconds) {
+        this.intCheckpointIntervalInSeconds = intCheckpointIntervalInSeconds;
+        return this;
+    }
+
+    /**
+     * Capture until the RMS listener asks to stop or the source runs dry. The source is released afterwards.
+     * @throws IOException
+     */
+    public void run() throws IOException {
+        RandomAccessFile rafPcm = new RandomAccessFile(filePcm, "rw");
+        rafPcm.setLength(0);
+        // An index left from the take before could pass for this one where the edges sound alike
+        PcmIndex.delete(filePcm);
+        FileChannel fileChannel = rafPcm.getChannel();
+        PcmFormat.writeHeader(fileChannel);
+        diskWriter.setChannel(fileChannel);
+        PcmJournal pcmJournal = null;
+        if (intCheckpointIntervalInSeconds > 0) {
+            pcmJournal = new PcmJournal(filePcm);
+            diskWriter.setJournal(pcmJournal, (long) audioSource.getSampleRate() * intCheckpointIntervalInSeconds);
+        }
+        Thread threadDiskWriter = new Thread(diskWriter, "CaptureDiskWriter");
+        Thread threadRmsAnalysis = new Thread(rmsAnalysis, "CaptureRmsAnalysis");
+        long lngStartNanos = System.nanoTime();
+
+        try {
+            threadDiskWriter.start();
+            threadRmsAnalysis.start();
+            audioSource.start();
+
+            while (!captureRing.isStopRequested()) {
+                short[] audioData = captureRing.acquireBlock();
+                int numberOfShort = audioSource.read(audioData, 0, audioData.length);
+                if (numberOfShort < 0) {
+                    break;
+                }
+                if (numberOfShort > 0) {
+                    captureRing.publishBlock(numberOfShort);
+                }
+            }
+        } finally {
+            audioSource.stop();
+            audioSource.release();
+            captureRing.close();
+            try {
+                threadDiskWriter.join();
+                threadRmsAnalysis.join();
+            } catch (InterruptedException e) {
+                AudioLog.e(TAG, "Interrupted while draining the capture", e);
+            }
+            // Ensure the amount of data in the file ties up with the RMS frames reported
+            long lngStopAtShort = captureRing.getStopAtShort();
+            if ((lngStopAtShort >= 0) && (diskWriter.getException() == null)) {
+                fileChannel.truncate(PcmFormat.HEADER_SIZE + lngStopAtShort * 2);
+            }
+            try {
+                if ((pcmJournal != null) && (diskWriter.getException() == null)) {
+                    pcmJournal.finish(fileChannel, (fileChannel.size() - PcmFormat.HEADER_SIZE) / 2);
+                }
+            } finally {
+                if (pcmJournal != null) {
+                    pcmJournal.close();
+                }
+                rafPcm.close();
+            }
+            lngElapsedNanos = System.nanoTime() - lngStartNanos;
+            AudioLog.d(TAG, "Capture done, high-water mark " + captureRing.getHighWaterMarkInBlocks() + "/" + captureRing.getCapacityInBlocks()
+                    + " blocks, " + captureRing.getOverrunCount() + " overruns losing " + captureRing.getOverrunShorts() + " shorts");
+        }
+        if (diskWriter.getException() != null) {
+            throw diskWriter.getException();
+        }
+    }
+
+    public CaptureRing getCaptureRing() {
+        return captureRing;
+    }
+
+    public long getShortsWritten() {
+        return diskWriter.getShortsWritten();
+    }
+
+    public long getElapsedNanos() {
+        return lngElapsedNanos;
+    }
+}
@@ -0,0 +1,107 @@
+package com.treeapps.audiorecorder;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor SPI of the audio engine, with a lane per kind of work so that one kind never queues behind another.
+ * Capture and playback run on the capture executor, which starts a thread for every job that finds none idle
+ * and runs it at the highest priority. Long running engine work (WAV import/export, sample rate conversion)
+ * runs on the background executor, a pool of a few threads. Pages of the graph are computed on the graph
+ * executor, one thread, so that paging stays quick during an export. Completion is reported on the callback executor.
+ * The host installs its own, e.g. one that delivers callbacks on the UI thread. By default callbacks are
+ * delivered on the thread of the job.
+ */
+public class AudioExecutors {
+
+    private static final int BACKGROUND_POOL_MAX_SIZE = 2;
+    private static final long IDLE_THREAD_TIMEOUT_IN_SECONDS = 30;
+
+    private static volatile Executor executorCapture;
+    private static volatile Executor executorBackground;
+    private static volatile Executor executorGraph;
+    private static volatile Executor executorCallback;
+
+    public static void setCaptureExecutor(Executor executor) {
+        executorCapture = executor;
+    }
+
+    public static void setBackgroundExecutor(Executor executor) {
+        executorBackground = executor;
+    }
+
+    public static void setGraphExecutor(Executor executor) {
+        executorGraph = executor;
+    }
+
+    public static void setCallbackExecutor(Executor executor) {
+        executorCallback = executor;
+    }
+
+    public static synchronized Executor getCaptureExecutor() {
+        if (executorCapture == null) {
+            executorCapture = Executors.newCachedThreadPool(createThreadFactory("AudioCapture", Thread.MAX_PRIORITY));
+        }
+        return executorCapture;
+    }
+
+    public static synchronized Executor getBackgroundExecutor() {
+        if (executorBackground == null) {
+            executorBackground = createDefaultBackgroundExecutor();
+        }
+        return executorBackground;
+    }
+
+    public static synchronized Executor getGraphExecutor() {
+        if (executorGraph == null) {
+            executorGraph = Executors.newSingleThreadExecutor(createThreadFactory("AudioGraph", Thread.NORM_PRIORITY));
+        }
+        return executorGraph;
+    }
+
+    public static Executor getCallbackExecutor() {
+        Executor executor = executorCallback;
+        if (executor == null) {
+            executor = new Executor() {
+                @Override
+                public void execute(Runnable runnable) {
+                    runnable.run();
+                }
+            };
+            executorCallback = executor;
+        }
+        return executor;
+    }
+
+    /**
+     * Up to one thread less than there are cores, so that capture keeps a core, and at least one. Jobs
+     * beyond that wait in line. Idle threads end, a recorder that is left open holds none.
+     */
+    private static ExecutorService createDefaultBackgroundExecutor() {
+        int intPoolSize = Math.max(1, Math.min(BACKGROUND_POOL_MAX_SIZE, Runtime.getRuntime().availableProcessors() - 1));
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(intPoolSize, intPoolSize,
+                IDLE_THREAD_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                createThreadFactory("AudioEngine", Thread.NORM_PRIORITY - 1));
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    private static ThreadFactory createThreadFactory(final String strName, final int intPriority) {
+        final AtomicInteger intThreadCount = new AtomicInteger(0);
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, strName + "-" + intThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(intPriority);
+                return thread;
+            }
+        };
+    }
+}
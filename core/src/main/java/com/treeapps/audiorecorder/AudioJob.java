@@ -0,0 +1,134 @@
+package com.treeapps.audiorecorder;
+
+import java.io.InterruptedIOException;
+
+/**
+ * A piece of engine work for one of the AudioExecutors lanes. The job is its own cancellation token: the
+ * work polls it between blocks through checkCancelled, which ends it with an InterruptedIOException. Progress
+ * is reported in whole percents on the callback executor, and the time the job waited in its lane and ran is
+ * logged when it is done.
+ */
+public abstract class AudioJob implements Runnable {
+
+    private static final String TAG = "AudioJob";
+
+    public interface OnProgressListener {
+        public void onProgress(AudioJob audioJob, int intPercent);
+    }
+
+    private final String strName;
+    private final long lngCreatedNanos;
+    private volatile long lngStartedNanos = 0;
+    private volatile long lngDoneNanos = 0;
+    private volatile boolean boolIsCancelled = false;
+    private volatile OnProgressListener onProgressListener = null;
+    private volatile int intPercent = -1;
+
+    /**
+     * @param strName - Shows in the log
+     */
+    public AudioJob(String strName) {
+        this.strName = strName;
+        this.lngCreatedNanos = System.nanoTime();
+    }
+
+    /**
+     * The work itself, errors are for it to report
+     */
+    protected abstract void work();
+
+    @Override
+    public final void run() {
+        lngStartedNanos = System.nanoTime();
+        try {
+            work();
+        } finally {
+            lngDoneNanos = System.nanoTime();
+            AudioLog.d(TAG, strName + (boolIsCancelled ? " cancelled" : " done") + ", waited " + getWaitTimeInMs() + " ms, ran " + getRunTimeInMs() + " ms");
+        }
+    }
+
+    public String getName() {
+        return strName;
+    }
+
+    /**
+     * Ask the work to stop at its next check. A job that has not started yet stops at its first.
+     */
+    public void cancel() {
+        boolIsCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return boolIsCancelled;
+    }
+
+    /**
+     * @throws InterruptedIOException - If the job got cancelled
+     */
+    public void checkCancelled() throws InterruptedIOException {
+        if (boolIsCancelled) {
+            throw new InterruptedIOException(strName + " cancelled");
+        }
+    }
+
+    /**
+     * @param onProgressListener - Called on the callback executor, null for none
+     * @return
+     */
+    public AudioJob setOnProgressListener(OnProgressListener onProgressListener) {
+        this.onProgressListener = onProgressListener;
+        return this;
+    }
+
+    /**
+     * Report how far the work got. The listener only hears of changes of a whole percent, so the work can
+     * call this for every block, from any of its threads.
+     * @param lngDone
+     * @param lngTotal
+     */
+    public synchronized void setProgress(long lngDone, long lngTotal) {
+        int intPercentNew = (lngTotal <= 0) ? 100 : (int) (Math.min(lngDone, lngTotal) * 100 / lngTotal);
+        if (intPercentNew == intPercent) {
+            return;
+        }
+        intPercent = intPercentNew;
+        final OnProgressListener listener = onProgressListener;
+        if (listener == null) {
+            return;
+        }
+        final int intPercentReported = intPercentNew;
+        AudioExecutors.getCallbackExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onProgress(AudioJob.this, intPercentReported);
+            }
+        });
+    }
+
+    /**
+     * @return Last percent reported, -1 before the first
+     */
+    public int getProgress() {
+        return intPercent;
+    }
+
+    /**
+     * @return Time from creation to start, or to now if not started yet
+     */
+    public long getWaitTimeInMs() {
+        long lngStarted = (lngStartedNanos == 0) ? System.nanoTime() : lngStartedNanos;
+        return (lngStarted - lngCreatedNanos) / 1000000;
+    }
+
+    /**
+     * @return Time from start to done, or to now if still running. 0 if not started yet
+     */
+    public long getRunTimeInMs() {
+        if (lngStartedNanos == 0) {
+            return 0;
+        }
+        long lngDone = (lngDoneNanos == 0) ? System.nanoTime() : lngDoneNanos;
+        return (lngDone - lngStartedNanos) / 1000000;
+    }
+}
@@ -0,0 +1,1066 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by HeinrichWork on 11/02/2015.
+ */
+public class AudioLib {
+
+    private final String TAG = "AudioLib";
+    private final String strAudioSubfolderName = "audio";
+    private static final String PIECE_FILENAME_PREFIX = "piece_";
+    private static final int MAX_PIECE_AMOUNT = 1024; // Compact the piece table once edits fragment it beyond this
+    private static final AtomicInteger intPieceFileCounter = new AtomicInteger(0); // Freezes run on the background lane too
+    private static final int TEST_SIGNAL_DURATION_IN_MS = 10000;
+    private static final long GRAPH_PAGE_CACHE_SIZE_IN_BYTES = 2 * 1024 * 1024;
+
+
+    private String strWorkFolderPath;
+    private static final AtomicLong lngVersionCounter = new AtomicLong(0);
+    private static final GraphPageCache graphPageCache = new GraphPageCache(GRAPH_PAGE_CACHE_SIZE_IN_BYTES);
+    private static final HashSet<String> foldersMigrated = new HashSet<String>();
+    private static final HashSet<File> filesLinkedOut = new HashSet<File>(); // Hard linked by publishContainer
+
+    public AudioLib(String strFolderPath) {
+        strWorkFolderPath = strFolderPath + "/" + strAudioSubfolderName;
+        File fileDir = new File(strWorkFolderPath);
+        if (!fileDir.exists()) {
+            fileDir.mkdirs();
+        }
+    }
+
+    /**
+     * Bring the files of the folder to the current PcmFormat, once per process. Samples must not be opened
+     * before this is done.
+     * @throws IOException
+     */
+    public void migrate() throws IOException {
+        synchronized (foldersMigrated) {
+            if (foldersMigrated.contains(strWorkFolderPath)) {
+                return;
+            }
+            PcmFormat.migrateFolder(new File(strWorkFolderPath));
+            foldersMigrated.add(strWorkFolderPath);
+        }
+    }
+
+    /**
+     * Migrate on the background executor. A failure is logged, the files that could not be converted are
+     * read as they are.
+     * @param onDone - Called on the callback executor when done, can be null
+     * @return The job
+     */
+    public AudioJob migrateAsync(final Runnable onDone) {
+        AudioJob audioJob = new AudioJob("Migrate " + strWorkFolderPath) {
+            @Override
+            protected void work() {
+                try {
+                    migrate();
+                } catch (IOException e) {
+                    AudioLog.e(TAG, "Could not migrate the audio files", e);
+                } finally {
+                    if (onDone != null) {
+                        AudioExecutors.getCallbackExecutor().execute(onDone);
+                    }
+                }
+            }
+        };
+        AudioExecutors.getBackgroundExecutor().execute(audioJob);
+        return audioJob;
+    }
+
+    /**
+     * Open a sample in the storage mode asked for. A sample that was left in the other mode, by an earlier session
+     * or by a version that only kept .pcm files, is taken over: its piece table if it has a manifest, otherwise
+     * its own file, which then becomes a piece file. No audio is copied, the mode can be switched any time.
+     * @param strFilenameWithoutExt
+     * @param boolIsWavStorage - Keep the own file as a WAV file, so that saving it needs no conversion
+     * @return
+     * @throws IOException
+     */
+    public AudioSample openSample(String strFilenameWithoutExt, boolean boolIsWavStorage) throws IOException {
+        File fileOwn = getOwnFile(strFilenameWithoutExt, boolIsWavStorage);
+        File fileOther = getOwnFile(strFilenameWithoutExt, !boolIsWavStorage);
+        boolean boolIsInOtherMode = !fileOwn.exists() && !PcmManifest.exists(fileOwn)
+                && (fileOther.exists() || PcmManifest.exists(fileOther));
+        AudioSample audioSample = new AudioSample(strFilenameWithoutExt, boolIsWavStorage);
+        if (boolIsInOtherMode) {
+            AudioSample audioSampleOther = new AudioSample(strFilenameWithoutExt, !boolIsWavStorage);
+            audioSample.copyFrom(audioSampleOther);
+            audioSample.boolIsRestored = audioSampleOther.boolIsRestored;
+            PcmManifest.delete(fileOther);
+            AudioLog.d(TAG, "Took over " + fileOther.getName() + " as " + fileOwn.getName() + ", size " + audioSample.lngSizePcmInShorts);
+        }
+        return audioSample;
+    }
+
+    private File getOwnFile(String strFilenameWithoutExt, boolean boolIsWavStorage) {
+        return new File(strWorkFolderPath + "/" + strFilenameWithoutExt + (boolIsWavStorage ? WavContainer.CONTAINER_EXT : PcmFormat.PCM_EXT));
+    }
+
+    /**
+     * @return The pages of RMS frames that getGraphBuffer computed, with their hit rate. One for the process,
+     * the versions of the piece tables are unique across libraries.
+     */
+    public static GraphPageCache getGraphPageCache() {
+        return graphPageCache;
+    }
+
+    /**
+     * A span of bytes inside an immutable PCM file
+     */
+    public static class Piece {
+        public final File file;
+        public final long lngOffsetInBytes;
+        public final long lngLengthInBytes;
+
+        public Piece(File file, long lngOffsetInBytes, long lngLengthInBytes) {
+            this.file = file;
+            this.lngOffsetInBytes = lngOffsetInBytes;
+            this.lngLengthInBytes = lngLengthInBytes;
+        }
+    }
+
+    /**
+     * A version of a sample's piece table, with its size. Never changed once published: an edit publishes a
+     * new one, so whoever took it sees the pieces, size and version of one and the same state.
+     */
+    public static class PieceTable {
+        public final List<Piece> pieces;
+        public final long lngSizeInShorts;
+        public final long lngVersion; // Unique to this piece table, pages of the graph are cached by it
+
+        PieceTable(ArrayList<Piece> pieces) {
+            this.pieces = Collections.unmodifiableList(pieces);
+            long lngSizeInBytes = 0;
+            for (Piece piece : pieces) {
+                lngSizeInBytes += piece.lngLengthInBytes;
+            }
+            this.lngSizeInShorts = lngSizeInBytes / 2;
+            this.lngVersion = lngVersionCounter.incrementAndGet();
+        }
+    }
+
+    /**
+     * The audio of an AudioSample is described by a piece table, an ordered list of spans over PCM files.
+     * Edits (trim, delete, insert, merge) only rework this list, the audio bytes themselves are never copied.
+     * A sample's own file (filePathPcm) is the only file that may still be written to, as soon as its pieces
+     * are shared with another sample it gets renamed to a unique piece file, which is never written to again.
+     * The own file is either a plain .pcm file or, in WAV storage, a WavContainer that can be saved as is.
+     */
+    public class AudioSample {
+        public File filePathPcm;
+        public volatile long lngSizePcmInShorts; // Frame is a short. Size of pieceTable, use that to see both at once
+        private volatile PieceTable pieceTable = new PieceTable(new ArrayList<Piece>());
+        private PcmReader pcmReaderShared = null; // Handed out by openReader for pieceTableReader
+        private PieceTable pieceTableReader = null;
+        private boolean boolIsRecovered = false;
+        private boolean boolIsRestored = false;
+        private boolean boolIsReclaimPending = false; // Put off while a reader of an older piece table had the own file
+
+
+        /**
+         * Creates a new audio object. A recording into its file that never got merged is recovered up to
+         * its last checkpoint, otherwise the piece table the sample had in the last session is read back.
+         * @param strFilenameWithoutExt
+         * @throws IOException
+         */
+        public AudioSample(String strFilenameWithoutExt) throws IOException {
+            this(strFilenameWithoutExt, false);
+        }
+
+        /**
+         * Creates a new audio object
+         * @param strFilenameWithoutExt
+         * @param boolIsWavStorage - Keep the own file as a WAV file, so that saving it needs no conversion
+         * @throws IOException
+         */
+        public AudioSample(String strFilenameWithoutExt, boolean boolIsWavStorage) throws IOException {
+
+            this.filePathPcm = getOwnFile(strFilenameWithoutExt, boolIsWavStorage);
+
+            try {
+                ArrayList<Piece> piecesRestored = null;
+                if (this.filePathPcm.exists() && PcmJournal.exists(filePathPcm)) {
+                    boolIsRecovered = (PcmJournal.recover(filePathPcm) > 0);
+                } else {
+                    piecesRestored = PcmManifest.read(filePathPcm);
+                }
+                if (piecesRestored != null) {
+                    setPieces(piecesRestored);
+                    boolIsRestored = true;
+                } else if (this.filePathPcm.exists()) {
+                    updateFileSize();
+                } else {
+                    setPieces(new ArrayList<Piece>());
+                }
+            } catch (FileNotFoundException e) {
+                AudioLog.e(TAG, "File not found when creating AudioSample", e);
+                setPieces(new ArrayList<Piece>());
+            } catch (IOException e) {
+                AudioLog.e(TAG, "IO exception when creating AudioSample", e);
+                setPieces(new ArrayList<Piece>());
+            }
+
+        }
+
+        public void clear() {
+            if (this.filePathPcm.exists()) {
+                this.filePathPcm.delete();
+            }
+            PcmIndex.delete(this.filePathPcm);
+            PcmJournal.delete(this.filePathPcm);
+            boolIsRecovered = false;
+            setPieces(new ArrayList<Piece>());
+        }
+
+        /**
+         * @return True if the sample holds a recording that got cut short and was recovered when opened
+         */
+        public boolean isRecovered() {
+            return boolIsRecovered;
+        }
+
+        /**
+         * @return True if the piece table got read back from the manifest of the last session. Otherwise the
+         * sample only knows of its own file, piece files it held before may not be referenced by anything.
+         */
+        public boolean isRestored() {
+            return boolIsRestored;
+        }
+
+        public String getFullFilename() {
+            return filePathPcm.getAbsolutePath();
+        }
+
+        /**
+         * RMS frames of a page of the graph. A page that was computed before for the same piece table is
+         * taken from the library's GraphPageCache, without reading the disk.
+         * @param fltRmsStartFrame
+         * @param intRmsFramesAmount
+         * @param fltRmsFrameSizeInSingles
+         * @return
+         * @throws IOException
+         */
+        public int[] getGraphBuffer(double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles) throws IOException {
+            if (!exists()) {
+                throw new IOException("CurrentFile does not exist");
+            }
+            PieceTable pieceTablePage = pieceTable;
+            int[] intRmsBuffer = graphPageCache.get(pieceTablePage.lngVersion, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles);
+            if (intRmsBuffer == null) {
+                intRmsBuffer = readGraphBuffer(pieceTablePage, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles);
+                graphPageCache.put(pieceTablePage.lngVersion, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles, intRmsBuffer);
+            }
+            return intRmsBuffer;
+        }
+
+        /**
+         * @return The page if the GraphPageCache holds it, else null. Never reads the disk.
+         */
+        public int[] getCachedGraphBuffer(double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles) {
+            if (!exists()) {
+                return null;
+            }
+            return graphPageCache.getIfCached(pieceTable.lngVersion, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles);
+        }
+
+        /**
+         * Compute a page into the GraphPageCache ahead of it being shown. Not counted as a lookup, so the hit
+         * rate stays that of the pages shown.
+         * @return True if the page got computed, false if it was cached already
+         * @throws IOException
+         */
+        public boolean prefetchGraphBuffer(double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles) throws IOException {
+            if (!exists()) {
+                throw new IOException("CurrentFile does not exist");
+            }
+            PieceTable pieceTablePage = pieceTable;
+            if (graphPageCache.contains(pieceTablePage.lngVersion, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles)) {
+                return false;
+            }
+            int[] intRmsBuffer = readGraphBuffer(pieceTablePage, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles);
+            graphPageCache.put(pieceTablePage.lngVersion, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles, intRmsBuffer);
+            return true;
+        }
+
+        /**
+         * @return True if the GraphPageCache holds the page
+         */
+        public boolean isGraphBufferCached(double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles) {
+            return graphPageCache.contains(pieceTable.lngVersion, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles);
+        }
+
+        /**
+         * @return Version of the piece table, a new one after every edit
+         */
+        public long getVersion() {
+            return pieceTable.lngVersion;
+        }
+
+        /**
+         * @return The piece table as it is now, later edits publish a new one
+         */
+        public PieceTable getPieceTable() {
+            return pieceTable;
+        }
+
+        private int[] readGraphBuffer(PieceTable pieceTablePage, double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles) throws IOException {
+            long lngSizePcmInShorts = pieceTablePage.lngSizeInShorts;
+            int intRmsFrameSizeInSingles = (int) fltRmsFrameSizeInSingles;
+            long lngDataAmountInBytes = roundDownToEven((long) (intRmsFramesAmount * (fltRmsFrameSizeInSingles * 2)));
+            long lngStartByte = roundDownToEven((long) (fltRmsStartFrame * fltRmsFrameSizeInSingles * 2));
+            long lngEndByte = roundDownToEven(lngStartByte + lngDataAmountInBytes);
+
+            if (lngStartByte > lngSizePcmInShorts * 2) {
+                lngStartByte = 0;
+            }
+
+            if (lngEndByte > lngSizePcmInShorts * 2) {
+                lngEndByte = lngSizePcmInShorts * 2;
+            }
+
+            // The reader also keeps the piece files from being deleted while the index is read
+            PcmReader pcmReader = openReader(pieceTablePage);
+            try {
+                // Answer from the waveform index when its blocks are fine enough for the RMS frame size
+                int intLevel = PcmIndex.getLevelForFrameSize(intRmsFrameSizeInSingles);
+                if (intLevel >= 0) {
+                    return getGraphBufferFromIndex(pieceTablePage, lngStartByte / 2, lngEndByte / 2, intRmsFramesAmount, intRmsFrameSizeInSingles, intLevel);
+                }
+
+                long lngEndShort = lngEndByte / 2;
+                long lngPosition = lngStartByte / 2;
+                short[] s = new short[intRmsFrameSizeInSingles];
+                int[] intRmsBuffer = new int[intRmsFramesAmount];
+                for (int intRmsBufferIndex = 0; (intRmsBufferIndex < intRmsBuffer.length) && (lngPosition < lngEndShort); intRmsBufferIndex++) {
+                    int intRead = pcmReader.read(lngPosition, s, 0, (int) Math.min(s.length, lngEndShort - lngPosition));
+                    if (intRead <= 0) {
+                        break;
+                    }
+                    lngPosition += intRead;
+
+                    // Calc and save RMS
+                    double sum = 0;
+                    for (int j = 0; j < intRead; j++) {
+                        sum += s[j] * s[j];
+                    }
+                    final double amplitude = sum / intRead;
+                    intRmsBuffer[intRmsBufferIndex] = ((int) Math.sqrt(amplitude));
+                }
+                return intRmsBuffer;
+            } finally {
+                pcmReader.close();
+            }
+        }
+
+        /**
+         * Compute the RMS frames of a page by combining the index records of each piece
+         * @param pieceTablePage
+         * @param lngStartShort
+         * @param lngEndShort
+         * @param intRmsFramesAmount
+         * @param intRmsFrameSizeInShorts
+         * @param intLevel
+         * @return
+         * @throws IOException
+         */
+        private int[] getGraphBufferFromIndex(PieceTable pieceTablePage, long lngStartShort, long lngEndShort, int intRmsFramesAmount,
+                                              int intRmsFrameSizeInShorts, int intLevel) throws IOException {
+            double[] fltSumOfSquares = new double[intRmsFramesAmount];
+            long lngPieceStart = 0;
+            for (Piece piece : pieceTablePage.pieces) {
+                long lngPieceEnd = lngPieceStart + piece.lngLengthInBytes / 2;
+                long lngFrom = Math.max(lngStartShort, lngPieceStart);
+                long lngTo = Math.min(lngEndShort, lngPieceEnd);
+                if (lngFrom < lngTo) {
+                    long lngFileStartShort = (piece.lngOffsetInBytes - WavContainer.getDataOffset(piece.file)) / 2;
+                    PcmIndex.get(piece.file).addSumOfSquares(lngFileStartShort + (lngFrom - lngPieceStart), lngTo - lngFrom,
+                            lngFrom - lngStartShort, intRmsFrameSizeInShorts, fltSumOfSquares, intLevel);
+                }
+                if (lngPieceEnd >= lngEndShort) {
+                    break;
+                }
+                lngPieceStart = lngPieceEnd;
+            }
+
+            int[] intRmsBuffer = new int[intRmsFramesAmount];
+            for (int i = 0; i < intRmsFramesAmount; i++) {
+                long lngFrameShorts = Math.min(intRmsFrameSizeInShorts, (lngEndShort - lngStartShort) - (long) i * intRmsFrameSizeInShorts);
+                if (lngFrameShorts <= 0) {
+                    break;
+                }
+                intRmsBuffer[i] = (int) Math.sqrt(fltSumOfSquares[i] / lngFrameShorts);
+            }
+            return intRmsBuffer;
+        }
+
+        /**
+         * Bring the waveform indexes of all files in the piece table up to date. Call off the UI thread
+         * after the audio got written, so that paging through the graph only reads index records.
+         * @throws IOException
+         */
+        public void updateIndex() throws IOException {
+            HashSet<File> filesIndexed = new HashSet<File>();
+            for (Piece piece : pieceTable.pieces) {
+                if (filesIndexed.add(piece.file)) {
+                    PcmIndex.get(piece.file).update();
+                }
+            }
+        }
+
+
+        public long getDataAmountInRmsFrames(double fltOptimalDataSampleBufferSizeInSingles) {
+            return (long)(Math.ceil((float) lngSizePcmInShorts /fltOptimalDataSampleBufferSizeInSingles));
+        }
+
+        /**
+         * Creates a new object, preloaded from the source sample. Only the piece table is copied.
+         * @param strFilenameWithoutExt
+         * @param audioSampleSource
+         * @throws IOException
+         */
+        public AudioSample(String strFilenameWithoutExt, AudioSample audioSampleSource) throws IOException {
+
+            filePathPcm = new File(strWorkFolderPath + "/" + strFilenameWithoutExt + ".pcm");
+            if (filePathPcm.exists()) {
+                filePathPcm.delete();
+            }
+            copyFrom(audioSampleSource);
+        }
+
+        public void copyFrom(AudioSample objAudioSample) throws IOException {
+            objAudioSample.freeze();
+            setPieces(new ArrayList<Piece>(objAudioSample.pieceTable.pieces));
+        }
+
+        public boolean exists() {
+            if (lngSizePcmInShorts != 0) {
+                return true;
+            }
+            return false;
+        }
+
+        public long getSizeInBytes() {
+            return pieceTable.lngSizeInShorts * 2;
+        }
+
+        public int getPieceAmount() {
+            return pieceTable.pieces.size();
+        }
+
+        /**
+         * Opens a positional reader over the audio as it is now, later edits do not affect it. Callers get the
+         * same reader, and its mapped windows, until the piece table changes. Close it when done.
+         * @return
+         * @throws IOException
+         */
+        public PcmReader openReader() throws IOException {
+            return openReader(pieceTable);
+        }
+
+        private synchronized PcmReader openReader(PieceTable pieceTableRead) throws IOException {
+            if ((pcmReaderShared == null) || (pieceTableReader != pieceTableRead)) {
+                if (pieceTableRead != pieceTable) {
+                    // Edited meanwhile, nobody else will read this version
+                    return new PcmReader(pieceTableRead.pieces);
+                }
+                releaseSharedReader();
+                pieceTableReader = pieceTableRead;
+                pcmReaderShared = new PcmReader(pieceTableRead.pieces);
+            }
+            return pcmReaderShared.share();
+        }
+
+        /**
+         * Give up the sample's own hold of the shared reader, its files close once its users are done
+         */
+        private synchronized void releaseSharedReader() {
+            if (pcmReaderShared == null) {
+                return;
+            }
+            try {
+                pcmReaderShared.close();
+            } catch (IOException e) {
+                AudioLog.e(TAG, "Could not close reader of " + filePathPcm.getName(), e);
+            }
+            pcmReaderShared = null;
+            pieceTableReader = null;
+        }
+
+        /**
+         * Opens a reader of its own, for workers that read in parallel and would take turns on a shared one
+         * @return
+         */
+        public PcmReader openPrivateReader() {
+            return new PcmReader(pieceTable.pieces);
+        }
+
+        /**
+         * Keep only the first intTrimBytesAmount bytes
+         * @param intTrimBytesAmount
+         * @throws IOException
+         */
+        public void trimRight(long intTrimBytesAmount) throws IOException {
+            long lngSizePcmInFramesBefore = lngSizePcmInShorts;
+            setPieces(slicePieces(0, roundDownToEven(intTrimBytesAmount)));
+            reclaimOwnFile();
+            AudioLog.d(TAG, "File " + filePathPcm.getName() + " right trimmed from " + lngSizePcmInFramesBefore + " to " + lngSizePcmInShorts);
+
+        }
+
+        /**
+         * Remove the first intTrimBytesAmount bytes
+         * @param intTrimBytesAmount
+         * @throws IOException
+         */
+        public void trimLeft(long intTrimBytesAmount) throws IOException {
+            long lngSizePcmInFramesBefore = lngSizePcmInShorts;
+            setPieces(slicePieces(roundDownToEven(intTrimBytesAmount), getSizeInBytes()));
+            reclaimOwnFile();
+            AudioLog.d(TAG, "File " + filePathPcm.getName() + " left trimmed from " + lngSizePcmInFramesBefore + " to " + lngSizePcmInShorts);
+
+        }
+
+        /**
+         * Remove the audio between the two byte positions
+         * @param lngStartByte
+         * @param lngEndByte
+         * @throws IOException
+         */
+        public void deleteRange(long lngStartByte, long lngEndByte) throws IOException {
+            replaceRange(lngStartByte, lngEndByte, null);
+        }
+
+        /**
+         * Insert the audio of another sample at the byte position
+         * @param lngPositionInBytes
+         * @param audioSampleInsert
+         * @throws IOException
+         */
+        public void insert(long lngPositionInBytes, AudioSample audioSampleInsert) throws IOException {
+            replaceRange(lngPositionInBytes, lngPositionInBytes, audioSampleInsert);
+        }
+
+        /**
+         * Replace the audio between the two byte positions with the audio of another sample
+         * @param lngStartByte
+         * @param lngEndByte
+         * @param audioSampleInsert - Can be null, in which case the range is just deleted
+         * @throws IOException
+         */
+        public void replaceRange(long lngStartByte, long lngEndByte, AudioSample audioSampleInsert) throws IOException {
+            long lngSizeInBytes = getSizeInBytes();
+            long lngSizePcmInFramesBefore = lngSizePcmInShorts;
+            lngStartByte = Math.min(roundDownToEven(lngStartByte), lngSizeInBytes);
+            lngEndByte = Math.max(lngStartByte, Math.min(roundDownToEven(lngEndByte), lngSizeInBytes));
+
+            ArrayList<Piece> piecesNew = slicePieces(0, lngStartByte);
+            if ((audioSampleInsert != null) && audioSampleInsert.exists()) {
+                audioSampleInsert.freeze();
+                appendPieces(piecesNew, audioSampleInsert.pieceTable.pieces);
+            }
+            appendPieces(piecesNew, slicePieces(lngEndByte, lngSizeInBytes));
+            setPieces(piecesNew);
+            AudioLog.d(TAG, "File " + filePathPcm.getName() + " range " + lngStartByte + "-" + lngEndByte + " replaced, size from "
+                    + lngSizePcmInFramesBefore + " to " + lngSizePcmInShorts + " in " + getPieceAmount() + " pieces");
+
+            if (getPieceAmount() > MAX_PIECE_AMOUNT) {
+                compact();
+            }
+        }
+
+        public void mergeInto(ArrayList<AudioSample> objFollowingSamples) throws IOException {
+            // Merge piece tables
+            ArrayList<Piece> piecesNew = new ArrayList<Piece>();
+            for (AudioSample objAudioSample : objFollowingSamples) {
+                if (objAudioSample.exists()) {
+                    objAudioSample.freeze();
+                    appendPieces(piecesNew, objAudioSample.pieceTable.pieces);
+                    AudioLog.d(TAG, "File " + objAudioSample.filePathPcm.getName() + " of length " + objAudioSample.lngSizePcmInShorts
+                            + " merged");
+                }
+            }
+            setPieces(piecesNew);
+            AudioLog.d(TAG, "Total PCM merged file size is " + lngSizePcmInShorts);
+
+        }
+
+        /**
+         * Rewrite the audio into a single new piece file, to keep reads sequential after many edits
+         * @throws IOException
+         */
+        public void compact() throws IOException {
+            File filePiece = createPieceFile(".pcm");
+            writeTo(filePiece);
+            ArrayList<Piece> piecesNew = new ArrayList<Piece>();
+            piecesNew.add(new Piece(filePiece, PcmFormat.HEADER_SIZE, filePiece.length() - PcmFormat.HEADER_SIZE));
+            setPieces(piecesNew);
+        }
+
+
+        /**
+         * Convert the audio to another sample rate. The result replaces the sample's own file, in the same
+         * layout, as a new recording or import would.
+         * @param intFromRate
+         * @param intToRate
+         * @throws IOException
+         */
+        public void resample(int intFromRate, int intToRate) throws IOException {
+            resample(intFromRate, intToRate, null);
+        }
+
+        /**
+         * @param intFromRate
+         * @param intToRate
+         * @param audioJob - Reported to and checked for cancellation, can be null
+         * @throws IOException - An InterruptedIOException if the job got cancelled. The sample is left as it
+         * was whenever the conversion fails.
+         */
+        public void resample(int intFromRate, int intToRate, AudioJob audioJob) throws IOException {
+            if (intFromRate == intToRate) {
+                return;
+            }
+            File fileConverted = createPieceFile(WavContainer.isContainer(filePathPcm) ? WavContainer.CONTAINER_EXT : ".pcm");
+            try {
+                new Resampler(intFromRate, intToRate).convert(this, fileConverted, Runtime.getRuntime().availableProcessors(), audioJob);
+            } catch (IOException e) {
+                fileConverted.delete();
+                throw e;
+            }
+            // Replaces the old file in one step where the file system allows, otherwise make room first
+            if (!fileConverted.renameTo(filePathPcm)
+                    && ((filePathPcm.exists() && !filePathPcm.delete()) || !fileConverted.renameTo(filePathPcm))) {
+                fileConverted.delete();
+                throw new IOException("Could not replace " + filePathPcm.getName());
+            }
+            PcmIndex.delete(filePathPcm);
+            PcmJournal.delete(filePathPcm);
+            boolIsRecovered = false;
+            updateFileSize();
+            AudioLog.d(TAG, "File " + filePathPcm.getName() + " resampled from " + intFromRate + " to " + intToRate + ", size " + lngSizePcmInShorts);
+        }
+
+        /**
+         * The sample's own file got (re)written, reset the piece table to cover all of it. The length comes
+         * from the file system, the audio itself is not read.
+         * @throws IOException
+         */
+        public void updateFileSize() throws IOException {
+            if (!filePathPcm.exists()) {
+                throw new FileNotFoundException(filePathPcm.getPath());
+            }
+            long lngDataOffset = WavContainer.getDataOffset(filePathPcm);
+            long lngSizeInBytes = roundDownToEven(Math.max(0, filePathPcm.length() - lngDataOffset));
+            ArrayList<Piece> piecesNew = new ArrayList<Piece>();
+            if (lngSizeInBytes != 0) {
+                piecesNew.add(new Piece(filePathPcm, lngDataOffset, lngSizeInBytes));
+            }
+            setPieces(piecesNew);
+        }
+
+        public void copyTo(String strAudioEditFullFilename) throws IOException {
+            writeTo(new File(strAudioEditFullFilename));
+        }
+
+        /**
+         * Write the audio, as described by the piece table, into a single plain .pcm file. All files share
+         * the same sample byte order, so every piece is a straight kernel side copy.
+         * @param fileDest
+         * @throws IOException
+         */
+        public void writeTo(File fileDest) throws IOException {
+            FileChannel outChannel = new FileOutputStream(fileDest, false).getChannel();
+            try {
+                PcmFormat.writeHeader(outChannel);
+                for (Piece piece : pieceTable.pieces) {
+                    FileChannel inChannel = new FileInputStream(piece.file).getChannel();
+                    try {
+                        transfer(inChannel, piece.lngOffsetInBytes, piece.lngLengthInBytes, outChannel);
+                    } finally {
+                        inChannel.close();
+                    }
+                }
+            } finally {
+                outChannel.close();
+            }
+        }
+
+        /**
+         * Save by handing out the WAV file the audio already lives in. Only possible when the piece table is
+         * a single piece spanning all of a WavContainer, as it is after a WAV file got opened. The header gets
+         * patched and the file is copied into place, or linked when the destination is in the folder the
+         * library was opened on. A file that got linked out is never patched again.
+         * @param fileDest
+         * @param lngSampleRate
+         * @return False if the audio is not in such a container, nothing is written then
+         * @throws IOException
+         */
+        public boolean publishContainer(File fileDest, long lngSampleRate) throws IOException {
+            List<Piece> pieces = pieceTable.pieces;
+            if (pieces.size() != 1) {
+                return false;
+            }
+            Piece piece = pieces.get(0);
+            if (!WavContainer.isContainer(piece.file) || (piece.lngOffsetInBytes != WavContainer.HEADER_SIZE)
+                    || (piece.lngOffsetInBytes + piece.lngLengthInBytes != piece.file.length())) {
+                return false;
+            }
+            // Frozen, so that recording never appends to a file that may get linked out
+            freeze();
+            File fileContainer = pieceTable.pieces.get(0).file;
+            boolean boolIsLinkedOut;
+            synchronized (filesLinkedOut) {
+                boolIsLinkedOut = filesLinkedOut.contains(fileContainer.getAbsoluteFile());
+            }
+            if (!boolIsLinkedOut) {
+                WavContainer.patchHeader(fileContainer, lngSampleRate);
+            } else if (WavContainer.readSampleRate(fileContainer) != lngSampleRate) {
+                // Patching would change the file published before, export the usual way instead
+                return false;
+            }
+            boolean boolMayLink = isInFolder(fileDest, new File(strWorkFolderPath).getParentFile());
+            if (WavContainer.publish(fileContainer, fileDest, boolMayLink)) {
+                synchronized (filesLinkedOut) {
+                    filesLinkedOut.add(fileContainer.getAbsoluteFile());
+                }
+            }
+            return true;
+        }
+
+        public AudioSample copyFrom(String strAudioEditFullFilename) throws IOException {
+            File fileSrc = new File(strAudioEditFullFilename);
+            if (fileSrc.exists()) {
+                FileChannel channelIn = new FileInputStream(fileSrc).getChannel();
+                FileChannel channelOut = new FileOutputStream(filePathPcm).getChannel();
+                try {
+                    transfer(channelIn, 0, channelIn.size(), channelOut);
+                } finally {
+                    channelIn.close();
+                    channelOut.close();
+                }
+                PcmIndex.delete(filePathPcm);
+                updateFileSize();
+            } else {
+                setPieces(new ArrayList<Piece>());
+            }
+            return this;
+        }
+
+
+
+        /**
+         * Fill the sample with a generated frequency sweep
+         * @param intSampleRate
+         */
+        public void createTestSignal(int intSampleRate) {
+            try {
+                final int BLOCK_SIZE_IN_SHORTS = 4096;
+                SyntheticAudioSource audioSource = new SyntheticAudioSource(SyntheticAudioSource.Signal.SWEEP, intSampleRate,
+                        BLOCK_SIZE_IN_SHORTS, 0);
+                audioSource.setSpeedFactor(0).setDuration(TEST_SIGNAL_DURATION_IN_MS);
+                audioSource.start();
+                short[] audioData = new short[BLOCK_SIZE_IN_SHORTS];
+                ByteBuffer byteBuffer = ByteBuffer.allocate(BLOCK_SIZE_IN_SHORTS * 2).order(WavContainer.getByteOrder(filePathPcm));
+                FileChannel channel = new FileOutputStream(filePathPcm).getChannel();
+                try {
+                    WavContainer.startData(filePathPcm, channel);
+                    int numberOfShort;
+                    while ((numberOfShort = audioSource.read(audioData, 0, audioData.length)) > 0) {
+                        byteBuffer.clear();
+                        byteBuffer.asShortBuffer().put(audioData, 0, numberOfShort);
+                        byteBuffer.limit(numberOfShort * 2);
+                        while (byteBuffer.hasRemaining()) {
+                            channel.write(byteBuffer);
+                        }
+                    }
+                    if (WavContainer.isContainer(filePathPcm)) {
+                        WavContainer.writeHeader(channel, channel.size() - WavContainer.HEADER_SIZE, intSampleRate);
+                    }
+                } finally {
+                    channel.close();
+                    audioSource.release();
+                }
+                PcmIndex.delete(filePathPcm);
+                PcmJournal.delete(filePathPcm);
+                boolIsRecovered = false;
+                updateFileSize();
+
+            } catch (FileNotFoundException e) {
+                e.printStackTrace();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * If the own file is part of the piece table, rename it to a unique piece file so that it becomes
+         * immutable and can safely be shared with other samples. The own file can then be rewritten freely.
+         * @throws IOException
+         */
+        private void freeze() throws IOException {
+            boolean boolIsOwnFileReferenced = false;
+            for (Piece piece : pieceTable.pieces) {
+                if (piece.file.equals(filePathPcm)) {
+                    boolIsOwnFileReferenced = true;
+                    break;
+                }
+            }
+            if (!boolIsOwnFileReferenced) {
+                return;
+            }
+            File filePiece = createPieceFile(WavContainer.isContainer(filePathPcm) ? WavContainer.CONTAINER_EXT : ".pcm");
+            if (!filePathPcm.renameTo(filePiece)) {
+                throw new IOException("Could not freeze " + filePathPcm.getName());
+            }
+            PcmIndex.rename(filePathPcm, filePiece);
+            // Once shared the recording counts as merged, there is nothing left to recover
+            PcmJournal.delete(filePathPcm);
+            boolIsRecovered = false;
+            ArrayList<Piece> piecesNew = new ArrayList<Piece>();
+            for (Piece piece : pieceTable.pieces) {
+                if (piece.file.equals(filePathPcm)) {
+                    piecesNew.add(new Piece(filePiece, piece.lngOffsetInBytes, piece.lngLengthInBytes));
+                } else {
+                    piecesNew.add(piece);
+                }
+            }
+            setPieces(piecesNew);
+        }
+
+        /**
+         * Get the pieces covering the byte range
+         * @param lngStartByte
+         * @param lngEndByte
+         * @return
+         */
+        private ArrayList<Piece> slicePieces(long lngStartByte, long lngEndByte) {
+            ArrayList<Piece> piecesSlice = new ArrayList<Piece>();
+            long lngPieceStart = 0;
+            for (Piece piece : pieceTable.pieces) {
+                if (lngPieceStart >= lngEndByte) {
+                    break;
+                }
+                long lngPieceEnd = lngPieceStart + piece.lngLengthInBytes;
+                long lngFrom = Math.max(lngStartByte, lngPieceStart);
+                long lngTo = Math.min(lngEndByte, lngPieceEnd);
+                if (lngFrom < lngTo) {
+                    piecesSlice.add(new Piece(piece.file, piece.lngOffsetInBytes + (lngFrom - lngPieceStart), lngTo - lngFrom));
+                }
+                lngPieceStart = lngPieceEnd;
+            }
+            return piecesSlice;
+        }
+
+        /**
+         * Give back the parts of the sample's own file that the piece table no longer refers to. An unused tail
+         * is truncated off in place, an unused head is only dropped once it outweighs the audio behind it, by
+         * moving that audio to the front of a new file with a single kernel side transfer. While a reader of an
+         * older piece table still has the own file, it may have the parts to drop mapped, so that is left to
+         * deleteUnusedPieceFiles once the reader got closed.
+         * @throws IOException
+         */
+        private void reclaimOwnFile() throws IOException {
+            boolIsReclaimPending = PcmReader.getFilesInUse().contains(filePathPcm.getAbsoluteFile());
+            if (boolIsReclaimPending) {
+                AudioLog.d(TAG, "File " + filePathPcm.getName() + " is being read, reclaiming it later");
+                return;
+            }
+            long lngUsedStartByte = Long.MAX_VALUE;
+            long lngUsedEndByte = 0;
+            for (Piece piece : pieceTable.pieces) {
+                if (piece.file.equals(filePathPcm)) {
+                    lngUsedStartByte = Math.min(lngUsedStartByte, piece.lngOffsetInBytes);
+                    lngUsedEndByte = Math.max(lngUsedEndByte, piece.lngOffsetInBytes + piece.lngLengthInBytes);
+                }
+            }
+            if (lngUsedEndByte == 0) {
+                return;
+            }
+            long lngDataOffset = WavContainer.getDataOffset(filePathPcm);
+            RandomAccessFile raf = new RandomAccessFile(filePathPcm, "rw");
+            long lngFileSize;
+            try {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() > lngUsedEndByte) {
+                    channel.truncate(lngUsedEndByte);
+                    PcmIndex.truncate(filePathPcm, lngUsedEndByte);
+                }
+                lngFileSize = channel.size();
+            } finally {
+                raf.close();
+            }
+            if (lngUsedStartByte - lngDataOffset > lngFileSize - lngUsedStartByte) {
+                File fileMoved = createPieceFile(WavContainer.isContainer(filePathPcm) ? WavContainer.CONTAINER_EXT : ".pcm");
+                FileChannel channelIn = new FileInputStream(filePathPcm).getChannel();
+                FileChannel channelOut = new FileOutputStream(fileMoved).getChannel();
+                try {
+                    transfer(channelIn, 0, lngDataOffset, channelOut);
+                    transfer(channelIn, lngUsedStartByte, lngFileSize - lngUsedStartByte, channelOut);
+                } finally {
+                    channelIn.close();
+                    channelOut.close();
+                }
+                if (!filePathPcm.delete() || !fileMoved.renameTo(filePathPcm)) {
+                    fileMoved.delete();
+                    throw new IOException("Could not reclaim " + filePathPcm.getName());
+                }
+                PcmIndex.delete(filePathPcm);
+                ArrayList<Piece> piecesNew = new ArrayList<Piece>();
+                for (Piece piece : pieceTable.pieces) {
+                    if (piece.file.equals(filePathPcm)) {
+                        piecesNew.add(new Piece(filePathPcm, piece.lngOffsetInBytes - lngUsedStartByte + lngDataOffset, piece.lngLengthInBytes));
+                    } else {
+                        piecesNew.add(piece);
+                    }
+                }
+                setPieces(piecesNew);
+            }
+            if (WavContainer.isContainer(filePathPcm)) {
+                WavContainer.patchHeader(filePathPcm);
+            }
+            // The manifest holds the length of the own file
+            writeManifest();
+        }
+
+        private void setPieces(ArrayList<Piece> piecesNew) {
+            // Publish a new table rather than modify, so that readers holding the previous one are not disturbed
+            PieceTable pieceTableOld = pieceTable;
+            pieceTable = new PieceTable(piecesNew);
+            lngSizePcmInShorts = pieceTable.lngSizeInShorts;
+            releaseSharedReader();
+            graphPageCache.invalidate(pieceTableOld.lngVersion);
+            writeManifest();
+        }
+
+        /**
+         * Keep the piece table for the next session. Failing that, the next session opens the own file only.
+         */
+        private synchronized void writeManifest() {
+            try {
+                PcmManifest.write(filePathPcm, pieceTable.pieces);
+            } catch (IOException e) {
+                AudioLog.e(TAG, "Could not write the manifest of " + filePathPcm.getName(), e);
+                PcmManifest.delete(filePathPcm);
+            }
+        }
+    }
+
+    /**
+     * Append pieces, joining neighbours that continue in the same file
+     * @param pieces
+     * @param piecesToAppend
+     */
+    private static void appendPieces(ArrayList<Piece> pieces, List<Piece> piecesToAppend) {
+        for (Piece piece : piecesToAppend) {
+            if (!pieces.isEmpty()) {
+                Piece pieceLast = pieces.get(pieces.size() - 1);
+                if (pieceLast.file.equals(piece.file) && (pieceLast.lngOffsetInBytes + pieceLast.lngLengthInBytes == piece.lngOffsetInBytes)) {
+                    pieces.set(pieces.size() - 1, new Piece(pieceLast.file, pieceLast.lngOffsetInBytes, pieceLast.lngLengthInBytes + piece.lngLengthInBytes));
+                    continue;
+                }
+            }
+            pieces.add(piece);
+        }
+    }
+
+    /**
+     * Copy a span of one file to the end of another, letting the kernel move the bytes
+     * @param inChannel
+     * @param lngPosition
+     * @param lngLength
+     * @param outChannel
+     * @throws IOException
+     */
+    private static void transfer(FileChannel inChannel, long lngPosition, long lngLength, FileChannel outChannel) throws IOException {
+        long lngEnd = lngPosition + lngLength;
+        while (lngPosition < lngEnd) {
+            long lngTransferred = inChannel.transferTo(lngPosition, lngEnd - lngPosition, outChannel);
+            if (lngTransferred <= 0) {
+                break;
+            }
+            lngPosition += lngTransferred;
+        }
+    }
+
+    private static boolean isInFolder(File file, File fileFolder) throws IOException {
+        String strFolderPath = fileFolder.getCanonicalPath() + File.separator;
+        return file.getAbsoluteFile().getParentFile().getCanonicalPath().concat(File.separator).startsWith(strFolderPath);
+    }
+
+    private File createPieceFile(String strExt) {
+        File filePiece;
+        do {
+            filePiece = new File(strWorkFolderPath + "/" + PIECE_FILENAME_PREFIX + System.currentTimeMillis() + "_" + intPieceFileCounter.incrementAndGet() + strExt);
+        } while (filePiece.exists());
+        return filePiece;
+    }
+
+    /**
+     * Delete all piece files no longer referenced by any of the samples in use. Files that an open reader of
+     * an older version of a piece table still reads are left for a later call, once it got closed, as is the
+     * reclaiming of own files that trims put off. At the start
+     * of a session, only call this if all samples got restored from their manifest.
+     * @param audioSamplesInUse
+     */
+    public void deleteUnusedPieceFiles(AudioSample... audioSamplesInUse) {
+        HashSet<File> filesInUse = PcmReader.getFilesInUse();
+        for (AudioSample audioSample : audioSamplesInUse) {
+            if (audioSample == null) continue;
+            if (audioSample.boolIsReclaimPending) {
+                try {
+                    audioSample.reclaimOwnFile();
+                } catch (IOException e) {
+                    AudioLog.e(TAG, "Could not reclaim " + audioSample.filePathPcm.getName(), e);
+                }
+            }
+            for (Piece piece : audioSample.pieceTable.pieces) {
+                filesInUse.add(piece.file.getAbsoluteFile());
+            }
+        }
+        File[] files = new File(strWorkFolderPath).listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            String strName = file.getName();
+            if (!strName.startsWith(PIECE_FILENAME_PREFIX)) continue;
+            if (strName.endsWith(PcmIndex.INDEX_EXT)) {
+                // Index of a piece file that is gone
+                String strPieceName = strName.substring(0, strName.length() - PcmIndex.INDEX_EXT.length());
+                if (!strPieceName.endsWith(WavContainer.CONTAINER_EXT)) {
+                    strPieceName += ".pcm";
+                }
+                File filePiece = new File(file.getParentFile(), strPieceName);
+                if (!filePiece.exists()) {
+                    PcmIndex.delete(filePiece);
+                }
+            } else if (!filesInUse.contains(file.getAbsoluteFile())) {
+                if (file.delete()) {
+                    PcmIndex.delete(file);
+                    AudioLog.d(TAG, "Unused piece file " + file.getName() + " deleted");
+                }
+            }
+        }
+    }
+
+    private long roundDownToEven(long intSkipLen) {
+        // TODO Auto-generated method stub
+        if ((intSkipLen % 2) == 1) {
+            return intSkipLen - 1;
+        }
+        return intSkipLen;
+    }
+}
@@ -0,0 +1,46 @@
+package com.treeapps.audiorecorder;
+
+/**
+ * Logging SPI of the audio engine. The engine logs through here, the host installs a Logger that
+ * forwards to its own logging (android.util.Log on a device). Without one, logging goes to the console.
+ */
+public class AudioLog {
+
+    public interface Logger {
+        public void d(String strTag, String strMessage);
+        public void e(String strTag, String strMessage, Throwable throwable);
+    }
+
+    private static volatile Logger logger = new ConsoleLogger();
+
+    public static void setLogger(Logger logger) {
+        AudioLog.logger = logger;
+    }
+
+    public static void d(String strTag, String strMessage) {
+        logger.d(strTag, strMessage);
+    }
+
+    public static void e(String strTag, String strMessage) {
+        logger.e(strTag, strMessage, null);
+    }
+
+    public static void e(String strTag, String strMessage, Throwable throwable) {
+        logger.e(strTag, strMessage, throwable);
+    }
+
+    public static class ConsoleLogger implements Logger {
+        @Override
+        public void d(String strTag, String strMessage) {
+            System.out.println(strTag + ": " + strMessage);
+        }
+
+        @Override
+        public void e(String strTag, String strMessage, Throwable throwable) {
+            System.err.println(strTag + ": " + strMessage);
+            if (throwable != null) {
+                throwable.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.treeapps.audiorecorder;
+
+import java.io.IOException;
+
+/**
+ * Where captured audio comes from: 16 bit mono samples, read in blocks the way AudioRecord delivers them.
+ * Implementations: the device microphone (AudioRecordSource in the app), SyntheticAudioSource and
+ * WavReplayAudioSource.
+ */
+public interface AudioSource {
+
+    public int getSampleRate();
+
+    /**
+     * @return The block size reads should be done with
+     */
+    public int getBufferSizeInShorts();
+
+    public void start() throws IOException;
+
+    /**
+     * Blocks until samples are available, like AudioRecord.read
+     * @param audioData
+     * @param intOffset
+     * @param intLength
+     * @return Amount of shorts read, -1 when the source has no more audio
+     * @throws IOException
+     */
+    public int read(short[] audioData, int intOffset, int intLength) throws IOException;
+
+    public void stop();
+
+    public void release();
+}
@@ -0,0 +1,310 @@
+package com.treeapps.audiorecorder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Lock-free ring of preallocated sample blocks between the capture thread (single producer) and a fixed
+ * set of consumers, each of which sees every block once. Each consumer has its own cursor, so every
+ * producer/consumer pair behaves as a single-producer/single-consumer queue.
+ *
+ * The producer never blocks, allocates or does I/O: when the slowest consumer is a full ring behind,
+ * the block is captured into a scratch block and dropped, and counted as an overrun.
+ */
+public class CaptureRing {
+
+    private static final int IDLE_WAIT_IN_MS = 5;
+
+    private final short[][] blocks;
+    private final int[] intBlockLengths;
+    private final int intMask;
+    private final short[] scratchBlock;
+    private final Consumer[] consumers;
+
+    private volatile long lngPublished = 0; // Blocks available to the consumers
+    private volatile boolean boolIsClosed = false;
+    private volatile boolean boolIsStopRequested = false;
+    private volatile long lngStopAtShort = -1;
+    private boolean boolIsScratchAcquired = false;
+
+    // Counters, only written by the producer
+    private volatile int intOverrunCount = 0;
+    private volatile long lngOverrunShorts = 0;
+    private volatile int intHighWaterMarkInBlocks = 0;
+
+    /**
+     * @param intBlockAmount - Rounded up to a power of two
+     * @param intBlockSizeInShorts
+     * @param intConsumerAmount
+     */
+    public CaptureRing(int intBlockAmount, int intBlockSizeInShorts, int intConsumerAmount) {
+        int intCapacity = 1;
+        while (intCapacity < intBlockAmount) {
+            intCapacity <<= 1;
+        }
+        blocks = new short[intCapacity][intBlockSizeInShorts];
+        intBlockLengths = new int[intCapacity];
+        intMask = intCapacity - 1;
+        scratchBlock = new short[intBlockSizeInShorts];
+        consumers = new Consumer[intConsumerAmount];
+        for (int i = 0; i < intConsumerAmount; i++) {
+            consumers[i] = new Consumer();
+        }
+    }
+
+    public Consumer getConsumer(int intIndex) {
+        return consumers[intIndex];
+    }
+
+    public int getCapacityInBlocks() {
+        return blocks.length;
+    }
+
+    public int getBlockSizeInShorts() {
+        return scratchBlock.length;
+    }
+
+    // Producer side
+
+    /**
+     * Get the block to capture into next. Falls back to the scratch block when the ring is full.
+     * @return
+     */
+    public short[] acquireBlock() {
+        long lngUsed = lngPublished - getSlowestConsumed();
+        if (lngUsed >= blocks.length) {
+            boolIsScratchAcquired = true;
+            return scratchBlock;
+        }
+        boolIsScratchAcquired = false;
+        return blocks[(int) (lngPublished & intMask)];
+    }
+
+    /**
+     * Hand the acquired block to the consumers
+     * @param intLengthInShorts - Amount of the block that got filled
+     */
+    public void publishBlock(int intLengthInShorts) {
+        if (boolIsScratchAcquired) {
+            intOverrunCount += 1;
+            lngOverrunShorts += intLengthInShorts;
+            return;
+        }
+        intBlockLengths[(int) (lngPublished & intMask)] = intLengthInShorts;
+        lngPublished = lngPublished + 1; // Volatile write makes the block content visible to the consumers
+        int intUsed = (int) (lngPublished - getSlowestConsumed());
+        if (intUsed > intHighWaterMarkInBlocks) {
+            intHighWaterMarkInBlocks = intUsed;
+        }
+    }
+
+    /**
+     * No more blocks will be published, consumers finish once they have drained the ring
+     */
+    public void close() {
+        boolIsClosed = true;
+    }
+
+    private long getSlowestConsumed() {
+        long lngSlowest = lngPublished;
+        for (Consumer consumer : consumers) {
+            if (consumer.boolIsDetached) {
+                continue;
+            }
+            long lngConsumed = consumer.lngConsumed;
+            if (lngConsumed < lngSlowest) {
+                lngSlowest = lngConsumed;
+            }
+        }
+        return lngSlowest;
+    }
+
+    // Stop handshake, a consumer decides where the capture should end
+
+    /**
+     * Ask the producer to stop
+     * @param lngStopAtShort - Amount of shorts that should be kept, -1 to keep everything
+     */
+    public void requestStop(long lngStopAtShort) {
+        this.lngStopAtShort = lngStopAtShort;
+        boolIsStopRequested = true;
+    }
+
+    public boolean isStopRequested() {
+        return boolIsStopRequested;
+    }
+
+    public long getStopAtShort() {
+        return lngStopAtShort;
+    }
+
+    // Counters
+
+    public int getOverrunCount() {
+        return intOverrunCount;
+    }
+
+    public long getOverrunShorts() {
+        return lngOverrunShorts;
+    }
+
+    public int getHighWaterMarkInBlocks() {
+        return intHighWaterMarkInBlocks;
+    }
+
+    /**
+     * Reading side of the ring, to be used by a single thread
+     */
+    public class Consumer {
+        private volatile long lngConsumed = 0;
+        private volatile boolean boolIsDetached = false;
+
+        /**
+         * @return The next block, or null if none has been published yet
+         */
+        public short[] peekBlock() {
+            if (lngConsumed < lngPublished) {
+                return blocks[(int) (lngConsumed & intMask)];
+            }
+            return null;
+        }
+
+        public int getBlockLength() {
+            return intBlockLengths[(int) (lngConsumed & intMask)];
+        }
+
+        /**
+         * Done with the block, the producer may reuse it
+         */
+        public void releaseBlock() {
+            lngConsumed = lngConsumed + 1;
+        }
+
+        /**
+         * @return True when the producer closed the ring and all its blocks have been consumed
+         */
+        public boolean isDrained() {
+            boolean boolWasClosed = boolIsClosed; // Read first, nothing gets published after close
+            return boolWasClosed && (lngConsumed >= lngPublished);
+        }
+
+        /**
+         * Done with the ring for good, the producer no longer waits for this consumer, so that it does not
+         * fill up and overrun behind it while the others carry on
+         */
+        public void detach() {
+            boolIsDetached = true;
+        }
+
+        public void waitForBlock() {
+            try {
+                Thread.sleep(IDLE_WAIT_IN_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Drains a consumer into a file channel, gathering blocks into one buffer so that the disk sees
+     * few large writes. Samples are written in the byte order of the .pcm files.
+     */
+    public static class DiskWriter implements Runnable {
+        private final String TAG = "DiskWriter";
+        private final Consumer consumer;
+        private FileChannel channel;
+        private final ByteBuffer byteBuffer;
+        private final ShortBuffer shortBuffer;
+        private volatile IOException ioException;
+        private long lngShortsWritten = 0;
+        private PcmJournal pcmJournal;
+        private long lngCheckpointIntervalInShorts;
+        private long lngCheckpointShorts = 0;
+
+        public DiskWriter(Consumer consumer, FileChannel channel, int intBufferSizeInBytes) {
+            this.consumer = consumer;
+            this.channel = channel;
+            this.byteBuffer = ByteBuffer.allocateDirect(intBufferSizeInBytes).order(PcmFormat.BYTE_ORDER);
+            this.shortBuffer = byteBuffer.asShortBuffer();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                short[] block = consumer.peekBlock();
+                if (block == null) {
+                    if (consumer.isDrained()) {
+                        break;
+                    }
+                    flush();
+                    consumer.waitForBlock();
+                    continue;
+                }
+                int intLength = consumer.getBlockLength();
+                if (byteBuffer.remaining() < intLength * 2) {
+                    flush();
+                }
+                shortBuffer.position(byteBuffer.position() / 2);
+                shortBuffer.put(block, 0, intLength);
+                byteBuffer.position(byteBuffer.position() + intLength * 2);
+                if (pcmJournal != null) {
+                    pcmJournal.update(block, 0, intLength);
+                }
+                consumer.releaseBlock();
+            }
+            flush();
+        }
+
+        private void flush() {
+            byteBuffer.flip();
+            if (ioException == null) {
+                try {
+                    lngShortsWritten += byteBuffer.remaining() / 2;
+                    while (byteBuffer.hasRemaining()) {
+                        channel.write(byteBuffer);
+                    }
+                    if ((pcmJournal != null) && (lngShortsWritten - lngCheckpointShorts >= lngCheckpointIntervalInShorts)) {
+                        pcmJournal.checkpoint(channel, lngShortsWritten);
+                        lngCheckpointShorts = lngShortsWritten;
+                    }
+                } catch (IOException e) {
+                    // Keep draining so that the capture does not overrun, report when done
+                    AudioLog.e(TAG, "Write failed", e);
+                    ioException = e;
+                }
+            }
+            byteBuffer.clear();
+        }
+
+        /**
+         * Set the channel to write to, before the writer is started
+         * @param channel
+         */
+        public void setChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Checkpoint what got written into a journal every so often, before the writer is started
+         * @param pcmJournal
+         * @param lngCheckpointIntervalInShorts
+         */
+        public void setJournal(PcmJournal pcmJournal, long lngCheckpointIntervalInShorts) {
+            this.pcmJournal = pcmJournal;
+            this.lngCheckpointIntervalInShorts = lngCheckpointIntervalInShorts;
+        }
+
+        /**
+         * @return The error that stopped the writing, if any
+         */
+        public IOException getException() {
+            return ioException;
+        }
+
+        public long getShortsWritten() {
+            return lngShortsWritten;
+        }
+    }
+}
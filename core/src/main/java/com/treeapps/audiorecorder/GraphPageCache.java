@@ -0,0 +1,175 @@
+package com.treeapps.audiorecorder;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used pages of RMS frames, as getGraphBuffer computes them, within a budget of bytes. A page
+ * is keyed by the version of the sample's piece table, its first RMS frame, its amount of RMS frames and the
+ * RMS frame size. Every edit gives a sample a new version, so a page is never served for audio it was not
+ * computed from, and the pages of the old version are dropped right away to free their room.
+ */
+public class GraphPageCache {
+
+    private static final String TAG = "GraphPageCache";
+    private static final int ENTRY_OVERHEAD_IN_BYTES = 64;
+
+    static class Key {
+        final long lngVersion;
+        final double fltRmsStartFrame;
+        final int intRmsFramesAmount;
+        final double fltRmsFrameSizeInSingles;
+
+        Key(long lngVersion, double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles) {
+            this.lngVersion = lngVersion;
+            this.fltRmsStartFrame = fltRmsStartFrame;
+            this.intRmsFramesAmount = intRmsFramesAmount;
+            this.fltRmsFrameSizeInSingles = fltRmsFrameSizeInSingles;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) object;
+            return (lngVersion == key.lngVersion) && (Double.compare(fltRmsStartFrame, key.fltRmsStartFrame) == 0)
+                    && (intRmsFramesAmount == key.intRmsFramesAmount)
+                    && (Double.compare(fltRmsFrameSizeInSingles, key.fltRmsFrameSizeInSingles) == 0);
+        }
+
+        @Override
+        public int hashCode() {
+            long lngHash = lngVersion;
+            lngHash = lngHash * 31 + Double.doubleToLongBits(fltRmsStartFrame);
+            lngHash = lngHash * 31 + intRmsFramesAmount;
+            lngHash = lngHash * 31 + Double.doubleToLongBits(fltRmsFrameSizeInSingles);
+            return (int) (lngHash ^ (lngHash >>> 32));
+        }
+    }
+
+    private final long lngBudgetInBytes;
+    private final LinkedHashMap<Key, int[]> pages = new LinkedHashMap<Key, int[]>(16, 0.75f, true);
+    private long lngSizeInBytes = 0;
+    private long lngHits = 0;
+    private long lngMisses = 0;
+    private long lngEvictions = 0;
+
+    /**
+     * @param lngBudgetInBytes - Pages are evicted, least recently used first, to stay within it
+     */
+    public GraphPageCache(long lngBudgetInBytes) {
+        this.lngBudgetInBytes = lngBudgetInBytes;
+    }
+
+    /**
+     * @return A copy of the page, null if it is not cached
+     */
+    public synchronized int[] get(long lngVersion, double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles) {
+        int[] intRmsBuffer = getIfCached(lngVersion, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles);
+        if (intRmsBuffer == null) {
+            lngMisses += 1;
+        }
+        return intRmsBuffer;
+    }
+
+    /**
+     * As get, but a miss is not counted, for a lookup that a counted one follows when it misses
+     * @return A copy of the page, null if it is not cached
+     */
+    public synchronized int[] getIfCached(long lngVersion, double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles) {
+        int[] intRmsBuffer = pages.get(new Key(lngVersion, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles));
+        if (intRmsBuffer == null) {
+            return null;
+        }
+        lngHits += 1;
+        return intRmsBuffer.clone();
+    }
+
+    /**
+     * @return True if the page is cached. Neither counted nor touched, so it does not keep the page any longer.
+     */
+    public synchronized boolean contains(long lngVersion, double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles) {
+        return pages.containsKey(new Key(lngVersion, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles));
+    }
+
+    /**
+     * Keep a copy of a page
+     */
+    public synchronized void put(long lngVersion, double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles,
+                                 int[] intRmsBuffer) {
+        int[] intRmsBufferOld = pages.put(new Key(lngVersion, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles),
+                intRmsBuffer.clone());
+        if (intRmsBufferOld != null) {
+            lngSizeInBytes -= getSizeInBytes(intRmsBufferOld);
+        }
+        lngSizeInBytes += getSizeInBytes(intRmsBuffer);
+        Iterator<int[]> iterator = pages.values().iterator();
+        while ((lngSizeInBytes > lngBudgetInBytes) && iterator.hasNext()) {
+            lngSizeInBytes -= getSizeInBytes(iterator.next());
+            iterator.remove();
+            lngEvictions += 1;
+        }
+    }
+
+    /**
+     * Drop the pages of a version of a sample, it got edited
+     * @param lngVersion
+     */
+    public synchronized void invalidate(long lngVersion) {
+        Iterator<Map.Entry<Key, int[]>> iterator = pages.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, int[]> entry = iterator.next();
+            if (entry.getKey().lngVersion == lngVersion) {
+                lngSizeInBytes -= getSizeInBytes(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        pages.clear();
+        lngSizeInBytes = 0;
+    }
+
+    public synchronized long getHits() {
+        return lngHits;
+    }
+
+    public synchronized long getMisses() {
+        return lngMisses;
+    }
+
+    public synchronized long getEvictions() {
+        return lngEvictions;
+    }
+
+    /**
+     * @return Share of the lookups that were answered from the cache, 0 before the first
+     */
+    public synchronized double getHitRate() {
+        long lngLookups = lngHits + lngMisses;
+        return (lngLookups == 0) ? 0 : (double) lngHits / lngLookups;
+    }
+
+    public synchronized long getSizeInBytes() {
+        return lngSizeInBytes;
+    }
+
+    public synchronized int getPageAmount() {
+        return pages.size();
+    }
+
+    /**
+     * Log the metrics, e.g. when the session ends
+     */
+    public synchronized void logMetrics() {
+        AudioLog.d(TAG, pages.size() + " pages in " + lngSizeInBytes + " of " + lngBudgetInBytes + " bytes, " + lngHits + " hits, "
+                + lngMisses + " misses (" + Math.round(getHitRate() * 100) + "% hit rate), " + lngEvictions + " evictions");
+    }
+
+    private static long getSizeInBytes(int[] intRmsBuffer) {
+        return intRmsBuffer.length * 4L + ENTRY_OVERHEAD_IN_BYTES;
+    }
+}
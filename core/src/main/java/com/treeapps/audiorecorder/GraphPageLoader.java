@@ -0,0 +1,248 @@
+package com.treeapps.audiorecorder;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads pages of RMS frames off the calling thread, newest request first. A request supersedes the ones
+ * before it: those that have not started are dropped, and the result of one that was being computed is
+ * not delivered. Pages the GraphPageCache holds are delivered right away, on the calling thread. The
+ * others are computed on the executor and delivered on the callback executor, so the caller can show a
+ * placeholder meanwhile. A page that could not be computed is reported to the listener instead, so the caller
+ * can drop its placeholder. The latency from request to delivery is logged per request.
+ */
+public class GraphPageLoader {
+
+    private static final String TAG = "GraphPageLoader";
+
+    public interface OnPageLoadedListener {
+        public void onPageLoaded(int[] intRmsBuffer);
+        public void onPageFailed(String strErrorMessage);
+    }
+
+    private class Request {
+        final AudioLib.AudioSample audioSample;
+        final double fltRmsStartFrame;
+        final int intRmsFramesAmount;
+        final double fltRmsFrameSizeInSingles;
+        final OnPageLoadedListener onPageLoadedListener;
+        final long lngRequestedNanos = System.nanoTime();
+
+        Request(AudioLib.AudioSample audioSample, double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles,
+                OnPageLoadedListener onPageLoadedListener) {
+            this.audioSample = audioSample;
+            this.fltRmsStartFrame = fltRmsStartFrame;
+            this.intRmsFramesAmount = intRmsFramesAmount;
+            this.fltRmsFrameSizeInSingles = fltRmsFrameSizeInSingles;
+            this.onPageLoadedListener = onPageLoadedListener;
+        }
+    }
+
+    private final String strName;
+    private final Executor executor;
+    private final AtomicReference<Request> requestPending = new AtomicReference<Request>();
+    private final AtomicBoolean boolIsDraining = new AtomicBoolean(false);
+    private volatile Request requestLatest = null;
+
+    private long lngRequests = 0;
+    private long lngCached = 0;
+    private long lngLoaded = 0;
+    private long lngSuperseded = 0;
+    private long lngFailed = 0;
+    private long lngLatencyTotalInMs = 0;
+    private long lngLatencyMaxInMs = 0;
+
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * @param strName - Shows in the log
+     * @param executor - Computes the pages, one at a time is enough
+     */
+    public GraphPageLoader(String strName, Executor executor) {
+        this.strName = strName;
+        this.executor = executor;
+    }
+
+    /**
+     * Ask for a page, superseding the requests before
+     * @param audioSample
+     * @param fltRmsStartFrame
+     * @param intRmsFramesAmount
+     * @param fltRmsFrameSizeInSingles
+     * @param onPageLoadedListener - Called once the page is there, unless a newer request came in before
+     * @return True if the page was cached and the listener has been called already
+     */
+    public boolean load(AudioLib.AudioSample audioSample, double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles,
+                        OnPageLoadedListener onPageLoadedListener) {
+        Request request = new Request(audioSample, fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles, onPageLoadedListener);
+        requestLatest = request;
+        synchronized (this) {
+            lngRequests += 1;
+        }
+        int[] intRmsBuffer = audioSample.getCachedGraphBuffer(fltRmsStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles);
+        if (intRmsBuffer != null) {
+            if (requestPending.getAndSet(null) != null) {
+                countSuperseded();
+            }
+            synchronized (this) {
+                lngCached += 1;
+            }
+            onPageLoadedListener.onPageLoaded(intRmsBuffer);
+            return true;
+        }
+        if (requestPending.getAndSet(request) != null) {
+            countSuperseded();
+        }
+        if (boolIsDraining.compareAndSet(false, true)) {
+            executor.execute(drainer);
+        }
+        return false;
+    }
+
+    /**
+     * Drop the pending request and the result of the one being computed
+     */
+    public void cancel() {
+        requestLatest = null;
+        if (requestPending.getAndSet(null) != null) {
+            countSuperseded();
+        }
+    }
+
+    private void drain() {
+        boolean boolIsFinished = false;
+        try {
+            while (true) {
+                final Request request = requestPending.getAndSet(null);
+                if (request == null) {
+                    boolIsDraining.set(false);
+                    // A request that came in after the last look but before the flag dropped needs a drainer
+                    if ((requestPending.get() == null) || !boolIsDraining.compareAndSet(false, true)) {
+                        boolIsFinished = true;
+                        return;
+                    }
+                    continue;
+                }
+                final int[] intRmsBuffer;
+                try {
+                    intRmsBuffer = request.audioSample.getGraphBuffer(request.fltRmsStartFrame, request.intRmsFramesAmount,
+                            request.fltRmsFrameSizeInSingles);
+                } catch (IOException | RuntimeException e) {
+                    // Caught whatever it is, the drainer has to carry on for the requests after
+                    AudioLog.e(TAG, strName + " could not load page at RMS frame " + request.fltRmsStartFrame, e);
+                    deliverFailure(request, e.toString());
+                    continue;
+                }
+                if (request != requestLatest) {
+                    countSuperseded();
+                    continue;
+                }
+                AudioExecutors.getCallbackExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Checked again, a newer request may have come in while this was on its way
+                        if (request != requestLatest) {
+                            countSuperseded();
+                            return;
+                        }
+                        long lngLatencyInMs = (System.nanoTime() - request.lngRequestedNanos) / 1000000;
+                        synchronized (GraphPageLoader.this) {
+                            lngLoaded += 1;
+                            lngLatencyTotalInMs += lngLatencyInMs;
+                            lngLatencyMaxInMs = Math.max(lngLatencyMaxInMs, lngLatencyInMs);
+                        }
+                        AudioLog.d(TAG, strName + " page at RMS frame " + (long) request.fltRmsStartFrame + " in " + lngLatencyInMs + " ms");
+                        request.onPageLoadedListener.onPageLoaded(intRmsBuffer);
+                    }
+                });
+            }
+        } finally {
+            if (!boolIsFinished) {
+                // Thrown out of, e.g. by a listener called on this thread. Drop the flag so that later requests still load.
+                boolIsDraining.set(false);
+                if ((requestPending.get() != null) && boolIsDraining.compareAndSet(false, true)) {
+                    executor.execute(drainer);
+                }
+            }
+        }
+    }
+
+    private void deliverFailure(final Request request, final String strErrorMessage) {
+        if (request != requestLatest) {
+            countSuperseded();
+            return;
+        }
+        AudioExecutors.getCallbackExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (request != requestLatest) {
+                    countSuperseded();
+                    return;
+                }
+                synchronized (GraphPageLoader.this) {
+                    lngFailed += 1;
+                }
+                request.onPageLoadedListener.onPageFailed(strErrorMessage);
+            }
+        });
+    }
+
+    private synchronized void countSuperseded() {
+        lngSuperseded += 1;
+    }
+
+    public synchronized long getRequests() {
+        return lngRequests;
+    }
+
+    /**
+     * @return Requests answered from the GraphPageCache
+     */
+    public synchronized long getCached() {
+        return lngCached;
+    }
+
+    /**
+     * @return Requests computed and delivered
+     */
+    public synchronized long getLoaded() {
+        return lngLoaded;
+    }
+
+    /**
+     * @return Requests dropped for a newer one
+     */
+    public synchronized long getSuperseded() {
+        return lngSuperseded;
+    }
+
+    /**
+     * @return Requests that could not be computed
+     */
+    public synchronized long getFailed() {
+        return lngFailed;
+    }
+
+    /**
+     * @return Mean latency of the pages computed and delivered, 0 before the first
+     */
+    public synchronized long getLatencyAverageInMs() {
+        return (lngLoaded == 0) ? 0 : lngLatencyTotalInMs / lngLoaded;
+    }
+
+    public synchronized long getLatencyMaxInMs() {
+        return lngLatencyMaxInMs;
+    }
+
+    public synchronized void logMetrics() {
+        AudioLog.d(TAG, strName + ": " + lngRequests + " requests, " + lngCached + " cached, " + lngLoaded + " loaded, " + lngSuperseded
+                + " superseded, " + lngFailed + " failed, latency " + getLatencyAverageInMs() + " ms average, " + lngLatencyMaxInMs + " ms max");
+    }
+}
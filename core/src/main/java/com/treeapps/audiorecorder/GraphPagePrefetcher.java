@@ -0,0 +1,180 @@
+package com.treeapps.audiorecorder;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Computes the pages next to the one shown into the GraphPageCache, so that moving on to them is answered
+ * from the cache. The pages shown tell the direction and speed the graph moves at, through playback or
+ * dragging the page cursor. Pages ahead are computed first, more of them the faster it moves, then the page
+ * behind. One page is computed per run of the executor, so that a page asked for in between, to be shown,
+ * does not wait for the whole lot. A newer page shown replaces the pages still to do.
+ */
+public class GraphPagePrefetcher {
+
+    private static final String TAG = "GraphPagePrefetcher";
+    private static final int PAGES_AHEAD_MAX = 3;
+    private static final double LOOK_AHEAD_IN_SECONDS = 1.0;
+    private static final double MOTION_TIMEOUT_IN_SECONDS = 2.0; // Slower than this is standing still
+    private static final int TRACKED_PAGE_AMOUNT = 64;
+
+    private static class Page {
+        final AudioLib.AudioSample audioSample;
+        final double fltRmsStartFrame;
+        final int intRmsFramesAmount;
+        final double fltRmsFrameSizeInSingles;
+
+        Page(AudioLib.AudioSample audioSample, double fltRmsStartFrame, int intRmsFramesAmount, double fltRmsFrameSizeInSingles) {
+            this.audioSample = audioSample;
+            this.fltRmsStartFrame = fltRmsStartFrame;
+            this.intRmsFramesAmount = intRmsFramesAmount;
+            this.fltRmsFrameSizeInSingles = fltRmsFrameSizeInSingles;
+        }
+    }
+
+    private final Executor executor;
+    private ArrayDeque<Page> pagesToDo = new ArrayDeque<Page>();
+    private boolean boolIsScheduled = false;
+
+    // Motion, from the pages shown
+    private double fltLastStartFrame = Double.NaN;
+    private long lngLastShownNanos = 0;
+    private int intDirection = 1;
+
+    // Pages prefetched and not shown yet, oldest first
+    private final LinkedHashMap<GraphPageCache.Key, Boolean> pagesPrefetched = new LinkedHashMap<GraphPageCache.Key, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<GraphPageCache.Key, Boolean> eldest) {
+            return size() > TRACKED_PAGE_AMOUNT;
+        }
+    };
+    private long lngShown = 0;
+    private long lngPrefetched = 0;
+    private long lngUsed = 0;
+
+    private final Runnable prefetcher = new Runnable() {
+        @Override
+        public void run() {
+            prefetchNext();
+        }
+    };
+
+    /**
+     * @param executor - Computes the pages, share it with the GraphPageLoader so that they take turns
+     */
+    public GraphPagePrefetcher(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Tell of the page now shown, with the values getGraphBuffer is called with for it
+     * @param audioSample
+     * @param fltRmsStartFrame
+     * @param intRmsFramesAmount - Length of a page
+     * @param fltRmsFrameSizeInSingles
+     */
+    public synchronized void onPageShown(AudioLib.AudioSample audioSample, double fltRmsStartFrame, int intRmsFramesAmount,
+                                         double fltRmsFrameSizeInSingles) {
+        lngShown += 1;
+        if (pagesPrefetched.remove(new GraphPageCache.Key(audioSample.getVersion(), fltRmsStartFrame, intRmsFramesAmount,
+                fltRmsFrameSizeInSingles)) != null) {
+            lngUsed += 1;
+        }
+
+        // Pages per second the graph moves at, and which way
+        long lngNowNanos = System.nanoTime();
+        double fltSeconds = (lngNowNanos - lngLastShownNanos) / 1e9;
+        double fltPagesPerSecond = 0;
+        if (!Double.isNaN(fltLastStartFrame) && (fltSeconds < MOTION_TIMEOUT_IN_SECONDS)) {
+            double fltPages = (fltRmsStartFrame - fltLastStartFrame) / intRmsFramesAmount;
+            if (fltPages != 0) {
+                intDirection = (fltPages > 0) ? 1 : -1;
+                fltPagesPerSecond = Math.abs(fltPages) / Math.max(fltSeconds, 1e-3);
+            }
+        }
+        fltLastStartFrame = fltRmsStartFrame;
+        lngLastShownNanos = lngNowNanos;
+
+        int intPagesAhead = (int) Math.max(1, Math.min(PAGES_AHEAD_MAX, Math.ceil(fltPagesPerSecond * LOOK_AHEAD_IN_SECONDS)));
+        long lngRmsFrameAmount = audioSample.getDataAmountInRmsFrames(fltRmsFrameSizeInSingles);
+        ArrayDeque<Page> pagesNew = new ArrayDeque<Page>();
+        for (int i = 1; i <= intPagesAhead + 1; i++) {
+            // The pages ahead, then the one behind
+            double fltStartFrame = (i <= intPagesAhead) ? fltRmsStartFrame + intDirection * i * (double) intRmsFramesAmount
+                    : fltRmsStartFrame - intDirection * (double) intRmsFramesAmount;
+            if ((fltStartFrame >= 0) && (fltStartFrame < lngRmsFrameAmount)) {
+                pagesNew.add(new Page(audioSample, fltStartFrame, intRmsFramesAmount, fltRmsFrameSizeInSingles));
+            }
+        }
+        pagesToDo = pagesNew;
+        if (!boolIsScheduled && !pagesToDo.isEmpty()) {
+            boolIsScheduled = true;
+            executor.execute(prefetcher);
+        }
+    }
+
+    /**
+     * Drop the pages still to do, e.g. when the sample gets cleared
+     */
+    public synchronized void cancel() {
+        pagesToDo.clear();
+    }
+
+    private void prefetchNext() {
+        Page page;
+        synchronized (this) {
+            page = pagesToDo.poll();
+            if (page == null) {
+                boolIsScheduled = false;
+                return;
+            }
+        }
+        try {
+            if (page.audioSample.exists()) {
+                long lngVersion = page.audioSample.getVersion();
+                if (page.audioSample.prefetchGraphBuffer(page.fltRmsStartFrame, page.intRmsFramesAmount, page.fltRmsFrameSizeInSingles)) {
+                    synchronized (this) {
+                        lngPrefetched += 1;
+                        pagesPrefetched.put(new GraphPageCache.Key(lngVersion, page.fltRmsStartFrame, page.intRmsFramesAmount,
+                                page.fltRmsFrameSizeInSingles), Boolean.TRUE);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            AudioLog.e(TAG, "Could not prefetch page at RMS frame " + page.fltRmsStartFrame, e);
+        } finally {
+            // Back in line behind whatever came in meanwhile
+            executor.execute(prefetcher);
+        }
+    }
+
+    public synchronized long getShown() {
+        return lngShown;
+    }
+
+    public synchronized long getPrefetched() {
+        return lngPrefetched;
+    }
+
+    /**
+     * @return Pages shown that had been prefetched
+     */
+    public synchronized long getUsed() {
+        return lngUsed;
+    }
+
+    /**
+     * @return Share of the pages prefetched that got shown, 0 before the first
+     */
+    public synchronized double getAccuracy() {
+        return (lngPrefetched == 0) ? 0 : (double) lngUsed / lngPrefetched;
+    }
+
+    public synchronized void logMetrics() {
+        AudioLog.d(TAG, lngShown + " pages shown, " + lngPrefetched + " prefetched, " + lngUsed + " of those shown ("
+                + Math.round(getAccuracy() * 100) + "% accuracy)");
+    }
+}
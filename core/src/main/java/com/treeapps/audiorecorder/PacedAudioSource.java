@@ -0,0 +1,173 @@
+package com.treeapps.audiorecorder;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Base for stand-in audio sources. Delivers the samples of a subclass paced like a real device: at a
+ * multiple of real time, in reads of varying size, with jitter and with stalls injected at intervals.
+ * All randomness is seeded, so runs are repeatable.
+ */
+public abstract class PacedAudioSource implements AudioSource {
+
+    private final int intSampleRate;
+    private final int intBufferSizeInShorts;
+    private final Random random;
+
+    private double fltSpeedFactor = 1; // 0 is as fast as possible
+    private int intMinReadSizeInShorts;
+    private int intMaxReadSizeInShorts;
+    private int intMaxJitterInMs = 0;
+    private int intStallIntervalInMs = 0;
+    private int intStallDurationInMs = 0;
+    private long lngDurationInShorts = -1;
+
+    private long lngStartNanos;
+    private long lngShortsDelivered;
+    private long lngNextStallAtShort;
+    private int intStallCount = 0;
+
+    public PacedAudioSource(int intSampleRate, int intBufferSizeInShorts, long lngSeed) {
+        this.intSampleRate = intSampleRate;
+        this.intBufferSizeInShorts = intBufferSizeInShorts;
+        this.intMinReadSizeInShorts = intBufferSizeInShorts;
+        this.intMaxReadSizeInShorts = intBufferSizeInShorts;
+        this.random = new Random(lngSeed);
+    }
+
+    /**
+     * Produce the next samples
+     * @param audioData
+     * @param intOffset
+     * @param intLength
+     * @return Amount produced, -1 at the end
+     * @throws IOException
+     */
+    protected abstract int generate(short[] audioData, int intOffset, int intLength) throws IOException;
+
+    /**
+     * @param fltSpeedFactor - 1 for real time, 10 for ten times faster, 0 for as fast as possible
+     */
+    public PacedAudioSource setSpeedFactor(double fltSpeedFactor) {
+        this.fltSpeedFactor = fltSpeedFactor;
+        return this;
+    }
+
+    /**
+     * Let each read deliver a random amount between the two sizes, as AudioRecord does
+     */
+    public PacedAudioSource setReadSize(int intMinReadSizeInShorts, int intMaxReadSizeInShorts) {
+        this.intMinReadSizeInShorts = Math.max(1, intMinReadSizeInShorts);
+        this.intMaxReadSizeInShorts = Math.max(this.intMinReadSizeInShorts, intMaxReadSizeInShorts);
+        return this;
+    }
+
+    /**
+     * Delay each read by a random time up to the jitter, on top of the pacing
+     */
+    public PacedAudioSource setJitter(int intMaxJitterInMs) {
+        this.intMaxJitterInMs = intMaxJitterInMs;
+        return this;
+    }
+
+    /**
+     * Block a read for intStallDurationInMs after every intStallIntervalInMs of delivered audio
+     */
+    public PacedAudioSource setStalls(int intStallIntervalInMs, int intStallDurationInMs) {
+        this.intStallIntervalInMs = intStallIntervalInMs;
+        this.intStallDurationInMs = intStallDurationInMs;
+        return this;
+    }
+
+    /**
+     * End the source after this much audio, -1 for endless
+     */
+    public PacedAudioSource setDuration(long lngDurationInMs) {
+        this.lngDurationInShorts = (lngDurationInMs < 0) ? -1 : (lngDurationInMs * intSampleRate) / 1000;
+        return this;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return intSampleRate;
+    }
+
+    @Override
+    public int getBufferSizeInShorts() {
+        return intBufferSizeInShorts;
+    }
+
+    public int getStallCount() {
+        return intStallCount;
+    }
+
+    @Override
+    public void start() throws IOException {
+        lngStartNanos = System.nanoTime();
+        lngShortsDelivered = 0;
+        lngNextStallAtShort = getStallIntervalInShorts();
+    }
+
+    @Override
+    public int read(short[] audioData, int intOffset, int intLength) throws IOException {
+        int intReadSize = intMinReadSizeInShorts;
+        if (intMaxReadSizeInShorts > intMinReadSizeInShorts) {
+            intReadSize += random.nextInt(intMaxReadSizeInShorts - intMinReadSizeInShorts + 1);
+        }
+        intReadSize = Math.min(intReadSize, intLength);
+        if (lngDurationInShorts >= 0) {
+            if (lngShortsDelivered >= lngDurationInShorts) {
+                return -1;
+            }
+            intReadSize = (int) Math.min(intReadSize, lngDurationInShorts - lngShortsDelivered);
+        }
+
+        int intGenerated = generate(audioData, intOffset, intReadSize);
+        if (intGenerated <= 0) {
+            return -1;
+        }
+        lngShortsDelivered += intGenerated;
+
+        // Real time: the samples are not there before the device would have recorded them
+        long lngDelayInMs = 0;
+        if (fltSpeedFactor > 0) {
+            long lngDueNanos = lngStartNanos + (long) ((lngShortsDelivered * 1000000000.0) / (intSampleRate * fltSpeedFactor));
+            lngDelayInMs = (lngDueNanos - System.nanoTime()) / 1000000;
+        }
+        if (intMaxJitterInMs > 0) {
+            lngDelayInMs += random.nextInt(intMaxJitterInMs + 1);
+        }
+        if ((lngNextStallAtShort > 0) && (lngShortsDelivered >= lngNextStallAtShort)) {
+            lngDelayInMs += intStallDurationInMs;
+            lngNextStallAtShort += getStallIntervalInShorts();
+            intStallCount += 1;
+        }
+        if (lngDelayInMs > 0) {
+            sleep(lngDelayInMs);
+        }
+        return intGenerated;
+    }
+
+    private long getStallIntervalInShorts() {
+        if ((intStallIntervalInMs <= 0) || (intStallDurationInMs <= 0)) {
+            return 0;
+        }
+        return ((long) intStallIntervalInMs * intSampleRate) / 1000;
+    }
+
+    private void sleep(long lngDelayInMs) {
+        try {
+            Thread.sleep(lngDelayInMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void release() {
+    }
+}
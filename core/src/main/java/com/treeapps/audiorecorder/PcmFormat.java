@@ -0,0 +1,176 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * On disk format of the .pcm files. Version 2 files start with a 16 byte header (magic "TPCM", version,
+ * bits per sample) followed by little endian 16 bit samples, the byte order of AudioRecord, AudioTrack and
+ * WAV files, so moving samples between them is a straight copy.
+ *
+ * Version 1 files, written before the header existed, hold big endian samples from the first byte. They are
+ * converted once by migrateFolder when the audio folder is opened.
+ */
+public class PcmFormat {
+
+    private static final String TAG = "PcmFormat";
+
+    public static final String PCM_EXT = ".pcm";
+    public static final int HEADER_SIZE = 16;
+    public static final int VERSION = 2;
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private static final int VERSION_HEADERLESS = 1;
+    private static final byte[] MAGIC = new byte[]{'T', 'P', 'C', 'M'};
+    private static final String VERSION_FILENAME = "pcm.version";
+    private static final String MIGRATION_EXT = ".migrating";
+    private static final int MIGRATION_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+
+    /**
+     * Write the header at the start of the file, the channel is left positioned on the first sample
+     * @param channel
+     * @throws IOException
+     */
+    public static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+        header.put(MAGIC).putInt(VERSION).putInt(16);
+        header.clear();
+        long lngPosition = 0;
+        while (header.hasRemaining()) {
+            lngPosition += channel.write(header, lngPosition);
+        }
+        channel.position(HEADER_SIZE);
+    }
+
+    /**
+     * @param file
+     * @return Format version of the file, 0 if it is empty
+     * @throws IOException
+     */
+    public static int readVersion(File file) throws IOException {
+        if (file.length() == 0) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) == -1) {
+                    break;
+                }
+            }
+        } finally {
+            channel.close();
+        }
+        if (header.hasRemaining()) {
+            return VERSION_HEADERLESS;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header.get(i) != MAGIC[i]) {
+                return VERSION_HEADERLESS;
+            }
+        }
+        return header.getInt(MAGIC.length);
+    }
+
+    /**
+     * Bring all .pcm files of a folder to the current version, unless that was done before
+     * @param fileFolder
+     * @return Amount of files converted
+     * @throws IOException
+     */
+    public static int migrateFolder(File fileFolder) throws IOException {
+        File fileVersion = new File(fileFolder, VERSION_FILENAME);
+        if (fileVersion.exists()) {
+            return 0;
+        }
+        int intConverted = 0;
+        File[] files = fileFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(MIGRATION_EXT)) {
+                    // Left behind by a migration that got interrupted, the original is still intact
+                    file.delete();
+                }
+            }
+            for (File file : files) {
+                if (file.getName().endsWith(PCM_EXT) && migrate(file)) {
+                    intConverted += 1;
+                }
+            }
+        }
+        FileWriter fileWriter = new FileWriter(fileVersion);
+        try {
+            fileWriter.write(Integer.toString(VERSION));
+        } finally {
+            fileWriter.close();
+        }
+        AudioLog.d(TAG, "Migrated " + intConverted + " .pcm files in " + fileFolder.getName() + " to version " + VERSION);
+        return intConverted;
+    }
+
+    /**
+     * Convert a headerless big endian file into the current version, streaming it through a temporary file
+     * that replaces the original once complete. A journal of the file stays valid, it counts samples.
+     * @param file
+     * @return False if the file needed no conversion
+     * @throws IOException
+     */
+    public static boolean migrate(File file) throws IOException {
+        int intVersion = readVersion(file);
+        if (intVersion != VERSION_HEADERLESS) {
+            if (intVersion > VERSION) {
+                throw new IOException(file.getName() + " has unknown format version " + intVersion);
+            }
+            return false;
+        }
+        File fileMigrated = new File(file.getPath() + MIGRATION_EXT);
+        FileChannel channelIn = new FileInputStream(file).getChannel();
+        FileChannel channelOut = new FileOutputStream(fileMigrated).getChannel();
+        try {
+            writeHeader(channelOut);
+            ByteBuffer byteBuffer = ByteBuffer.allocateDirect(MIGRATION_BUFFER_SIZE_IN_BYTES).order(ByteOrder.BIG_ENDIAN);
+            ByteBuffer byteBufferOut = ByteBuffer.allocateDirect(MIGRATION_BUFFER_SIZE_IN_BYTES).order(BYTE_ORDER);
+            long lngEnd = channelIn.size() & ~1L; // A torn last sample is dropped
+            long lngPosition = 0;
+            while (lngPosition < lngEnd) {
+                byteBuffer.clear();
+                byteBuffer.limit((int) Math.min(byteBuffer.capacity(), lngEnd - lngPosition));
+                while (byteBuffer.hasRemaining()) {
+                    if (channelIn.read(byteBuffer, lngPosition + byteBuffer.position()) == -1) {
+                        break;
+                    }
+                }
+                byteBuffer.flip();
+                byteBuffer.limit(byteBuffer.limit() & ~1);
+                if (!byteBuffer.hasRemaining()) {
+                    break;
+                }
+                lngPosition += byteBuffer.remaining();
+                byteBufferOut.clear();
+                byteBufferOut.asShortBuffer().put(byteBuffer.asShortBuffer());
+                byteBufferOut.limit(byteBuffer.remaining());
+                while (byteBufferOut.hasRemaining()) {
+                    channelOut.write(byteBufferOut);
+                }
+            }
+            channelOut.force(false);
+        } finally {
+            channelIn.close();
+            channelOut.close();
+        }
+        if (!fileMigrated.renameTo(file)) {
+            fileMigrated.delete();
+            throw new IOException("Could not migrate " + file.getName());
+        }
+        // The index checks the bytes of the file, it gets rebuilt on the next update
+        PcmIndex.delete(file);
+        return true;
+    }
+}
@@ -0,0 +1,547 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Multi-resolution waveform index of a single .pcm file, kept in a sidecar .idx file next to it. The index of
+ * a .wav working file is named after the full file name and only covers the samples behind its header.
+ *
+ * Level 0 holds a min/max/sum-of-squares record for every block of 64 samples, every next level
+ * combines two blocks of the level below, up to blocks of 65536 samples. A page of RMS frames can
+ * then be computed from a handful of records per frame instead of from every sample. A block across
+ * a frame edge is split exactly, by reading the smaller part of it, so the frames come out as if
+ * computed from every sample. Any frame that holds a level 0 block is answered from the index.
+ *
+ * The index only covers complete level 0 blocks, it is extended incrementally when the .pcm file
+ * grows and rebuilt when the file got rewritten.
+ */
+public class PcmIndex {
+
+    private static final String TAG = "PcmIndex";
+
+    public static final String INDEX_EXT = ".idx";
+    public static final int BASE_BLOCK_SHIFT = 6; // 64 samples per level 0 block
+    public static final int LEVEL_AMOUNT = 11; // Up to 65536 samples per block
+
+    private static final ByteOrder INDEX_BYTE_ORDER = ByteOrder.BIG_ENDIAN;
+    private static final int MAGIC = 0x50494458; // "PIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 8; // short min, short max, float sum of squares
+    private static final int CHUNK_BLOCKS = 1024; // Level 0 blocks processed per read while building
+    private static final int BASE_BLOCK_SIZE_IN_BYTES = (1 << BASE_BLOCK_SHIFT) * 2;
+
+    private static final HashMap<String, PcmIndex> indexCache = new HashMap<String, PcmIndex>();
+
+    private final File filePcm;
+    private final File fileIndex;
+    private final long lngDataOffset;
+    private final ByteOrder pcmByteOrder;
+
+    // Header
+    private long lngCapacityInBlocks; // Level 0 capacity, higher levels hold half of the level below
+    private long lngIndexedSamples; // Always a whole number of level 0 blocks
+    private long lngSourceLength;
+    private long lngSourceModified;
+    private long lngFirstBlockChecksum;
+    private long lngLastBlockChecksum;
+    private boolean boolIsLoaded;
+
+    private PcmIndex(File filePcm) {
+        this.filePcm = filePcm;
+        this.fileIndex = getIndexFile(filePcm);
+        this.lngDataOffset = WavContainer.getDataOffset(filePcm);
+        this.pcmByteOrder = WavContainer.getByteOrder(filePcm);
+    }
+
+    /**
+     * Get the (cached) index of a .pcm file
+     * @param filePcm
+     * @return
+     */
+    public static synchronized PcmIndex get(File filePcm) {
+        String strKey = filePcm.getAbsolutePath();
+        PcmIndex pcmIndex = indexCache.get(strKey);
+        if (pcmIndex == null) {
+            pcmIndex = new PcmIndex(filePcm);
+            indexCache.put(strKey, pcmIndex);
+        }
+        return pcmIndex;
+    }
+
+    public static File getIndexFile(File filePcm) {
+        String strName = filePcm.getName();
+        if (strName.endsWith(".pcm")) {
+            strName = strName.substring(0, strName.length() - 4);
+        }
+        return new File(filePcm.getParentFile(), strName + INDEX_EXT);
+    }
+
+    /**
+     * The .pcm file got renamed, let its index follow
+     * @param filePcmFrom
+     * @param filePcmTo
+     */
+    public static synchronized void rename(File filePcmFrom, File filePcmTo) {
+        indexCache.remove(filePcmFrom.getAbsolutePath());
+        indexCache.remove(filePcmTo.getAbsolutePath());
+        File fileIndexFrom = getIndexFile(filePcmFrom);
+        if (fileIndexFrom.exists()) {
+            fileIndexFrom.renameTo(getIndexFile(filePcmTo));
+        }
+    }
+
+    public static synchronized void delete(File filePcm) {
+        indexCache.remove(filePcm.getAbsolutePath());
+        File fileIndex = getIndexFile(filePcm);
+        if (fileIndex.exists()) {
+            fileIndex.delete();
+        }
+    }
+
+    /**
+     * The .pcm file got truncated in place, keep the records of the blocks that are still complete
+     * instead of letting the next update rebuild the whole index
+     * @param filePcm
+     * @param lngLengthInBytes - New length of the file, header included
+     * @throws IOException
+     */
+    public static synchronized void truncate(File filePcm, long lngLengthInBytes) throws IOException {
+        get(filePcm).truncateTo(lngLengthInBytes);
+    }
+
+    /**
+     * Get the level to compute RMS frames of a size from. Per frame its records are read, and the smaller part of
+     * the block across its edge, which grows with the block size. Blocks of up to about four times the square root
+     * of the frame size balance the two.
+     * @param intRmsFrameSizeInShorts
+     * @return Level, or -1 if even level 0 blocks are larger than a frame
+     */
+    public static int getLevelForFrameSize(int intRmsFrameSizeInShorts) {
+        if ((1 << BASE_BLOCK_SHIFT) > intRmsFrameSizeInShorts) {
+            return -1;
+        }
+        int intLevel = 0;
+        double fltBlockSizeMax = Math.min(intRmsFrameSizeInShorts, 4 * Math.sqrt(intRmsFrameSizeInShorts));
+        for (int i = 1; i < LEVEL_AMOUNT; i++) {
+            if ((1 << (BASE_BLOCK_SHIFT + i)) <= fltBlockSizeMax) {
+                intLevel = i;
+            }
+        }
+        return intLevel;
+    }
+
+    /**
+     * Bring the index up to date with the .pcm file. Costs a file stat when nothing changed, reads
+     * only the new tail when the file grew, and rebuilds when the file got rewritten.
+     * @throws IOException
+     */
+    public synchronized void update() throws IOException {
+        long lngLength = Math.max(0, filePcm.length() - lngDataOffset);
+        long lngModified = filePcm.lastModified();
+
+        if (!boolIsLoaded) {
+            boolIsLoaded = readHeader();
+        }
+        if (boolIsLoaded && (lngLength == lngSourceLength) && (lngModified == lngSourceModified)) {
+            return;
+        }
+
+        if (!boolIsLoaded || !isPrefixUnchanged(lngLength)) {
+            create(Math.max(1, (lngLength / BASE_BLOCK_SIZE_IN_BYTES)));
+        }
+
+        long lngBlocksNeeded = lngLength / BASE_BLOCK_SIZE_IN_BYTES;
+        if (lngBlocksNeeded > lngCapacityInBlocks) {
+            grow(Math.max(lngBlocksNeeded, lngCapacityInBlocks * 2));
+        }
+        extend(lngLength);
+        lngSourceLength = lngLength;
+        lngSourceModified = lngModified;
+        writeHeader();
+    }
+
+    private synchronized void truncateTo(long lngLengthInBytes) throws IOException {
+        if (!boolIsLoaded) {
+            boolIsLoaded = readHeader();
+        }
+        if (!boolIsLoaded) {
+            return;
+        }
+        long lngBlockAmount = Math.min(lngIndexedSamples >> BASE_BLOCK_SHIFT, Math.max(0, lngLengthInBytes - lngDataOffset) / BASE_BLOCK_SIZE_IN_BYTES);
+        lngIndexedSamples = lngBlockAmount << BASE_BLOCK_SHIFT;
+        FileChannel channel = new FileInputStream(filePcm).getChannel();
+        try {
+            lngFirstBlockChecksum = (lngBlockAmount > 0) ? getBlockChecksum(channel, 0) : 0;
+            lngLastBlockChecksum = (lngBlockAmount > 0) ? getBlockChecksum(channel, lngBlockAmount - 1) : 0;
+        } finally {
+            channel.close();
+        }
+        // Leave the source stamp stale, the next update indexes the partial tail block again
+        writeHeader();
+    }
+
+    /**
+     * Add the sum of squares of the file samples [lngFileStartSample, lngFileStartSample + lngSampleAmount)
+     * to the RMS frames they fall in. Sample lngFileStartSample lands at lngPagePosition in the page.
+     * @param lngFileStartSample
+     * @param lngSampleAmount
+     * @param lngPagePosition
+     * @param intRmsFrameSizeInShorts
+     * @param fltSumOfSquares - One entry per RMS frame of the page
+     * @param intLevel
+     * @throws IOException
+     */
+    public synchronized void addSumOfSquares(long lngFileStartSample, long lngSampleAmount, long lngPagePosition,
+                                             int intRmsFrameSizeInShorts, double[] fltSumOfSquares, int intLevel) throws IOException {
+        update();
+
+        int intBlockShift = BASE_BLOCK_SHIFT + intLevel;
+        long lngCoveredSamples = (lngIndexedSamples >> intBlockShift) << intBlockShift;
+        long lngEndSample = lngFileStartSample + lngSampleAmount;
+        long lngIndexedEndSample = Math.min(lngEndSample, lngCoveredSamples);
+
+        // From the index
+        if (lngFileStartSample < lngIndexedEndSample) {
+            long lngFirstBlock = lngFileStartSample >> intBlockShift;
+            long lngLastBlock = (lngIndexedEndSample - 1) >> intBlockShift;
+            int intBlockAmount = (int) (lngLastBlock - lngFirstBlock + 1);
+            ByteBuffer records = readRecords(intLevel, lngFirstBlock, intBlockAmount);
+            addExactSumOfSquares(records, lngFirstBlock, intBlockAmount, intBlockShift, lngFileStartSample, lngIndexedEndSample,
+                    lngPagePosition, intRmsFrameSizeInShorts, fltSumOfSquares);
+        }
+
+        // Tail not covered by complete blocks yet, straight from the samples
+        long lngRawStartSample = Math.max(lngFileStartSample, lngCoveredSamples);
+        if (lngRawStartSample < lngEndSample) {
+            addRawSumOfSquares(lngRawStartSample, lngEndSample, lngRawStartSample - lngFileStartSample + lngPagePosition,
+                    intRmsFrameSizeInShorts, fltSumOfSquares);
+        }
+    }
+
+    /**
+     * Add the blocks to the RMS frames exactly. A block inside a frame adds its record. A block across a frame
+     * edge has its smaller part read from the file, the other part is the rest of its record. A block only partly
+     * in the range is read from the file.
+     */
+    private void addExactSumOfSquares(ByteBuffer records, long lngFirstBlock, int intBlockAmount, int intBlockShift,
+                                      long lngFileStartSample, long lngEndSample, long lngPagePosition,
+                                      int intRmsFrameSizeInShorts, double[] fltSumOfSquares) throws IOException {
+        long lngBlockSize = 1L << intBlockShift;
+        ByteBuffer buffer = ByteBuffer.allocate((int) (lngBlockSize * 2)).order(pcmByteOrder);
+        FileChannel channel = new FileInputStream(filePcm).getChannel();
+        try {
+            for (int i = 0; i < intBlockAmount; i++) {
+                long lngBlockStart = (lngFirstBlock + i) << intBlockShift;
+                long lngFrom = Math.max(lngFileStartSample, lngBlockStart);
+                long lngTo = Math.min(lngEndSample, lngBlockStart + lngBlockSize);
+                long lngPageFrom = lngFrom - lngFileStartSample + lngPagePosition;
+                long lngFrameFirst = lngPageFrom / intRmsFrameSizeInShorts;
+                long lngFrameLast = (lngTo - lngFileStartSample + lngPagePosition - 1) / intRmsFrameSizeInShorts;
+                if ((lngTo - lngFrom) < lngBlockSize) {
+                    addRawSumOfSquares(channel, buffer, lngFrom, lngTo, lngPageFrom, intRmsFrameSizeInShorts, fltSumOfSquares);
+                } else if (lngFrameFirst == lngFrameLast) {
+                    addToFrame(fltSumOfSquares, lngFrameFirst, records.getFloat(i * RECORD_SIZE + 4));
+                } else {
+                    // A frame holds at least a block, so the block falls in two frames
+                    double fltBlockSum = records.getFloat(i * RECORD_SIZE + 4);
+                    long lngSplit = lngFrom + (lngFrameLast * intRmsFrameSizeInShorts - lngPageFrom);
+                    if ((lngSplit - lngFrom) <= (lngTo - lngSplit)) {
+                        double fltPartSum = getRawSumOfSquares(channel, buffer, lngFrom, lngSplit);
+                        addToFrame(fltSumOfSquares, lngFrameFirst, fltPartSum);
+                        addToFrame(fltSumOfSquares, lngFrameLast, Math.max(0, fltBlockSum - fltPartSum));
+                    } else {
+                        double fltPartSum = getRawSumOfSquares(channel, buffer, lngSplit, lngTo);
+                        addToFrame(fltSumOfSquares, lngFrameFirst, Math.max(0, fltBlockSum - fltPartSum));
+                        addToFrame(fltSumOfSquares, lngFrameLast, fltPartSum);
+                    }
+                }
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void addToFrame(double[] fltSumOfSquares, long lngFrame, double fltSum) {
+        if (lngFrame >= 0 && lngFrame < fltSumOfSquares.length) {
+            fltSumOfSquares[(int) lngFrame] += fltSum;
+        }
+    }
+
+    private double getRawSumOfSquares(FileChannel channel, ByteBuffer buffer, long lngStartSample, long lngEndSample) throws IOException {
+        buffer.clear();
+        buffer.limit((int) ((lngEndSample - lngStartSample) * 2));
+        readFully(channel, buffer, lngDataOffset + lngStartSample * 2);
+        buffer.flip();
+        double fltSum = 0;
+        while (buffer.remaining() >= 2) {
+            short s = buffer.getShort();
+            fltSum += s * s;
+        }
+        return fltSum;
+    }
+
+    private void addRawSumOfSquares(FileChannel channel, ByteBuffer buffer, long lngStartSample, long lngEndSample, long lngPagePosition,
+                                    int intRmsFrameSizeInShorts, double[] fltSumOfSquares) throws IOException {
+        buffer.clear();
+        buffer.limit((int) ((lngEndSample - lngStartSample) * 2));
+        readFully(channel, buffer, lngDataOffset + lngStartSample * 2);
+        buffer.flip();
+        long lngPosition = lngPagePosition;
+        while (buffer.remaining() >= 2) {
+            short s = buffer.getShort();
+            addToFrame(fltSumOfSquares, lngPosition / intRmsFrameSizeInShorts, s * s);
+            lngPosition += 1;
+        }
+    }
+
+    private void addRawSumOfSquares(long lngStartSample, long lngEndSample, long lngPagePosition,
+                                    int intRmsFrameSizeInShorts, double[] fltSumOfSquares) throws IOException {
+        FileChannel channel = new FileInputStream(filePcm).getChannel();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) ((lngEndSample - lngStartSample) * 2)).order(pcmByteOrder);
+            addRawSumOfSquares(channel, buffer, lngStartSample, lngEndSample, lngPagePosition, intRmsFrameSizeInShorts, fltSumOfSquares);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer readRecords(int intLevel, long lngFirstBlock, int intBlockAmount) throws IOException {
+        ByteBuffer records = ByteBuffer.allocate(intBlockAmount * RECORD_SIZE).order(INDEX_BYTE_ORDER);
+        RandomAccessFile raf = new RandomAccessFile(fileIndex, "r");
+        try {
+            readFully(raf.getChannel(), records, getRecordPosition(intLevel, lngFirstBlock));
+        } finally {
+            raf.close();
+        }
+        return records;
+    }
+
+    private long getLevelCapacity(long lngCapacityInBlocks, int intLevel) {
+        return Math.max(1, lngCapacityInBlocks >> intLevel);
+    }
+
+    private long getRecordPosition(int intLevel, long lngBlock) {
+        long lngPosition = HEADER_SIZE;
+        for (int i = 0; i < intLevel; i++) {
+            lngPosition += getLevelCapacity(lngCapacityInBlocks, i) * RECORD_SIZE;
+        }
+        return lngPosition + lngBlock * RECORD_SIZE;
+    }
+
+    private void create(long lngCapacityInBlocks) throws IOException {
+        AudioLog.d(TAG, "Building index for " + filePcm.getName());
+        this.lngCapacityInBlocks = lngCapacityInBlocks;
+        lngIndexedSamples = 0;
+        lngSourceLength = 0;
+        lngSourceModified = 0;
+        lngFirstBlockChecksum = 0;
+        lngLastBlockChecksum = 0;
+        RandomAccessFile raf = new RandomAccessFile(fileIndex, "rw");
+        try {
+            raf.setLength(getRecordPosition(LEVEL_AMOUNT, 0));
+        } finally {
+            raf.close();
+        }
+        boolIsLoaded = true;
+        writeHeader();
+    }
+
+    /**
+     * Re-layout the levels for a larger capacity, copying the records already computed
+     * @param lngCapacityInBlocksNew
+     * @throws IOException
+     */
+    private void grow(long lngCapacityInBlocksNew) throws IOException {
+        File fileGrown = new File(fileIndex.getPath() + ".tmp");
+        RandomAccessFile rafOld = new RandomAccessFile(fileIndex, "r");
+        RandomAccessFile rafNew = new RandomAccessFile(fileGrown, "rw");
+        try {
+            long lngPositionNew = HEADER_SIZE;
+            for (int i = 0; i < LEVEL_AMOUNT; i++) {
+                long lngUsedBytes = (lngIndexedSamples >> (BASE_BLOCK_SHIFT + i)) * RECORD_SIZE;
+                rafOld.getChannel().transferTo(getRecordPosition(i, 0), lngUsedBytes, rafNew.getChannel().position(lngPositionNew));
+                lngPositionNew += getLevelCapacity(lngCapacityInBlocksNew, i) * RECORD_SIZE;
+            }
+            rafNew.setLength(lngPositionNew);
+        } finally {
+            rafOld.close();
+            rafNew.close();
+        }
+        if (!fileGrown.renameTo(fileIndex)) {
+            fileIndex.delete();
+            if (!fileGrown.renameTo(fileIndex)) {
+                throw new IOException("Could not grow index " + fileIndex.getName());
+            }
+        }
+        lngCapacityInBlocks = lngCapacityInBlocksNew;
+        writeHeader();
+    }
+
+    /**
+     * Stream the not yet indexed complete blocks of the .pcm file into level 0, then combine upwards
+     * @param lngLength
+     * @throws IOException
+     */
+    private void extend(long lngLength) throws IOException {
+        long lngFirstNewBlock = lngIndexedSamples >> BASE_BLOCK_SHIFT;
+        long lngBlockAmount = lngLength / BASE_BLOCK_SIZE_IN_BYTES;
+        if (lngBlockAmount <= lngFirstNewBlock) {
+            return;
+        }
+
+        FileChannel channelPcm = new FileInputStream(filePcm).getChannel();
+        RandomAccessFile raf = new RandomAccessFile(fileIndex, "rw");
+        try {
+            FileChannel channelIndex = raf.getChannel();
+            ByteBuffer samples = ByteBuffer.allocate(CHUNK_BLOCKS * BASE_BLOCK_SIZE_IN_BYTES).order(pcmByteOrder);
+            ByteBuffer records = ByteBuffer.allocate(CHUNK_BLOCKS * RECORD_SIZE).order(INDEX_BYTE_ORDER);
+            long lngBlock = lngFirstNewBlock;
+            while (lngBlock < lngBlockAmount) {
+                int intChunkBlocks = (int) Math.min(CHUNK_BLOCKS, lngBlockAmount - lngBlock);
+                samples.clear();
+                samples.limit(intChunkBlocks * BASE_BLOCK_SIZE_IN_BYTES);
+                readFully(channelPcm, samples, lngDataOffset + lngBlock * BASE_BLOCK_SIZE_IN_BYTES);
+                samples.flip();
+                records.clear();
+                for (int i = 0; i < intChunkBlocks; i++) {
+                    short sMin = Short.MAX_VALUE;
+                    short sMax = Short.MIN_VALUE;
+                    double fltSum = 0;
+                    for (int j = 0; j < (1 << BASE_BLOCK_SHIFT); j++) {
+                        short s = samples.getShort();
+                        if (s < sMin) sMin = s;
+                        if (s > sMax) sMax = s;
+                        fltSum += s * s;
+                    }
+                    records.putShort(sMin).putShort(sMax).putFloat((float) fltSum);
+                }
+                records.flip();
+                writeFully(channelIndex, records, getRecordPosition(0, lngBlock));
+                lngBlock += intChunkBlocks;
+            }
+
+            // Combine pairs of blocks of each level into the next one up
+            for (int intLevel = 1; intLevel < LEVEL_AMOUNT; intLevel++) {
+                long lngFrom = lngFirstNewBlock >> intLevel;
+                long lngTo = lngBlockAmount >> intLevel;
+                while (lngFrom < lngTo) {
+                    int intAmount = (int) Math.min(CHUNK_BLOCKS / 2, lngTo - lngFrom);
+                    ByteBuffer lower = ByteBuffer.allocate(intAmount * 2 * RECORD_SIZE).order(INDEX_BYTE_ORDER);
+                    readFully(channelIndex, lower, getRecordPosition(intLevel - 1, lngFrom * 2));
+                    lower.flip();
+                    records.clear();
+                    for (int i = 0; i < intAmount; i++) {
+                        short sMin1 = lower.getShort(), sMax1 = lower.getShort();
+                        float fltSum1 = lower.getFloat();
+                        short sMin2 = lower.getShort(), sMax2 = lower.getShort();
+                        float fltSum2 = lower.getFloat();
+                        records.putShort((short) Math.min(sMin1, sMin2)).putShort((short) Math.max(sMax1, sMax2)).putFloat(fltSum1 + fltSum2);
+                    }
+                    records.flip();
+                    writeFully(channelIndex, records, getRecordPosition(intLevel, lngFrom));
+                    lngFrom += intAmount;
+                }
+            }
+            lngIndexedSamples = lngBlockAmount << BASE_BLOCK_SHIFT;
+            lngFirstBlockChecksum = getBlockChecksum(channelPcm, 0);
+            lngLastBlockChecksum = getBlockChecksum(channelPcm, lngBlockAmount - 1);
+        } finally {
+            channelPcm.close();
+            raf.close();
+        }
+    }
+
+    /**
+     * Check that what got indexed before is still there, by comparing the first and last indexed blocks
+     * @param lngLength
+     * @return
+     * @throws IOException
+     */
+    private boolean isPrefixUnchanged(long lngLength) throws IOException {
+        long lngBlockAmount = lngIndexedSamples >> BASE_BLOCK_SHIFT;
+        if (lngLength < lngIndexedSamples * 2) {
+            return false;
+        }
+        if (lngBlockAmount == 0) {
+            return true;
+        }
+        FileChannel channel = new FileInputStream(filePcm).getChannel();
+        try {
+            return (getBlockChecksum(channel, 0) == lngFirstBlockChecksum) &&
+                    (getBlockChecksum(channel, lngBlockAmount - 1) == lngLastBlockChecksum);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private long getBlockChecksum(FileChannel channel, long lngBlock) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(BASE_BLOCK_SIZE_IN_BYTES);
+        readFully(channel, block, lngDataOffset + lngBlock * BASE_BLOCK_SIZE_IN_BYTES);
+        CRC32 crc32 = new CRC32();
+        crc32.update(block.array(), 0, block.position());
+        return crc32.getValue();
+    }
+
+    private boolean readHeader() throws IOException {
+        if (!fileIndex.exists() || fileIndex.length() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(INDEX_BYTE_ORDER);
+        RandomAccessFile raf = new RandomAccessFile(fileIndex, "r");
+        try {
+            readFully(raf.getChannel(), header, 0);
+        } finally {
+            raf.close();
+        }
+        header.flip();
+        if ((header.getInt() != MAGIC) || (header.getInt() != VERSION) || (header.getInt() != BASE_BLOCK_SHIFT) || (header.getInt() != LEVEL_AMOUNT)) {
+            return false;
+        }
+        lngCapacityInBlocks = header.getLong();
+        lngIndexedSamples = header.getLong();
+        lngSourceLength = header.getLong();
+        lngSourceModified = header.getLong();
+        lngFirstBlockChecksum = header.getLong();
+        lngLastBlockChecksum = header.getLong();
+        return fileIndex.length() >= getRecordPosition(LEVEL_AMOUNT, 0);
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(INDEX_BYTE_ORDER);
+        header.putInt(MAGIC).putInt(VERSION).putInt(BASE_BLOCK_SHIFT).putInt(LEVEL_AMOUNT);
+        header.putLong(lngCapacityInBlocks).putLong(lngIndexedSamples).putLong(lngSourceLength).putLong(lngSourceModified);
+        header.putLong(lngFirstBlockChecksum).putLong(lngLastBlockChecksum);
+        header.clear();
+        RandomAccessFile raf = new RandomAccessFile(fileIndex, "rw");
+        try {
+            writeFully(raf.getChannel(), header, 0);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long lngPosition) throws IOException {
+        while (buffer.hasRemaining()) {
+            int ret = channel.read(buffer, lngPosition);
+            if (ret == -1) {
+                break;
+            }
+            lngPosition += ret;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long lngPosition) throws IOException {
+        while (buffer.hasRemaining()) {
+            lngPosition += channel.write(buffer, lngPosition);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Commit journal of a .pcm file that is being recorded, kept in a sidecar .jnl file next to it.
+ *
+ * While recording, a checkpoint is appended every few seconds: the amount of samples safely on disk and a
+ * checksum of the samples written since the previous checkpoint, forced to disk after the samples themselves.
+ * When the recording process dies, the next open of the file truncates it to the last checkpoint whose
+ * samples check out. That only reads the samples of one checkpoint interval, whatever the file size.
+ */
+public class PcmJournal {
+
+    private static final String TAG = "PcmJournal";
+
+    public static final String JOURNAL_EXT = ".jnl";
+
+    private static final ByteOrder JOURNAL_BYTE_ORDER = ByteOrder.BIG_ENDIAN;
+    private static final int MAGIC = 0x504A4E4C; // "PJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 24; // int magic, long samples, long checksum, int record crc
+    private static final int RECOVERY_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+
+    private final RandomAccessFile raf;
+    private final File filePcm;
+    private final ArrayList<Long> lngCheckpoints = new ArrayList<Long>();
+    private long lngChecksum = 0;
+    private long lngCheckpointSamples = 0;
+
+    /**
+     * Start a new journal for a .pcm file that is about to be (re)written from the start
+     * @param filePcm
+     * @throws IOException
+     */
+    public PcmJournal(File filePcm) throws IOException {
+        this.filePcm = filePcm;
+        File fileJournal = getJournalFile(filePcm);
+        fileJournal.delete();
+        raf = new RandomAccessFile(fileJournal, "rw");
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(JOURNAL_BYTE_ORDER);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.clear();
+        writeFully(raf.getChannel(), header, 0);
+        raf.getChannel().force(true);
+    }
+
+    public static File getJournalFile(File filePcm) {
+        String strName = filePcm.getName();
+        if (strName.endsWith(".pcm")) {
+            strName = strName.substring(0, strName.length() - 4);
+        }
+        return new File(filePcm.getParentFile(), strName + JOURNAL_EXT);
+    }
+
+    public static boolean exists(File filePcm) {
+        return getJournalFile(filePcm).exists();
+    }
+
+    public static void delete(File filePcm) {
+        File fileJournal = getJournalFile(filePcm);
+        if (fileJournal.exists()) {
+            fileJournal.delete();
+        }
+    }
+
+    /**
+     * Add samples, in the order they are written to the .pcm file, to the checksum of the next checkpoint
+     * @param audioData
+     * @param intOffset
+     * @param intLength
+     */
+    public void update(short[] audioData, int intOffset, int intLength) {
+        lngChecksum = updateChecksum(lngChecksum, audioData, intOffset, intLength);
+    }
+
+    /**
+     * Make the samples written so far durable and record them as a checkpoint
+     * @param channelPcm - The channel the samples were written through
+     * @param lngSamples - Total amount of samples written, all of them passed through update
+     * @throws IOException
+     */
+    public void checkpoint(FileChannel channelPcm, long lngSamples) throws IOException {
+        if (lngSamples == lngCheckpointSamples) {
+            return;
+        }
+        channelPcm.force(false);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).order(JOURNAL_BYTE_ORDER);
+        record.putInt(MAGIC).putLong(lngSamples).putLong(lngChecksum);
+        record.putInt((int) getRecordChecksum(record.array()));
+        record.clear();
+        FileChannel channel = raf.getChannel();
+        writeFully(channel, record, channel.size());
+        channel.force(false);
+        lngCheckpoints.add(lngSamples);
+        lngCheckpointSamples = lngSamples;
+        lngChecksum = 0;
+    }
+
+    /**
+     * The recording ended and the .pcm file got cut to its final length, which can be before the last
+     * checkpoints. Drop those and checkpoint the final length, reading back the samples since the last
+     * checkpoint that is kept.
+     * @param channelPcm - Readable channel of the .pcm file
+     * @param lngSamples
+     * @throws IOException
+     */
+    public void finish(FileChannel channelPcm, long lngSamples) throws IOException {
+        int intKeep = lngCheckpoints.size();
+        while ((intKeep > 0) && (lngCheckpoints.get(intKeep - 1) > lngSamples)) {
+            intKeep -= 1;
+        }
+        if (intKeep < lngCheckpoints.size()) {
+            raf.getChannel().truncate(HEADER_SIZE + (long) intKeep * RECORD_SIZE);
+            lngCheckpoints.subList(intKeep, lngCheckpoints.size()).clear();
+        }
+        lngCheckpointSamples = (intKeep > 0) ? lngCheckpoints.get(intKeep - 1) : 0;
+        lngChecksum = getChecksum(channelPcm, filePcm, lngCheckpointSamples, lngSamples);
+        checkpoint(channelPcm, lngSamples);
+    }
+
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    /**
+     * If the .pcm file has a journal, its recording did not get merged. Truncate the file to the last
+     * checkpoint that checks out, checking at most the last two checkpoint intervals.
+     * @param filePcm
+     * @return Amount of samples kept, -1 if there is no journal
+     * @throws IOException
+     */
+    public static long recover(File filePcm) throws IOException {
+        File fileJournal = getJournalFile(filePcm);
+        if (!fileJournal.exists()) {
+            return -1;
+        }
+        long lngDataOffset = WavContainer.getDataOffset(filePcm);
+        long lngPcmLength = filePcm.exists() ? Math.max(0, filePcm.length() - lngDataOffset) : 0;
+        long lngRecoveredSamples = 0;
+        RandomAccessFile rafJournal = new RandomAccessFile(fileJournal, "r");
+        try {
+            FileChannel channelJournal = rafJournal.getChannel();
+            long lngRecordAmount = Math.max(0, (channelJournal.size() - HEADER_SIZE) / RECORD_SIZE);
+            // A torn last record or a last interval that did not reach the disk falls back to the one before
+            for (long i = lngRecordAmount - 1; (i >= 0) && (i >= lngRecordAmount - 2); i--) {
+                long[] lngRecord = readRecord(channelJournal, i);
+                if (lngRecord == null) {
+                    continue;
+                }
+                long[] lngPreviousRecord = (i > 0) ? readRecord(channelJournal, i - 1) : new long[]{0, 0};
+                if (lngPreviousRecord == null) {
+                    continue;
+                }
+                long lngFromSample = lngPreviousRecord[0];
+                long lngToSample = lngRecord[0];
+                if ((lngToSample <= lngFromSample) || (lngToSample * 2 > lngPcmLength)) {
+                    continue;
+                }
+                if (getChecksum(filePcm, lngFromSample, lngToSample) == lngRecord[1]) {
+                    lngRecoveredSamples = lngToSample;
+                    break;
+                }
+            }
+        } finally {
+            rafJournal.close();
+        }
+        if (lngPcmLength > lngRecoveredSamples * 2) {
+            RandomAccessFile rafPcm = new RandomAccessFile(filePcm, "rw");
+            try {
+                rafPcm.getChannel().truncate(lngDataOffset + lngRecoveredSamples * 2);
+            } finally {
+                rafPcm.close();
+            }
+            PcmIndex.truncate(filePcm, lngDataOffset + lngRecoveredSamples * 2);
+        }
+        AudioLog.d(TAG, "Recovered " + lngRecoveredSamples + " samples of " + filePcm.getName() + " holding " + lngPcmLength / 2);
+        return lngRecoveredSamples;
+    }
+
+    /**
+     * @param channel
+     * @param lngRecord
+     * @return {samples, checksum}, null if the record is damaged
+     * @throws IOException
+     */
+    private static long[] readRecord(FileChannel channel, long lngRecord) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).order(JOURNAL_BYTE_ORDER);
+        readFully(channel, record, HEADER_SIZE + lngRecord * RECORD_SIZE);
+        if (record.hasRemaining()) {
+            return null;
+        }
+        record.flip();
+        if ((record.getInt() != MAGIC) || ((int) getRecordChecksum(record.array()) != record.getInt(RECORD_SIZE - 4))) {
+            return null;
+        }
+        return new long[]{record.getLong(), record.getLong()};
+    }
+
+    private static long getRecordChecksum(byte[] record) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(record, 0, RECORD_SIZE - 4);
+        return crc32.getValue();
+    }
+
+    private static long getChecksum(File filePcm, long lngFromSample, long lngToSample) throws IOException {
+        FileChannel channel = new FileInputStream(filePcm).getChannel();
+        try {
+            return getChecksum(channel, filePcm, lngFromSample, lngToSample);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static long getChecksum(FileChannel channel, File filePcm, long lngFromSample, long lngToSample) throws IOException {
+        long lngDataOffset = WavContainer.getDataOffset(filePcm);
+        ByteBuffer buffer = ByteBuffer.allocate(RECOVERY_BUFFER_SIZE_IN_BYTES).order(WavContainer.getByteOrder(filePcm));
+        short[] audioData = new short[RECOVERY_BUFFER_SIZE_IN_BYTES / 2];
+        long lngChecksum = 0;
+        long lngPosition = lngFromSample;
+        while (lngPosition < lngToSample) {
+            int intAmount = (int) Math.min(audioData.length, lngToSample - lngPosition);
+            buffer.clear();
+            buffer.limit(intAmount * 2);
+            readFully(channel, buffer, lngDataOffset + lngPosition * 2);
+            if (buffer.hasRemaining()) {
+                return -1;
+            }
+            buffer.flip();
+            buffer.asShortBuffer().get(audioData, 0, intAmount);
+            lngChecksum = updateChecksum(lngChecksum, audioData, 0, intAmount);
+            lngPosition += intAmount;
+        }
+        return lngChecksum;
+    }
+
+    /**
+     * Fletcher style checksum over 16 bit samples, cheap enough to run on the disk writer thread
+     * @param lngChecksum - Checksum so far, 0 to start
+     * @param audioData
+     * @param intOffset
+     * @param intLength
+     * @return
+     */
+    static long updateChecksum(long lngChecksum, short[] audioData, int intOffset, int intLength) {
+        long lngSum1 = lngChecksum & 0xFFFFFFFFL;
+        long lngSum2 = lngChecksum >>> 32;
+        for (int i = intOffset; i < intOffset + intLength; i++) {
+            lngSum1 = (lngSum1 + (audioData[i] & 0xFFFF)) % 0xFFFFFFFFL;
+            lngSum2 = (lngSum2 + lngSum1) % 0xFFFFFFFFL;
+        }
+        return (lngSum2 << 32) | lngSum1;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long lngPosition) throws IOException {
+        while (buffer.hasRemaining()) {
+            int ret = channel.read(buffer, lngPosition);
+            if (ret == -1) {
+                break;
+            }
+            lngPosition += ret;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long lngPosition) throws IOException {
+        while (buffer.hasRemaining()) {
+            lngPosition += channel.write(buffer, lngPosition);
+        }
+    }
+}
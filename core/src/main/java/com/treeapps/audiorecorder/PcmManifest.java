@@ -0,0 +1,162 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Piece table of a sample, kept in a sidecar .pieces file next to its own file, so that the audio of a sample
+ * that got edited can be found again in the next session. The pieces refer to files by name, inside the folder
+ * of the own file.
+ *
+ * The manifest is replaced as a whole, by writing a new one and renaming it over the old one, so it always
+ * holds one complete piece table. It also records the length the own file had, a manifest whose own file
+ * got rewritten since, e.g. by a recording that did not get to finish, no longer applies.
+ */
+public class PcmManifest {
+
+    private static final String TAG = "PcmManifest";
+
+    public static final String MANIFEST_EXT = ".pieces";
+
+    private static final ByteOrder MANIFEST_BYTE_ORDER = ByteOrder.BIG_ENDIAN;
+    private static final Charset NAME_CHARSET = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x504D4E46; // "PMNF"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20; // int magic, int version, long own file length, int piece amount
+
+    public static File getManifestFile(File fileOwn) {
+        String strName = fileOwn.getName();
+        if (strName.endsWith(".pcm")) {
+            strName = strName.substring(0, strName.length() - 4);
+        }
+        return new File(fileOwn.getParentFile(), strName + MANIFEST_EXT);
+    }
+
+    public static boolean exists(File fileOwn) {
+        return getManifestFile(fileOwn).exists();
+    }
+
+    public static void delete(File fileOwn) {
+        File fileManifest = getManifestFile(fileOwn);
+        if (fileManifest.exists()) {
+            fileManifest.delete();
+        }
+    }
+
+    /**
+     * Replace the manifest of a sample by its current piece table, durably
+     * @param fileOwn
+     * @param pieces
+     * @throws IOException
+     */
+    public static void write(File fileOwn, List<AudioLib.Piece> pieces) throws IOException {
+        ArrayList<byte[]> names = new ArrayList<byte[]>();
+        int intNamesSize = 0;
+        for (AudioLib.Piece piece : pieces) {
+            byte[] name = piece.file.getName().getBytes(NAME_CHARSET);
+            names.add(name);
+            intNamesSize += 2 + name.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + intNamesSize + pieces.size() * 16 + 4).order(MANIFEST_BYTE_ORDER);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(fileOwn.exists() ? fileOwn.length() : -1);
+        buffer.putInt(pieces.size());
+        for (int i = 0; i < pieces.size(); i++) {
+            buffer.putShort((short) names.get(i).length).put(names.get(i));
+            buffer.putLong(pieces.get(i).lngOffsetInBytes).putLong(pieces.get(i).lngLengthInBytes);
+        }
+        buffer.putInt((int) getChecksum(buffer.array(), buffer.position()));
+        buffer.flip();
+
+        File fileManifest = getManifestFile(fileOwn);
+        File fileNew = new File(fileManifest.getPath() + ".new");
+        FileOutputStream fileOutputStream = new FileOutputStream(fileNew);
+        try {
+            FileChannel channel = fileOutputStream.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } finally {
+            fileOutputStream.close();
+        }
+        // Replaces the old manifest in one step where the file system allows, otherwise make room first
+        if (!fileNew.renameTo(fileManifest)
+                && ((fileManifest.exists() && !fileManifest.delete()) || !fileNew.renameTo(fileManifest))) {
+            fileNew.delete();
+            throw new IOException("Could not replace " + fileManifest.getName());
+        }
+    }
+
+    /**
+     * Read the piece table of a sample back
+     * @param fileOwn
+     * @return The pieces, null if there is no manifest or it no longer applies: it is damaged, the own file
+     * changed length since, or a piece is not in its file (anymore)
+     * @throws IOException
+     */
+    public static ArrayList<AudioLib.Piece> read(File fileOwn) throws IOException {
+        File fileManifest = getManifestFile(fileOwn);
+        if (!fileManifest.exists()) {
+            return null;
+        }
+        ByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(fileManifest, "r");
+        try {
+            if ((raf.length() < HEADER_SIZE + 4) || (raf.length() > Integer.MAX_VALUE)) {
+                return null;
+            }
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            buffer = ByteBuffer.wrap(bytes).order(MANIFEST_BYTE_ORDER);
+        } finally {
+            raf.close();
+        }
+        if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)
+                || ((int) getChecksum(buffer.array(), buffer.limit() - 4) != buffer.getInt(buffer.limit() - 4))) {
+            AudioLog.e(TAG, "Damaged manifest " + fileManifest.getName());
+            return null;
+        }
+        long lngOwnLength = buffer.getLong();
+        if (lngOwnLength != (fileOwn.exists() ? fileOwn.length() : -1)) {
+            AudioLog.d(TAG, "Manifest " + fileManifest.getName() + " is older than " + fileOwn.getName());
+            return null;
+        }
+        int intPieceAmount = buffer.getInt();
+        ArrayList<AudioLib.Piece> pieces = new ArrayList<AudioLib.Piece>();
+        try {
+            for (int i = 0; i < intPieceAmount; i++) {
+                byte[] name = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(name);
+                File filePiece = new File(fileOwn.getParentFile(), new String(name, NAME_CHARSET));
+                long lngOffsetInBytes = buffer.getLong();
+                long lngLengthInBytes = buffer.getLong();
+                if (!filePiece.exists() || (lngOffsetInBytes < 0) || (lngLengthInBytes <= 0)
+                        || (lngOffsetInBytes + lngLengthInBytes > filePiece.length())) {
+                    AudioLog.e(TAG, "Manifest " + fileManifest.getName() + " refers to missing audio in " + filePiece.getName());
+                    return null;
+                }
+                pieces.add(new AudioLib.Piece(filePiece, lngOffsetInBytes, lngLengthInBytes));
+            }
+        } catch (RuntimeException e) {
+            // Record sizes that do not add up, in a manifest that passed the checksum
+            AudioLog.e(TAG, "Damaged manifest " + fileManifest.getName(), e);
+            return null;
+        }
+        return pieces;
+    }
+
+    private static long getChecksum(byte[] bytes, int intLength) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, intLength);
+        return crc32.getValue();
+    }
+}
@@ -0,0 +1,242 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Positional reader over the piece table of an AudioSample. Seeking to any sample costs a binary search
+ * over the pieces, the samples are decoded in bulk straight from memory mapped windows of the piece files.
+ * Reads are synchronized, so one reader can be shared between threads: AudioSample hands out the same
+ * reader for as long as its piece table stays the same, and the files are closed when the last user closes it.
+ * Until then the piece files of the reader are in use, and AudioLib leaves them be when it deletes unused ones.
+ */
+public class PcmReader {
+
+    private static final int WINDOW_SIZE_IN_BYTES = 8 * 1024 * 1024;
+    private static final int WINDOW_AMOUNT = 4; // Mapped at once, so that users reading far apart do not remap every read
+
+    private static class Window {
+        final File file;
+        final long lngStartByte;
+        final long lngEndByte;
+        final ShortBuffer shortBuffer;
+
+        Window(File file, long lngStartByte, ShortBuffer shortBuffer) {
+            this.file = file;
+            this.lngStartByte = lngStartByte;
+            this.lngEndByte = lngStartByte + shortBuffer.capacity() * 2;
+            this.shortBuffer = shortBuffer;
+        }
+    }
+
+    private static final HashSet<PcmReader> readersOpen = new HashSet<PcmReader>();
+
+    private final ArrayList<AudioLib.Piece> pieces;
+    private final long[] lngPieceStartShorts; // One more than there are pieces, the last is the total size
+    private final HashMap<File, RandomAccessFile> files = new HashMap<File, RandomAccessFile>();
+
+    private final ArrayList<Window> windows = new ArrayList<Window>(); // Most recently used first
+
+    // Current window
+    private File fileWindow;
+    private long lngWindowStartByte;
+    private long lngWindowEndByte;
+    private ShortBuffer shortBufferWindow;
+
+    private int intUsers = 1;
+
+    public PcmReader(List<AudioLib.Piece> pieces) {
+        this.pieces = new ArrayList<AudioLib.Piece>(pieces);
+        lngPieceStartShorts = new long[pieces.size() + 1];
+        for (int i = 0; i < pieces.size(); i++) {
+            lngPieceStartShorts[i + 1] = lngPieceStartShorts[i] + pieces.get(i).lngLengthInBytes / 2;
+        }
+        synchronized (readersOpen) {
+            readersOpen.add(this);
+        }
+    }
+
+    /**
+     * @return The files of the readers that are not closed yet, as absolute files
+     */
+    public static HashSet<File> getFilesInUse() {
+        HashSet<File> filesInUse = new HashSet<File>();
+        synchronized (readersOpen) {
+            for (PcmReader pcmReader : readersOpen) {
+                for (AudioLib.Piece piece : pcmReader.pieces) {
+                    filesInUse.add(piece.file.getAbsoluteFile());
+                }
+            }
+        }
+        return filesInUse;
+    }
+
+    public long getSizeInShorts() {
+        return lngPieceStartShorts[pieces.size()];
+    }
+
+    /**
+     * Read samples starting at a sample index
+     * @param lngStartShort
+     * @param audioData
+     * @param intOffset
+     * @param intLength
+     * @return Amount of shorts read, -1 if lngStartShort is at or past the end
+     * @throws IOException
+     */
+    public synchronized int read(long lngStartShort, short[] audioData, int intOffset, int intLength) throws IOException {
+        return read(lngStartShort, audioData, intOffset, intLength, null);
+    }
+
+    /**
+     * Read samples starting at a sample index, until the buffer is full or the audio ends
+     * @param lngStartShort
+     * @param shortBuffer
+     * @return Amount of shorts read, -1 if lngStartShort is at or past the end
+     * @throws IOException
+     */
+    public synchronized int read(long lngStartShort, ShortBuffer shortBuffer) throws IOException {
+        return read(lngStartShort, null, 0, shortBuffer.remaining(), shortBuffer);
+    }
+
+    private int read(long lngStartShort, short[] audioData, int intOffset, int intLength, ShortBuffer shortBuffer) throws IOException {
+        if ((lngStartShort < 0) || (lngStartShort >= getSizeInShorts())) {
+            return -1;
+        }
+        int intPieceIndex = findPiece(lngStartShort);
+        long lngPosition = lngStartShort;
+        int intRead = 0;
+        while ((intRead < intLength) && (intPieceIndex < pieces.size())) {
+            AudioLib.Piece piece = pieces.get(intPieceIndex);
+            long lngRemainingInPiece = lngPieceStartShorts[intPieceIndex + 1] - lngPosition;
+            if (lngRemainingInPiece <= 0) {
+                intPieceIndex += 1;
+                continue;
+            }
+            long lngFileByte = piece.lngOffsetInBytes + (lngPosition - lngPieceStartShorts[intPieceIndex]) * 2;
+            if (!moveWindow(piece.file, lngFileByte)) {
+                throw new IOException("Piece file " + piece.file.getName() + " is shorter than the piece table says");
+            }
+            int intChunk = (int) Math.min(Math.min(intLength - intRead, lngRemainingInPiece), (lngWindowEndByte - lngFileByte) / 2);
+            shortBufferWindow.position((int) ((lngFileByte - lngWindowStartByte) / 2));
+            if (shortBuffer == null) {
+                shortBufferWindow.get(audioData, intOffset + intRead, intChunk);
+            } else {
+                shortBufferWindow.limit(shortBufferWindow.position() + intChunk);
+                shortBuffer.put(shortBufferWindow);
+                shortBufferWindow.limit(shortBufferWindow.capacity());
+            }
+            intRead += intChunk;
+            lngPosition += intChunk;
+        }
+        return intRead;
+    }
+
+    /**
+     * Binary search the piece holding the sample
+     * @param lngShort
+     * @return
+     */
+    private int findPiece(long lngShort) {
+        int intLow = 0;
+        int intHigh = pieces.size() - 1;
+        while (intLow < intHigh) {
+            int intMid = (intLow + intHigh + 1) >>> 1;
+            if (lngPieceStartShorts[intMid] <= lngShort) {
+                intLow = intMid;
+            } else {
+                intHigh = intMid - 1;
+            }
+        }
+        return intLow;
+    }
+
+    /**
+     * Make sure the current window holds at least one sample at the file position
+     * @param file
+     * @param lngFileByte
+     * @return False if the file ends before the position
+     * @throws IOException
+     */
+    private boolean moveWindow(File file, long lngFileByte) throws IOException {
+        if (file.equals(fileWindow) && (lngFileByte >= lngWindowStartByte) && (lngFileByte + 2 <= lngWindowEndByte)) {
+            return true;
+        }
+        for (int i = 0; i < windows.size(); i++) {
+            Window window = windows.get(i);
+            if (window.file.equals(file) && (lngFileByte >= window.lngStartByte) && (lngFileByte + 2 <= window.lngEndByte)) {
+                windows.add(0, windows.remove(i));
+                useWindow(window);
+                return true;
+            }
+        }
+        RandomAccessFile raf = files.get(file);
+        if (raf == null) {
+            raf = new RandomAccessFile(file, "r");
+            files.put(file, raf);
+        }
+        FileChannel channel = raf.getChannel();
+        long lngFileSize = channel.size();
+        long lngStartByte = (lngFileByte / WINDOW_SIZE_IN_BYTES) * WINDOW_SIZE_IN_BYTES;
+        long lngEndByte = Math.min(lngFileSize, lngStartByte + WINDOW_SIZE_IN_BYTES);
+        if (lngFileByte + 2 > lngEndByte) {
+            return false;
+        }
+        MappedByteBuffer mappedByteBuffer = channel.map(FileChannel.MapMode.READ_ONLY, lngStartByte, lngEndByte - lngStartByte);
+        Window window = new Window(file, lngStartByte, mappedByteBuffer.order(WavContainer.getByteOrder(file)).asShortBuffer());
+        windows.add(0, window);
+        if (windows.size() > WINDOW_AMOUNT) {
+            windows.remove(windows.size() - 1);
+        }
+        useWindow(window);
+        return true;
+    }
+
+    private void useWindow(Window window) {
+        fileWindow = window.file;
+        lngWindowStartByte = window.lngStartByte;
+        lngWindowEndByte = window.lngEndByte;
+        shortBufferWindow = window.shortBuffer;
+    }
+
+    /**
+     * Take another hold of the reader, close() releases it
+     * @return This reader
+     * @throws IOException - If it got closed already
+     */
+    synchronized PcmReader share() throws IOException {
+        if (intUsers == 0) {
+            throw new IOException("Reader is closed");
+        }
+        intUsers += 1;
+        return this;
+    }
+
+    /**
+     * Release a hold of the reader, the files are closed with the last one
+     * @throws IOException
+     */
+    public synchronized void close() throws IOException {
+        if ((intUsers == 0) || (--intUsers > 0)) {
+            return;
+        }
+        synchronized (readersOpen) {
+            readersOpen.remove(this);
+        }
+        fileWindow = null;
+        shortBufferWindow = null;
+        windows.clear();
+        for (RandomAccessFile raf : files.values()) {
+            raf.close();
+        }
+        files.clear();
+    }
+}
@@ -0,0 +1,381 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polyphase sample rate converter between any two rates whose ratio reduces to L/M, as all the supported
+ * rates (11025, 16000, 22050, 44100, 48000) do. Output sample n sits at input position n * M / L, and is the
+ * dot product of the input around it with one of L precomputed phases of a Kaiser windowed sinc, low passed
+ * below the lower of the two Nyquist frequencies.
+ *
+ * Memory is bounded by the phase table and one block: whole samples are converted in chunks that read their
+ * input window positionally, overlapping the neighbouring chunks by the filter length, so the chunks can run
+ * on several threads. Stream converts a sequence of blocks instead, for sources that can only be read once.
+ */
+public class Resampler {
+
+    private static final int ZERO_CROSSINGS = 16; // On either side of the centre, at the lower rate
+    private static final double ROLLOFF = 0.94; // Passband edge as a part of the lower Nyquist frequency
+    private static final double KAISER_BETA = 8.6; // About 80 dB stopband
+    private static final int CHUNK_SIZE_IN_SHORTS = 256 * 1024; // Output samples per chunk
+
+    private final int intFromRate;
+    private final int intToRate;
+    private final int intL; // Upsampling factor
+    private final int intM; // Downsampling factor
+    private final int intHalfTaps;
+    private final int intTaps;
+    private final float[] fltPhases; // intL rows of intTaps coefficients
+
+    /**
+     * @param intFromRate
+     * @param intToRate
+     * @throws IllegalArgumentException - If a rate is not positive or the phase table would get too large
+     */
+    public Resampler(int intFromRate, int intToRate) {
+        if ((intFromRate <= 0) || (intToRate <= 0)) {
+            throw new IllegalArgumentException("Sample rates must be positive");
+        }
+        this.intFromRate = intFromRate;
+        this.intToRate = intToRate;
+        int intGcd = gcd(intFromRate, intToRate);
+        intL = intToRate / intGcd;
+        intM = intFromRate / intGcd;
+        double fltCutoff = Math.min(1.0, (double) intL / intM) * ROLLOFF; // In cycles per input sample, times 2
+        intHalfTaps = (intL == intM) ? 1 : (int) Math.ceil(ZERO_CROSSINGS / fltCutoff);
+        intTaps = intHalfTaps * 2;
+        if ((long) intL * intTaps > 4 * 1024 * 1024) {
+            throw new IllegalArgumentException("No converter from " + intFromRate + " to " + intToRate);
+        }
+        fltPhases = new float[intL * intTaps];
+        for (int p = 0; p < intL; p++) {
+            if (intL == intM) {
+                fltPhases[p * intTaps + intHalfTaps - 1] = 1f;
+                continue;
+            }
+            double fltFraction = (double) p / intL;
+            double fltSum = 0;
+            for (int i = 0; i < intTaps; i++) {
+                // Distance from the output position to input sample base - intHalfTaps + 1 + i
+                double fltDistance = fltFraction + intHalfTaps - 1 - i;
+                double fltCoefficient = fltCutoff * sinc(fltCutoff * fltDistance) * kaiser(fltDistance / intHalfTaps);
+                fltPhases[p * intTaps + i] = (float) fltCoefficient;
+                fltSum += fltCoefficient;
+            }
+            // Unity gain at DC for every phase
+            for (int i = 0; i < intTaps; i++) {
+                fltPhases[p * intTaps + i] /= fltSum;
+            }
+        }
+    }
+
+    public int getFromRate() {
+        return intFromRate;
+    }
+
+    public int getToRate() {
+        return intToRate;
+    }
+
+    /**
+     * @param lngInputLength
+     * @return Amount of samples the input converts to, enough to cover its last sample
+     */
+    public long getOutputLength(long lngInputLength) {
+        return (lngInputLength * intL + intM - 1) / intM;
+    }
+
+    /**
+     * First input sample output sample lngOutput depends on
+     * @param lngOutput
+     * @return
+     */
+    private long getFirstInput(long lngOutput) {
+        return (lngOutput * intM) / intL - intHalfTaps + 1;
+    }
+
+    /**
+     * Compute output samples from an input window that holds every input sample they depend on
+     * @param input
+     * @param lngInputStart - Input sample index of input[0]
+     * @param lngOutputStart
+     * @param output
+     * @param intOffset
+     * @param intLength
+     */
+    private void convert(short[] input, long lngInputStart, long lngOutputStart, short[] output, int intOffset, int intLength) {
+        for (int n = 0; n < intLength; n++) {
+            long lngPosition = (lngOutputStart + n) * intM;
+            int intPhase = (int) (lngPosition % intL);
+            int intInput = (int) (lngPosition / intL - intHalfTaps + 1 - lngInputStart);
+            int intCoefficient = intPhase * intTaps;
+            float fltAcc = 0;
+            for (int i = 0; i < intTaps; i++) {
+                fltAcc += fltPhases[intCoefficient + i] * input[intInput + i];
+            }
+            int intValue = Math.round(fltAcc);
+            output[intOffset + n] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, intValue));
+        }
+    }
+
+    /**
+     * Converts a sequence of blocks as they arrive, keeping only the input the next output depends on
+     */
+    public class Stream {
+        private short[] input = new short[intTaps * 2];
+        private long lngInputStart = -intHalfTaps + 1; // Silence before the first sample
+        private int intInputLength = intHalfTaps - 1;
+        private long lngInputReceived = 0;
+        private long lngOutputDone = 0;
+        private short[] output = new short[0];
+        private int intOutputLength = 0;
+
+        /**
+         * Add input and get the output that can be computed so far
+         * @param audioData
+         * @param intOffset
+         * @param intLength
+         * @return Output buffer, valid up to getOutputLength()
+         */
+        public short[] write(short[] audioData, int intOffset, int intLength) {
+            append(audioData, intOffset, intLength);
+            lngInputReceived += intLength;
+            // Output n needs the input up to (n * M) / L + intHalfTaps
+            long lngLastBase = lngInputStart + intInputLength - intHalfTaps - 1;
+            long lngOutputEnd = (lngLastBase < 0) ? 0 : ((lngLastBase + 1) * intL + intM - 1) / intM;
+            return produce(Math.max(lngOutputDone, lngOutputEnd));
+        }
+
+        /**
+         * No more input, get the rest of the output
+         * @return Output buffer, valid up to getOutputLength()
+         */
+        public short[] finish() {
+            long lngOutputEnd = Resampler.this.getOutputLength(lngInputReceived);
+            long lngInputNeeded = (lngOutputEnd > 0) ? getFirstInput(lngOutputEnd - 1) + intTaps : 0;
+            int intPadding = (int) Math.max(0, lngInputNeeded - (lngInputStart + intInputLength));
+            append(new short[intPadding], 0, intPadding);
+            return produce(lngOutputEnd);
+        }
+
+        public int getOutputLength() {
+            return intOutputLength;
+        }
+
+        private short[] produce(long lngOutputEnd) {
+            intOutputLength = (int) (lngOutputEnd - lngOutputDone);
+            if (output.length < intOutputLength) {
+                output = new short[intOutputLength];
+            }
+            convert(input, lngInputStart, lngOutputDone, output, 0, intOutputLength);
+            lngOutputDone = lngOutputEnd;
+            // Drop the input no later output depends on
+            int intDrop = (int) Math.max(0, Math.min(intInputLength, getFirstInput(lngOutputDone) - lngInputStart));
+            System.arraycopy(input, intDrop, input, 0, intInputLength - intDrop);
+            intInputLength -= intDrop;
+            lngInputStart += intDrop;
+            return output;
+        }
+
+        private void append(short[] audioData, int intOffset, int intLength) {
+            if (input.length < intInputLength + intLength) {
+                short[] inputNew = new short[Math.max(input.length * 2, intInputLength + intLength)];
+                System.arraycopy(input, 0, inputNew, 0, intInputLength);
+                input = inputNew;
+            }
+            System.arraycopy(audioData, intOffset, input, intInputLength, intLength);
+            intInputLength += intLength;
+        }
+    }
+
+    /**
+     * Convert all of a sample into a new file, laid out as a .pcm file or a WavContainer by its name
+     * @param audioSample
+     * @param fileDest
+     * @param intThreadAmount - 1 to convert on the calling thread only
+     * @throws IOException
+     */
+    public void convert(AudioLib.AudioSample audioSample, File fileDest, int intThreadAmount) throws IOException {
+        convert(audioSample, fileDest, intThreadAmount, null);
+    }
+
+    /**
+     * @param audioSample
+     * @param fileDest
+     * @param intThreadAmount - 1 to convert on the calling thread only
+     * @param audioJob - Reported to and checked for cancellation between chunks, can be null
+     * @throws IOException - An InterruptedIOException if the job got cancelled, fileDest is left incomplete then
+     */
+    public void convert(AudioLib.AudioSample audioSample, File fileDest, int intThreadAmount, AudioJob audioJob) throws IOException {
+        long lngOutputLength = getOutputLength(audioSample.lngSizePcmInShorts);
+        RandomAccessFile raf = new RandomAccessFile(fileDest, "rw");
+        try {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            WavContainer.startData(fileDest, channel);
+            if (WavContainer.isContainer(fileDest)) {
+                WavContainer.writeHeader(channel, lngOutputLength * 2, intToRate);
+            }
+            long lngDataOffset = WavContainer.getDataOffset(fileDest);
+            raf.setLength(lngDataOffset + lngOutputLength * 2);
+            long lngChunkAmount = (lngOutputLength + CHUNK_SIZE_IN_SHORTS - 1) / CHUNK_SIZE_IN_SHORTS;
+            AtomicLong lngNextChunk = new AtomicLong(0);
+            AtomicLong lngChunksDone = new AtomicLong(0);
+            int intWorkerAmount = (int) Math.max(1, Math.min(intThreadAmount, lngChunkAmount));
+            if (intWorkerAmount == 1) {
+                new ChunkWorker(audioSample, channel, lngDataOffset, lngNextChunk, lngChunksDone, lngChunkAmount, lngOutputLength, audioJob).call();
+                return;
+            }
+            ExecutorService executorService = Executors.newFixedThreadPool(intWorkerAmount);
+            try {
+                ArrayList<Future<Void>> futures = new ArrayList<Future<Void>>();
+                for (int i = 0; i < intWorkerAmount; i++) {
+                    futures.add(executorService.submit(new ChunkWorker(audioSample, channel, lngDataOffset, lngNextChunk, lngChunksDone,
+                            lngChunkAmount, lngOutputLength, audioJob)));
+                }
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                throw new IOException("Conversion interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause().getMessage());
+            } finally {
+                executorService.shutdownNow();
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Takes chunks until none are left. Reads the input window of a chunk, padded with silence beyond the
+     * ends of the sample, and writes the output at its final position.
+     */
+    private class ChunkWorker implements Callable<Void> {
+        private final AudioLib.AudioSample audioSample;
+        private final FileChannel channel;
+        private final long lngDataOffset;
+        private final AtomicLong lngNextChunk;
+        private final AtomicLong lngChunksDone;
+        private final long lngChunkAmount;
+        private final long lngOutputLength;
+        private final AudioJob audioJob;
+
+        ChunkWorker(AudioLib.AudioSample audioSample, FileChannel channel, long lngDataOffset, AtomicLong lngNextChunk, AtomicLong lngChunksDone,
+                    long lngChunkAmount, long lngOutputLength, AudioJob audioJob) {
+            this.audioSample = audioSample;
+            this.channel = channel;
+            this.lngDataOffset = lngDataOffset;
+            this.lngNextChunk = lngNextChunk;
+            this.lngChunksDone = lngChunksDone;
+            this.lngChunkAmount = lngChunkAmount;
+            this.lngOutputLength = lngOutputLength;
+            this.audioJob = audioJob;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            PcmReader pcmReader = audioSample.openPrivateReader();
+            short[] output = new short[CHUNK_SIZE_IN_SHORTS];
+            short[] input = new short[(int) ((long) CHUNK_SIZE_IN_SHORTS * intM / intL) + intTaps + 1];
+            ByteBuffer byteBuffer = ByteBuffer.allocateDirect(CHUNK_SIZE_IN_SHORTS * 2).order(PcmFormat.BYTE_ORDER);
+            ShortBuffer shortBuffer = byteBuffer.asShortBuffer();
+            try {
+                long lngChunk;
+                while ((lngChunk = lngNextChunk.getAndIncrement()) < lngChunkAmount) {
+                    if (audioJob != null) {
+                        audioJob.checkCancelled();
+                    }
+                    long lngOutputStart = lngChunk * CHUNK_SIZE_IN_SHORTS;
+                    int intOutputLength = (int) Math.min(CHUNK_SIZE_IN_SHORTS, lngOutputLength - lngOutputStart);
+                    long lngInputStart = getFirstInput(lngOutputStart);
+                    int intInputLength = (int) (getFirstInput(lngOutputStart + intOutputLength - 1) + intTaps - lngInputStart);
+                    readPadded(pcmReader, lngInputStart, input, intInputLength);
+                    convert(input, lngInputStart, lngOutputStart, output, 0, intOutputLength);
+                    shortBuffer.clear();
+                    shortBuffer.put(output, 0, intOutputLength);
+                    byteBuffer.clear();
+                    byteBuffer.limit(intOutputLength * 2);
+                    long lngPosition = lngDataOffset + lngOutputStart * 2;
+                    while (byteBuffer.hasRemaining()) {
+                        lngPosition += channel.write(byteBuffer, lngPosition);
+                    }
+                    if (audioJob != null) {
+                        audioJob.setProgress(lngChunksDone.incrementAndGet(), lngChunkAmount);
+                    }
+                }
+            } finally {
+                pcmReader.close();
+            }
+            return null;
+        }
+
+        private void readPadded(PcmReader pcmReader, long lngStart, short[] input, int intLength) throws IOException {
+            Arrays.fill(input, 0, intLength, (short) 0);
+            long lngFrom = Math.max(0, lngStart);
+            long lngTo = Math.min(pcmReader.getSizeInShorts(), lngStart + intLength);
+            int intOffset = (int) (lngFrom - lngStart);
+            while (lngFrom < lngTo) {
+                int intRead = pcmReader.read(lngFrom, input, intOffset, (int) (lngTo - lngFrom));
+                if (intRead <= 0) {
+                    break;
+                }
+                lngFrom += intRead;
+                intOffset += intRead;
+            }
+        }
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) {
+            return 1;
+        }
+        return Math.sin(Math.PI * x) / (Math.PI * x);
+    }
+
+    private static double kaiser(double x) {
+        if (Math.abs(x) >= 1) {
+            return 0;
+        }
+        return besselI0(KAISER_BETA * Math.sqrt(1 - x * x)) / besselI0(KAISER_BETA);
+    }
+
+    private static double besselI0(double x) {
+        double fltSum = 1;
+        double fltTerm = 1;
+        for (int k = 1; k < 50; k++) {
+            fltTerm *= (x / (2 * k)) * (x / (2 * k));
+            fltSum += fltTerm;
+            if (fltTerm < fltSum * 1e-12) {
+                break;
+            }
+        }
+        return fltSum;
+    }
+}
@@ -0,0 +1,103 @@
+package com.treeapps.audiorecorder;
+
+/**
+ * Turns captured samples into RMS frames for the graph. Runs as a consumer of a CaptureRing, and decides
+ * where the capture stops so that the recorded data ties up with whole batches of RMS frames.
+ */
+public class RmsAnalysis implements Runnable {
+
+    public interface OnRmsFramesListener {
+        /**
+         * A batch of RMS frames is complete
+         * @param intRmsFrames - Fresh array, the listener may hold on to it
+         * @return True to stop the capture after these frames
+         */
+        public boolean onRmsFrames(int[] intRmsFrames);
+    }
+
+    private final CaptureRing captureRing;
+    private final CaptureRing.Consumer consumer;
+    private final OnRmsFramesListener onRmsFramesListener;
+    private final int intRmsFrameSizeInShorts;
+
+    private int intRmsBufferIndex = 0;
+    private int intRmsDataIndex = 0;
+    private long lngShortsAnalysed = 0;
+    private double sum = 0;
+    private int[] intRmsData;
+
+    /**
+     * @param captureRing - Can be null when samples are fed through analyse() directly
+     * @param consumer
+     * @param intRmsFrameSizeInShorts
+     * @param intRmsFramesPerBatch
+     * @param onRmsFramesListener
+     */
+    public RmsAnalysis(CaptureRing captureRing, CaptureRing.Consumer consumer, int intRmsFrameSizeInShorts, int intRmsFramesPerBatch,
+                       OnRmsFramesListener onRmsFramesListener) {
+        this.captureRing = captureRing;
+        this.consumer = consumer;
+        this.intRmsFrameSizeInShorts = intRmsFrameSizeInShorts;
+        this.onRmsFramesListener = onRmsFramesListener;
+        this.intRmsData = new int[intRmsFramesPerBatch];
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!consumer.isDrained()) {
+                short[] audioData = consumer.peekBlock();
+                if (audioData == null) {
+                    consumer.waitForBlock();
+                    continue;
+                }
+                boolean boolStop = analyse(audioData, consumer.getBlockLength());
+                consumer.releaseBlock();
+                if (boolStop) {
+                    captureRing.requestStop(lngShortsAnalysed);
+                    return;
+                }
+            }
+        } finally {
+            consumer.detach();
+            if (!captureRing.isStopRequested()) {
+                // Analysis ended unexpectedly, keep all that was captured
+                captureRing.requestStop(-1);
+            }
+        }
+    }
+
+    /**
+     * Add samples to the running RMS frame
+     * @param audioData
+     * @param numberOfShort
+     * @return True if the listener asked to stop, analysis then ended at the end of the batch
+     */
+    public boolean analyse(short[] audioData, int numberOfShort) {
+        for (int i = 0; i < numberOfShort; i++) {
+            sum += audioData[i] * audioData[i];
+            intRmsBufferIndex += 1;
+            lngShortsAnalysed += 1;
+            if (intRmsBufferIndex == intRmsFrameSizeInShorts) {
+                double amplitude = sum / intRmsBufferIndex;
+                intRmsData[intRmsDataIndex] = ((int) Math.sqrt(amplitude));
+                sum = 0;
+                intRmsBufferIndex = 0;
+                intRmsDataIndex += 1;
+                if (intRmsDataIndex == intRmsData.length) {
+                    int[] intRmsFrames = intRmsData;
+                    intRmsData = new int[intRmsData.length];
+                    intRmsDataIndex = 0;
+                    if (onRmsFramesListener.onRmsFrames(intRmsFrames)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    public long getShortsAnalysed() {
+        return lngShortsAnalysed;
+    }
+}
@@ -0,0 +1,72 @@
+package com.treeapps.audiorecorder;
+
+import java.util.Random;
+
+/**
+ * Deterministic generated audio, standing in for the microphone
+ */
+public class SyntheticAudioSource extends PacedAudioSource {
+
+    public enum Signal {
+        SINE, // Steady 440 Hz tone
+        SWEEP, // Tone rising from 100 Hz to a quarter of the sample rate every 10 seconds
+        NOISE, // White noise
+        SPEECH // Noise bursts of syllable length and varying loudness, with pauses
+    }
+
+    private static final double SINE_FREQUENCY = 440;
+    private static final double SWEEP_START_FREQUENCY = 100;
+    private static final int SWEEP_DURATION_IN_SECONDS = 10;
+    private static final double AMPLITUDE = 0.5 * Short.MAX_VALUE;
+
+    private final Signal signal;
+    private final Random random;
+    private double fltPhase = 0;
+    private long lngPosition = 0;
+    private double fltLoudness = 0;
+    private double fltPrevious = 0;
+
+    public SyntheticAudioSource(Signal signal, int intSampleRate, int intBufferSizeInShorts, long lngSeed) {
+        super(intSampleRate, intBufferSizeInShorts, lngSeed);
+        this.signal = signal;
+        this.random = new Random(lngSeed);
+    }
+
+    @Override
+    protected int generate(short[] audioData, int intOffset, int intLength) {
+        int intSampleRate = getSampleRate();
+        for (int i = intOffset; i < intOffset + intLength; i++) {
+            double fltValue;
+            switch (signal) {
+                case SINE:
+                    fltValue = AMPLITUDE * Math.sin(fltPhase);
+                    fltPhase += 2 * Math.PI * SINE_FREQUENCY / intSampleRate;
+                    break;
+                case SWEEP:
+                    long lngSweepLength = (long) SWEEP_DURATION_IN_SECONDS * intSampleRate;
+                    double fltProgress = (double) (lngPosition % lngSweepLength) / lngSweepLength;
+                    double fltFrequency = SWEEP_START_FREQUENCY + fltProgress * (intSampleRate / 4.0 - SWEEP_START_FREQUENCY);
+                    fltValue = AMPLITUDE * Math.sin(fltPhase);
+                    fltPhase += 2 * Math.PI * fltFrequency / intSampleRate;
+                    break;
+                case NOISE:
+                    fltValue = AMPLITUDE * (random.nextDouble() * 2 - 1);
+                    break;
+                default:
+                    if (lngPosition % (intSampleRate / 5) == 0) {
+                        fltLoudness = random.nextInt(4) == 0 ? 0 : (0.05 + random.nextDouble() * 0.3) * Short.MAX_VALUE;
+                    }
+                    // Low passed noise, roughly the spectrum of voiced speech
+                    fltPrevious = (fltPrevious + random.nextGaussian() * fltLoudness) / 2;
+                    fltValue = fltPrevious;
+                    break;
+            }
+            if (fltPhase > 2 * Math.PI) {
+                fltPhase -= 2 * Math.PI;
+            }
+            audioData[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, fltValue));
+            lngPosition += 1;
+        }
+        return intLength;
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2008 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads PCM and float WAV files into an AudioSample and writes an AudioSample out as a WAV file.
+ * Free of Android, the async variants run on the AudioExecutors.
+ */
+public class WavCodec {
+
+    private final String TAG = "WavCodec";
+    private static final int EXPORT_CHUNK_SIZE_IN_SHORTS = 512 * 1024;
+    private static final ArrayDeque<ByteBuffer> byteBuffersExport = new ArrayDeque<ByteBuffer>(); // Reused by every export
+
+    // Member variables containing frame info
+    private int mSampleRate = 0;
+    private float[] fltMixMatrix = null;
+    private int intTargetSampleRate = 0;
+    private AudioJob.OnProgressListener onProgressListener = null;
+
+    public interface OnReadWriteCompleteListener {
+        public void onComplete (boolean boolIsSuccess, String strErrorMessage);
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    /**
+     * Report the progress of the async variants
+     * @param onProgressListener - Called on the callback executor, null for none
+     * @return
+     */
+    public WavCodec setOnProgressListener(AudioJob.OnProgressListener onProgressListener) {
+        this.onProgressListener = onProgressListener;
+        return this;
+    }
+
+    /**
+     * Read on the background executor. The listener is called on the background thread, onDone
+     * afterwards on the callback executor.
+     * @param fileInputWav
+     * @param audioSample
+     * @param onReadCompleteListener
+     * @param onDone - Can be null
+     * @return The job, to cancel it. The sample is left empty then.
+     */
+    public AudioJob readFileAsync(final File fileInputWav, final AudioLib.AudioSample audioSample,
+                              final OnReadWriteCompleteListener onReadCompleteListener, final Runnable onDone) {
+        AudioJob audioJob = new AudioJob("Read " + fileInputWav.getName()) {
+            @Override
+            protected void work() {
+                try {
+                    readFile(fileInputWav, audioSample, this);
+                    onReadCompleteListener.onComplete(true, "");
+                } catch (InterruptedIOException e) {
+                    AudioLog.d(TAG, e.getMessage());
+                    onReadCompleteListener.onComplete(false, "Cancelled");
+                } catch (IOException e) {
+                    AudioLog.e(TAG, "Could not read " + fileInputWav.getName(), e);
+                    onReadCompleteListener.onComplete(false, e.getMessage());
+                } finally {
+                    deliver(onDone);
+                }
+            }
+        };
+        audioJob.setOnProgressListener(onProgressListener);
+        AudioExecutors.getBackgroundExecutor().execute(audioJob);
+        return audioJob;
+    }
+
+    /**
+     * Write on the background executor. The listener is called on the background thread, onDone
+     * afterwards on the callback executor.
+     * @param audioSample
+     * @param lngSampleRate
+     * @param fileOutputWav
+     * @param onWriteCompleteListener
+     * @param onDone - Can be null
+     * @return The job, to cancel it. The file is deleted then.
+     */
+    public AudioJob writeFileAsync(final AudioLib.AudioSample audioSample, final long lngSampleRate, final File fileOutputWav,
+                               final OnReadWriteCompleteListener onWriteCompleteListener, final Runnable onDone) {
+        AudioJob audioJob = new AudioJob("Write " + fileOutputWav.getName()) {
+            @Override
+            protected void work() {
+                try {
+                    writeFile(audioSample, lngSampleRate, fileOutputWav, Runtime.getRuntime().availableProcessors(), this);
+                    onWriteCompleteListener.onComplete(true, "");
+                } catch (InterruptedIOException e) {
+                    AudioLog.d(TAG, e.getMessage());
+                    onWriteCompleteListener.onComplete(false, "Cancelled");
+                } catch (IOException e) {
+                    AudioLog.e(TAG, "Could not write " + fileOutputWav.getName(), e);
+                    onWriteCompleteListener.onComplete(false, e.getMessage());
+                } finally {
+                    deliver(onDone);
+                }
+            }
+        };
+        audioJob.setOnProgressListener(onProgressListener);
+        AudioExecutors.getBackgroundExecutor().execute(audioJob);
+        return audioJob;
+    }
+
+    private void deliver(Runnable onDone) {
+        if (onDone != null) {
+            AudioExecutors.getCallbackExecutor().execute(onDone);
+        }
+    }
+
+    /**
+     * Set how multichannel files get mixed down to mono on import. Files with another amount of channels
+     * than there are gains give all channels the same weight.
+     * @param fltMixMatrix - Gain of every channel, null to give all channels the same weight
+     * @return
+     */
+    public WavCodec setMixMatrix(float[] fltMixMatrix) {
+        this.fltMixMatrix = fltMixMatrix;
+        return this;
+    }
+
+    /**
+     * Convert imported files to a sample rate, so that they join a session at its rate
+     * @param intTargetSampleRate - 0 to keep the rate of the file
+     * @return
+     */
+    public WavCodec setTargetSampleRate(int intTargetSampleRate) {
+        this.intTargetSampleRate = intTargetSampleRate;
+        return this;
+    }
+
+    /**
+     * Import a WAV file of any of the encodings WavImporter takes, mixed down to mono 16 bit. getSampleRate
+     * gives the rate of the imported audio afterwards.
+     * @param fileInputWav
+     * @param audioSample
+     * @throws IOException
+     */
+    public void readFile(File fileInputWav, AudioLib.AudioSample audioSample) throws IOException {
+        readFile(fileInputWav, audioSample, null);
+    }
+
+    /**
+     * @param fileInputWav
+     * @param audioSample
+     * @param audioJob - Reported to and checked for cancellation, can be null
+     * @throws IOException - An InterruptedIOException if the job got cancelled, the sample is left empty then
+     */
+    public void readFile(File fileInputWav, AudioLib.AudioSample audioSample, AudioJob audioJob) throws IOException {
+        WavImporter wavImporter = new WavImporter(fileInputWav);
+        if ((fltMixMatrix != null) && (fltMixMatrix.length == wavImporter.getChannels())) {
+            wavImporter.setMixMatrix(fltMixMatrix);
+        }
+        wavImporter.setOutputSampleRate(intTargetSampleRate);
+        mSampleRate = (int) wavImporter.getOutputSampleRate();
+
+        audioSample.clear();
+        // Samples go behind the header, in the byte order of the sample's own file
+        FileChannel channelOut = new FileOutputStream(audioSample.filePathPcm).getChannel();
+        try {
+            WavContainer.startData(audioSample.filePathPcm, channelOut);
+            long lngSizePcmInShorts = wavImporter.importInto(channelOut, audioJob);
+            if (WavContainer.isContainer(audioSample.filePathPcm)) {
+                WavContainer.writeHeader(channelOut, lngSizePcmInShorts * 2, mSampleRate);
+            }
+        } catch (InterruptedIOException e) {
+            channelOut.close();
+            audioSample.clear();
+            throw e;
+        } finally {
+            channelOut.close();
+        }
+        // Whatever got indexed while the file was being written is stale
+        PcmIndex.delete(audioSample.filePathPcm);
+        audioSample.updateFileSize();
+        audioSample.updateIndex();
+    }
+
+    /**
+     * Export on as many threads as there are cores
+     * @param audioSample
+     * @param lngSampleRate
+     * @param fileOutputWav
+     * @throws IOException
+     */
+    public void writeFile(AudioLib.AudioSample audioSample, long lngSampleRate, File fileOutputWav) throws IOException {
+        writeFile(audioSample, lngSampleRate, fileOutputWav, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Export as a 16 bit mono WAV file, with the header of a WavContainer, so RF64 past 4 GB. Audio kept in a WAV container as a whole is saved as is. Otherwise the file is sized up front behind its header, then the audio is cut
+     * in chunks that the threads copy, in the byte order they are stored in, to their final position, in whatever order they finish.
+     * @param audioSample
+     * @param lngSampleRate
+     * @param fileOutputWav
+     * @param intThreadAmount - 1 to export on the calling thread only. The others are helpers on the background
+     * executor, they join as its threads come free.
+     * @throws IOException
+     */
+    public void writeFile(AudioLib.AudioSample audioSample, long lngSampleRate, File fileOutputWav, int intThreadAmount) throws IOException {
+        writeFile(audioSample, lngSampleRate, fileOutputWav, intThreadAmount, null);
+    }
+
+    /**
+     * @param audioSample
+     * @param lngSampleRate
+     * @param fileOutputWav
+     * @param intThreadAmount - 1 to export on the calling thread only
+     * @param audioJob - Reported to and checked for cancellation, can be null
+     * @throws IOException - An InterruptedIOException if the job got cancelled, the file is deleted then
+     */
+    public void writeFile(AudioLib.AudioSample audioSample, long lngSampleRate, File fileOutputWav, int intThreadAmount,
+                          AudioJob audioJob) throws IOException {
+        try {
+            writeFileChunks(audioSample, lngSampleRate, fileOutputWav, intThreadAmount, audioJob);
+        } catch (InterruptedIOException e) {
+            fileOutputWav.delete();
+            throw e;
+        }
+    }
+
+    private void writeFileChunks(AudioLib.AudioSample audioSample, long lngSampleRate, File fileOutputWav, int intThreadAmount,
+                                 AudioJob audioJob) throws IOException {
+        if (audioSample.publishContainer(fileOutputWav, lngSampleRate)) {
+            return;
+        }
+        // One piece table for the header and all the workers, whatever edits come in meanwhile
+        PcmReader pcmReader = audioSample.openPrivateReader();
+        RandomAccessFile raf = null;
+        try {
+            long lngSizeInShorts = pcmReader.getSizeInShorts();
+            long totalAudioLen = lngSizeInShorts * 2;
+            raf = new RandomAccessFile(fileOutputWav, "rw");
+            raf.setLength(0);
+            raf.setLength(WavContainer.HEADER_SIZE + totalAudioLen);
+            FileChannel channel = raf.getChannel();
+            WavContainer.writeHeader(channel, totalAudioLen, lngSampleRate);
+            if (lngSizeInShorts == 0) {
+                return;
+            }
+
+            long lngChunkAmount = (lngSizeInShorts + EXPORT_CHUNK_SIZE_IN_SHORTS - 1) / EXPORT_CHUNK_SIZE_IN_SHORTS;
+            Export export = new Export(pcmReader, channel, lngChunkAmount, audioJob);
+            int intWorkerAmount = (int) Math.max(1, Math.min(intThreadAmount, lngChunkAmount));
+            for (int i = 1; i < intWorkerAmount; i++) {
+                AudioExecutors.getBackgroundExecutor().execute(export);
+            }
+            export.run();
+            export.finish();
+        } finally {
+            if (raf != null) {
+                raf.close();
+            }
+            pcmReader.close();
+        }
+    }
+
+    private static ByteBuffer takeExportBuffer() {
+        synchronized (byteBuffersExport) {
+            ByteBuffer byteBuffer = byteBuffersExport.poll();
+            if (byteBuffer != null) {
+                byteBuffer.clear();
+                return byteBuffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(EXPORT_CHUNK_SIZE_IN_SHORTS * 2).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void releaseExportBuffer(ByteBuffer byteBuffer) {
+        synchronized (byteBuffersExport) {
+            byteBuffersExport.push(byteBuffer);
+        }
+    }
+
+    /**
+     * One export, worked on by the calling thread and by helpers on the background executor. Each takes chunks
+     * until none are left, or the job gets cancelled, with a share of the reader the header got sized from and a
+     * direct buffer from the pool, reused for every chunk. A helper that only gets to run after the export
+     * finished does nothing.
+     */
+    private static class Export implements Runnable {
+        private final PcmReader pcmReader;
+        private final FileChannel channel;
+        private final AtomicLong lngNextChunk = new AtomicLong(0);
+        private final AtomicLong lngChunksDone = new AtomicLong(0);
+        private final long lngChunkAmount;
+        private final AudioJob audioJob;
+
+        private int intWorkers = 0;
+        private boolean boolIsFinished = false;
+        private IOException exception = null;
+
+        Export(PcmReader pcmReader, FileChannel channel, long lngChunkAmount, AudioJob audioJob) {
+            this.pcmReader = pcmReader;
+            this.channel = channel;
+            this.lngChunkAmount = lngChunkAmount;
+            this.audioJob = audioJob;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (boolIsFinished) {
+                    return;
+                }
+                intWorkers += 1;
+            }
+            try {
+                work();
+            } catch (IOException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                fail(new IOException(e.toString()));
+            } finally {
+                synchronized (this) {
+                    intWorkers -= 1;
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Wait for the helpers that joined, later ones do nothing
+         * @throws IOException - The first failure of any of the workers
+         */
+        synchronized void finish() throws IOException {
+            boolIsFinished = true;
+            boolean boolIsInterrupted = false;
+            while (intWorkers > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // The helpers still write to the channel, it must stay open until they are done
+                    boolIsInterrupted = true;
+                    lngNextChunk.set(lngChunkAmount);
+                }
+            }
+            if (boolIsInterrupted) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Export interrupted");
+            }
+            if (exception != null) {
+                throw exception;
+            }
+        }
+
+        private synchronized void fail(IOException e) {
+            if (exception == null) {
+                exception = e;
+            }
+            // Stop the others at their next chunk
+            lngNextChunk.set(lngChunkAmount);
+        }
+
+        private void work() throws IOException {
+            PcmReader pcmReader = this.pcmReader.share();
+            ByteBuffer byteBuffer = takeExportBuffer();
+            ShortBuffer shortBuffer = byteBuffer.asShortBuffer();
+            try {
+                long lngChunk;
+                while ((lngChunk = lngNextChunk.getAndIncrement()) < lngChunkAmount) {
+                    if (audioJob != null) {
+                        audioJob.checkCancelled();
+                    }
+                    long lngStartShort = lngChunk * EXPORT_CHUNK_SIZE_IN_SHORTS;
+                    shortBuffer.clear();
+                    shortBuffer.limit((int) Math.min(EXPORT_CHUNK_SIZE_IN_SHORTS, pcmReader.getSizeInShorts() - lngStartShort));
+                    int intRead = pcmReader.read(lngStartShort, shortBuffer);
+                    if (intRead <= 0) {
+                        continue;
+                    }
+                    byteBuffer.clear();
+                    byteBuffer.limit(intRead * 2);
+                    long lngPosition = WavContainer.HEADER_SIZE + lngStartShort * 2;
+                    while (byteBuffer.hasRemaining()) {
+                        lngPosition += channel.write(byteBuffer, lngPosition);
+                    }
+                    if (audioJob != null) {
+                        audioJob.setProgress(lngChunksDone.incrementAndGet(), lngChunkAmount);
+                    }
+                }
+            } finally {
+                releaseExportBuffer(byteBuffer);
+                pcmReader.close();
+            }
+        }
+    }
+}
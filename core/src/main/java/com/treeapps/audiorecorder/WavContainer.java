@@ -0,0 +1,214 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Layout of the files that pieces refer to. Plain .pcm files are laid out as described by PcmFormat.
+ * .wav files are working files kept as a real 16 bit mono WAV file: little endian samples behind a fixed
+ * 128 byte header (RIFF, a JUNK chunk keeping room for a ds64 chunk, fmt, a JUNK chunk as padding and the
+ * data chunk header), so that the samples start on a PcmIndex block and a length change only needs the sizes
+ * in the header patched. Once the sizes no longer fit in 32 bits the header is written as RF64, with the
+ * 64 bit sizes in a ds64 chunk in place of the first JUNK chunk.
+ */
+public class WavContainer {
+
+    public static final String CONTAINER_EXT = ".wav";
+    public static final int HEADER_SIZE = 128;
+    public static final ByteOrder CONTAINER_BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private static final int FMT_CHUNK_ID = 0x20746D66; // "fmt " read little endian
+    private static final int FMT_CHUNK_SIZE = 16;
+    private static final int DS64_CHUNK_SIZE = 28; // RIFF size, data size, sample count and an empty table
+    private static final int JUNK_CHUNK_SIZE = HEADER_SIZE - 12 - (8 + DS64_CHUNK_SIZE) - (8 + FMT_CHUNK_SIZE) - 8 - 8;
+    private static final long MAX_CHUNK_SIZE = 0xFFFFFFFFL;
+
+    /**
+     * Hard links a file, where the platform can
+     */
+    public interface FileLinker {
+        /**
+         * @param fileExisting
+         * @param fileLink
+         * @return False if the link could not be made
+         */
+        boolean link(File fileExisting, File fileLink);
+    }
+
+    private static FileLinker fileLinker = null;
+
+    public static void setFileLinker(FileLinker fileLinker) {
+        WavContainer.fileLinker = fileLinker;
+    }
+
+    public static boolean isContainer(File file) {
+        return file.getName().endsWith(CONTAINER_EXT);
+    }
+
+    /**
+     * @param file
+     * @return Byte position of the first sample
+     */
+    public static long getDataOffset(File file) {
+        return isContainer(file) ? HEADER_SIZE : PcmFormat.HEADER_SIZE;
+    }
+
+    public static ByteOrder getByteOrder(File file) {
+        return isContainer(file) ? CONTAINER_BYTE_ORDER : PcmFormat.BYTE_ORDER;
+    }
+
+    /**
+     * Ready a file that is being written from scratch for its samples. A .pcm file gets its header, the
+     * header of a container is left to be written once the length is known.
+     * @param file
+     * @param channel - Left positioned on the first sample
+     * @throws IOException
+     */
+    public static void startData(File file, FileChannel channel) throws IOException {
+        if (isContainer(file)) {
+            channel.position(HEADER_SIZE);
+        } else {
+            PcmFormat.writeHeader(channel);
+        }
+    }
+
+    /**
+     * Write the header, for the sizes and sample rate given. RF64 if the sizes do not fit in 32 bits.
+     * @param channel
+     * @param lngDataLengthInBytes
+     * @param lngSampleRate
+     * @throws IOException
+     */
+    public static void writeHeader(FileChannel channel, long lngDataLengthInBytes, long lngSampleRate) throws IOException {
+        long lngRiffLengthInBytes = HEADER_SIZE - 8 + lngDataLengthInBytes;
+        boolean boolIsRf64 = lngRiffLengthInBytes > MAX_CHUNK_SIZE;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (boolIsRf64) {
+            header.put(new byte[]{'R', 'F', '6', '4'}).putInt((int) MAX_CHUNK_SIZE);
+            header.put(new byte[]{'W', 'A', 'V', 'E'});
+            header.put(new byte[]{'d', 's', '6', '4'}).putInt(DS64_CHUNK_SIZE);
+            header.putLong(lngRiffLengthInBytes).putLong(lngDataLengthInBytes).putLong(lngDataLengthInBytes / 2).putInt(0);
+        } else {
+            header.put(new byte[]{'R', 'I', 'F', 'F'}).putInt((int) lngRiffLengthInBytes);
+            header.put(new byte[]{'W', 'A', 'V', 'E'});
+            header.put(new byte[]{'J', 'U', 'N', 'K'}).putInt(DS64_CHUNK_SIZE);
+            header.position(header.position() + DS64_CHUNK_SIZE);
+        }
+        header.put(new byte[]{'f', 'm', 't', ' '}).putInt(FMT_CHUNK_SIZE);
+        header.putShort((short) 1); // PCM
+        header.putShort((short) 1); // Mono
+        header.putInt((int) lngSampleRate);
+        header.putInt((int) (lngSampleRate * 2)); // Byte rate
+        header.putShort((short) 2); // Block align
+        header.putShort((short) 16); // Bits per sample
+        header.put(new byte[]{'J', 'U', 'N', 'K'}).putInt(JUNK_CHUNK_SIZE);
+        header.position(header.position() + JUNK_CHUNK_SIZE);
+        header.put(new byte[]{'d', 'a', 't', 'a'}).putInt((int) (boolIsRf64 ? MAX_CHUNK_SIZE : lngDataLengthInBytes));
+        header.flip();
+        long lngPosition = 0;
+        while (header.hasRemaining()) {
+            lngPosition += channel.write(header, lngPosition);
+        }
+    }
+
+    /**
+     * Patch the sizes in the header to the current length of the file, keeping the sample rate
+     * @param file
+     * @throws IOException
+     */
+    public static void patchHeader(File file) throws IOException {
+        patchHeader(file, readSampleRate(file));
+    }
+
+    /**
+     * @param file
+     * @return Sample rate in the fmt chunk of the header, 0 if there is none
+     * @throws IOException
+     */
+    public static long readSampleRate(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) == -1) {
+                    break;
+                }
+            }
+        } finally {
+            channel.close();
+        }
+        // Walk the chunks, containers written before the ds64 room was kept have fmt first
+        long lngPosition = 12;
+        while (lngPosition + 16 <= header.position()) {
+            long lngChunkSize = header.getInt((int) lngPosition + 4) & 0xFFFFFFFFL;
+            if (header.getInt((int) lngPosition) == FMT_CHUNK_ID) {
+                return header.getInt((int) lngPosition + 12) & 0xFFFFFFFFL;
+            }
+            lngPosition += 8 + lngChunkSize + (lngChunkSize & 1);
+        }
+        return 0;
+    }
+
+    /**
+     * Patch the header to the current length of the file
+     * @param file
+     * @param lngSampleRate
+     * @throws IOException
+     */
+    public static void patchHeader(File file, long lngSampleRate) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            writeHeader(raf.getChannel(), Math.max(0, raf.length() - HEADER_SIZE), lngSampleRate);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Put a copy of a file in place of another, atomically. The bytes are copied by the kernel, or where
+     * allowed and the platform can, the destination becomes a hard link to the source. The source must then
+     * never be changed in place again, as that would change the destination too.
+     * @param fileSource
+     * @param fileDest
+     * @param boolMayLink - Only for destinations the app itself controls
+     * @return True if the destination got linked rather than copied
+     * @throws IOException
+     */
+    public static boolean publish(File fileSource, File fileDest, boolean boolMayLink) throws IOException {
+        File fileTemp = new File(fileDest.getPath() + ".tmp");
+        fileTemp.delete();
+        boolean boolIsLinked = boolMayLink && (fileLinker != null) && fileLinker.link(fileSource, fileTemp);
+        if (!boolIsLinked) {
+            FileChannel channelIn = new FileInputStream(fileSource).getChannel();
+            FileChannel channelOut = new FileOutputStream(fileTemp).getChannel();
+            try {
+                long lngPosition = 0;
+                long lngSize = channelIn.size();
+                while (lngPosition < lngSize) {
+                    long lngTransferred = channelIn.transferTo(lngPosition, lngSize - lngPosition, channelOut);
+                    if (lngTransferred <= 0) {
+                        break;
+                    }
+                    lngPosition += lngTransferred;
+                }
+            } finally {
+                channelIn.close();
+                channelOut.close();
+            }
+        }
+        if (!fileTemp.renameTo(fileDest)) {
+            fileDest.delete();
+            if (!fileTemp.renameTo(fileDest)) {
+                fileTemp.delete();
+                throw new IOException("Could not replace " + fileDest.getName());
+            }
+        }
+        return boolIsLinked;
+    }
+}
@@ -0,0 +1,289 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Streams the data chunk of a WAV file into 16 bit mono samples. Takes 8 bit unsigned, 16, 24 and 32 bit
+ * integer and 32 or 64 bit float samples, in plain or extensible headers as parsed by Wave.WavFile. Every
+ * frame is mixed down to mono through a mix matrix while it is decoded, and converted to another sample rate
+ * if asked, so the file is read once, in large blocks.
+ */
+public class WavImporter {
+
+    private static final String TAG = "WavImporter";
+    private static final int BLOCK_SIZE_IN_BYTES = 256 * 1024;
+    private static final long TRANSFER_STEP_IN_BYTES = 16 * 1024 * 1024;
+
+    private final File file;
+    private final int intFormatCode;
+    private final int intChannels;
+    private final int intBytesPerSample;
+    private final int intBlockAlign;
+    private final long lngSampleRate;
+    private final long lngDataOffset;
+    private final long lngFrameAmount;
+    private float[] fltMixMatrix;
+    private Resampler resampler = null;
+
+    /**
+     * Parse the header of a WAV file
+     * @param file
+     * @throws IOException - Also when the file is not a WAV file or holds an unsupported encoding
+     */
+    public WavImporter(File file) throws IOException {
+        this.file = file;
+        Wave.WavFile wavFile;
+        try {
+            wavFile = Wave.WavFile.openWavFile(file);
+        } catch (Wave.WavFileException e) {
+            throw new IOException(e.getMessage());
+        }
+        try {
+            intFormatCode = wavFile.getFormatCode();
+            intChannels = wavFile.getNumChannels();
+            intBytesPerSample = wavFile.getBytesPerSample();
+            intBlockAlign = wavFile.getBlockAlign();
+            lngSampleRate = wavFile.getSampleRate();
+            lngDataOffset = wavFile.getDataOffset();
+            lngFrameAmount = wavFile.getNumFrames();
+        } finally {
+            wavFile.close();
+        }
+        if ((intFormatCode == Wave.WavFile.FORMAT_PCM) && (intBytesPerSample > 4)) {
+            throw new IOException("Integer samples of " + intBytesPerSample * 8 + " bits not supported");
+        }
+        fltMixMatrix = getAverageMix(intChannels);
+    }
+
+    /**
+     * @return Sample rate of the file
+     */
+    public long getSampleRate() {
+        return lngSampleRate;
+    }
+
+    /**
+     * @return Sample rate of the samples written
+     */
+    public long getOutputSampleRate() {
+        return (resampler == null) ? lngSampleRate : resampler.getToRate();
+    }
+
+    /**
+     * Convert to another sample rate while importing
+     * @param intSampleRate - 0 to keep the rate of the file
+     * @return
+     * @throws IOException - If there is no converter between the rates
+     */
+    public WavImporter setOutputSampleRate(int intSampleRate) throws IOException {
+        if ((intSampleRate <= 0) || (intSampleRate == lngSampleRate)) {
+            resampler = null;
+            return this;
+        }
+        try {
+            resampler = new Resampler((int) lngSampleRate, intSampleRate);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        return this;
+    }
+
+    public int getChannels() {
+        return intChannels;
+    }
+
+    public long getFrameAmount() {
+        return lngFrameAmount;
+    }
+
+    /**
+     * Set how the channels are mixed down to mono. The default gives every channel the same weight.
+     * @param fltMixMatrix - Gain of every channel, in file order. Null for the default
+     * @return
+     * @throws IOException - If the amount of gains does not match the channels
+     */
+    public WavImporter setMixMatrix(float[] fltMixMatrix) throws IOException {
+        if (fltMixMatrix == null) {
+            this.fltMixMatrix = getAverageMix(intChannels);
+            return this;
+        }
+        if (fltMixMatrix.length != intChannels) {
+            throw new IOException("Mix matrix has " + fltMixMatrix.length + " gains for " + intChannels + " channels");
+        }
+        this.fltMixMatrix = fltMixMatrix.clone();
+        return this;
+    }
+
+    private static float[] getAverageMix(int intChannels) {
+        float[] fltMix = new float[intChannels];
+        for (int i = 0; i < intChannels; i++) {
+            fltMix[i] = 1f / intChannels;
+        }
+        return fltMix;
+    }
+
+    /**
+     * Write the samples to a channel, from its current position, in the byte order of the working files.
+     * Mono 16 bit files at unity gain and their own rate are copied over by the kernel.
+     * @param channelOut
+     * @return Amount of samples written
+     * @throws IOException
+     */
+    public long importInto(FileChannel channelOut) throws IOException {
+        return importInto(channelOut, null);
+    }
+
+    /**
+     * Write the samples to a channel, reporting progress to a job and stopping when it gets cancelled
+     * @param channelOut
+     * @param audioJob - Can be null
+     * @return Amount of samples written
+     * @throws IOException - An InterruptedIOException if the job got cancelled
+     */
+    public long importInto(FileChannel channelOut, AudioJob audioJob) throws IOException {
+        FileChannel channelIn = new FileInputStream(file).getChannel();
+        try {
+            if ((intChannels == 1) && (intFormatCode == Wave.WavFile.FORMAT_PCM) && (intBytesPerSample == 2) && (fltMixMatrix[0] == 1f)
+                    && (resampler == null)) {
+                return transfer(channelIn, channelOut, audioJob);
+            }
+            return decode(channelIn, channelOut, audioJob);
+        } finally {
+            channelIn.close();
+        }
+    }
+
+    private long transfer(FileChannel channelIn, FileChannel channelOut, AudioJob audioJob) throws IOException {
+        long lngLength = lngFrameAmount * 2;
+        long lngPosition = 0;
+        while (lngPosition < lngLength) {
+            if (audioJob != null) {
+                audioJob.checkCancelled();
+                audioJob.setProgress(lngPosition, lngLength);
+            }
+            // In steps, so that the job hears of it in between
+            long lngStep = Math.min(TRANSFER_STEP_IN_BYTES, lngLength - lngPosition);
+            long lngTransferred = channelIn.transferTo(lngDataOffset + lngPosition, lngStep, channelOut);
+            if (lngTransferred <= 0) {
+                break;
+            }
+            lngPosition += lngTransferred;
+        }
+        return lngPosition / 2;
+    }
+
+    private long decode(FileChannel channelIn, FileChannel channelOut, AudioJob audioJob) throws IOException {
+        int intFramesPerBlock = Math.max(1, BLOCK_SIZE_IN_BYTES / intBlockAlign);
+        ByteBuffer byteBufferIn = ByteBuffer.allocate(intFramesPerBlock * intBlockAlign);
+        byte[] bytesIn = byteBufferIn.array();
+        ByteBuffer byteBufferOut = ByteBuffer.allocate(intFramesPerBlock * 2).order(PcmFormat.BYTE_ORDER);
+        short[] audioData = new short[intFramesPerBlock];
+        Resampler.Stream resamplerStream = (resampler == null) ? null : resampler.new Stream();
+        long lngSamplesWritten = 0;
+        long lngFramesWritten = 0;
+        while (lngFramesWritten < lngFrameAmount) {
+            if (audioJob != null) {
+                audioJob.checkCancelled();
+                audioJob.setProgress(lngFramesWritten, lngFrameAmount);
+            }
+            int intFrames = (int) Math.min(intFramesPerBlock, lngFrameAmount - lngFramesWritten);
+            byteBufferIn.clear();
+            byteBufferIn.limit(intFrames * intBlockAlign);
+            long lngPosition = lngDataOffset + lngFramesWritten * intBlockAlign;
+            while (byteBufferIn.hasRemaining()) {
+                if (channelIn.read(byteBufferIn, lngPosition + byteBufferIn.position()) == -1) {
+                    break;
+                }
+            }
+            // A file that got shorter since the header was read ends at its last whole frame
+            intFrames = byteBufferIn.position() / intBlockAlign;
+            if (intFrames == 0) {
+                AudioLog.d(TAG, file.getName() + " ended after " + lngFramesWritten + " of " + lngFrameAmount + " frames");
+                break;
+            }
+            mixDown(bytesIn, intFrames, audioData);
+            if (resamplerStream == null) {
+                lngSamplesWritten += write(channelOut, byteBufferOut, audioData, intFrames);
+            } else {
+                short[] audioDataResampled = resamplerStream.write(audioData, 0, intFrames);
+                lngSamplesWritten += write(channelOut, byteBufferOut, audioDataResampled, resamplerStream.getOutputLength());
+            }
+            lngFramesWritten += intFrames;
+        }
+        if (resamplerStream != null) {
+            short[] audioDataResampled = resamplerStream.finish();
+            lngSamplesWritten += write(channelOut, byteBufferOut, audioDataResampled, resamplerStream.getOutputLength());
+        }
+        return lngSamplesWritten;
+    }
+
+    /**
+     * @return Amount of samples written
+     */
+    private static int write(FileChannel channelOut, ByteBuffer byteBufferOut, short[] audioData, int intLength) throws IOException {
+        int intOffset = 0;
+        while (intOffset < intLength) {
+            int intAmount = Math.min(intLength - intOffset, byteBufferOut.capacity() / 2);
+            byteBufferOut.clear();
+            byteBufferOut.asShortBuffer().put(audioData, intOffset, intAmount);
+            byteBufferOut.limit(intAmount * 2);
+            while (byteBufferOut.hasRemaining()) {
+                channelOut.write(byteBufferOut);
+            }
+            intOffset += intAmount;
+        }
+        return intLength;
+    }
+
+    /**
+     * Decode frames and mix every frame into one 16 bit sample
+     * @param bytesIn
+     * @param intFrames
+     * @param audioData
+     */
+    private void mixDown(byte[] bytesIn, int intFrames, short[] audioData) {
+        int intPosition = 0;
+        for (int f = 0; f < intFrames; f++) {
+            float fltMix = 0;
+            for (int c = 0; c < intChannels; c++) {
+                fltMix += fltMixMatrix[c] * getSample(bytesIn, intPosition + c * intBytesPerSample);
+            }
+            int intMix = Math.round(fltMix);
+            audioData[f] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, intMix));
+            intPosition += intBlockAlign;
+        }
+    }
+
+    /**
+     * @param bytes
+     * @param p - Position of the first, least significant, byte
+     * @return Little endian sample scaled to the 16 bit range
+     */
+    private float getSample(byte[] bytes, int p) {
+        if (intFormatCode == Wave.WavFile.FORMAT_IEEE_FLOAT) {
+            if (intBytesPerSample == 4) {
+                return Float.intBitsToFloat(getInt(bytes, p)) * 32768f;
+            }
+            long lngBits = (getInt(bytes, p) & 0xFFFFFFFFL) | ((long) getInt(bytes, p + 4) << 32);
+            return (float) (Double.longBitsToDouble(lngBits) * 32768.0);
+        }
+        switch (intBytesPerSample) {
+            case 1:
+                return ((bytes[p] & 0xFF) - 128) << 8;
+            case 2:
+                return (short) ((bytes[p] & 0xFF) | (bytes[p + 1] << 8));
+            case 3:
+                return ((bytes[p] & 0xFF) | ((bytes[p + 1] & 0xFF) << 8) | (bytes[p + 2] << 16)) / 256f;
+            default:
+                return getInt(bytes, p) / 65536f;
+        }
+    }
+
+    private static int getInt(byte[] bytes, int p) {
+        return (bytes[p] & 0xFF) | ((bytes[p + 1] & 0xFF) << 8) | ((bytes[p + 2] & 0xFF) << 16) | (bytes[p + 3] << 24);
+    }
+}
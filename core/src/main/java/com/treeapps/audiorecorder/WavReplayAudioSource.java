@@ -0,0 +1,68 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replays the first channel of a WAV file as if it was being recorded, optionally looping it
+ */
+public class WavReplayAudioSource extends PacedAudioSource {
+
+    private final File fileWav;
+    private final boolean boolIsLooping;
+    private Wave.WavFile wavFile;
+
+    public WavReplayAudioSource(File fileWav, boolean boolIsLooping, int intBufferSizeInShorts, long lngSeed) throws IOException {
+        super(getSampleRate(fileWav), intBufferSizeInShorts, lngSeed);
+        this.fileWav = fileWav;
+        this.boolIsLooping = boolIsLooping;
+    }
+
+    private static int getSampleRate(File fileWav) throws IOException {
+        Wave.WavFile wavFile = openWavFile(fileWav);
+        wavFile.close();
+        return (int) wavFile.getSampleRate();
+    }
+
+    private static Wave.WavFile openWavFile(File fileWav) throws IOException {
+        try {
+            return Wave.WavFile.openWavFile(fileWav);
+        } catch (Wave.WavFileException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void start() throws IOException {
+        release();
+        wavFile = openWavFile(fileWav);
+        super.start();
+    }
+
+    @Override
+    protected int generate(short[] audioData, int intOffset, int intLength) throws IOException {
+        try {
+            int intRead = wavFile.readFramesChanel(audioData, intOffset, intLength, 0);
+            if ((intRead <= 0) && boolIsLooping && (wavFile.getNumFrames() > 0)) {
+                wavFile.close();
+                wavFile = openWavFile(fileWav);
+                intRead = wavFile.readFramesChanel(audioData, intOffset, intLength, 0);
+            }
+            return (intRead <= 0) ? -1 : intRead;
+        } catch (Wave.WavFileException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void release() {
+        if (wavFile != null) {
+            try {
+                wavFile.close();
+            } catch (IOException e) {
+                AudioLog.e("WavReplayAudioSource", "Could not close " + fileWav.getName(), e);
+            }
+            wavFile = null;
+        }
+    }
+}
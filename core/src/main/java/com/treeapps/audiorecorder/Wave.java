@@ -0,0 +1,1554 @@
+package com.treeapps.audiorecorder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+//from: http://www.labbookpages.co.uk/audio/javaWavFiles.html
+//added short and readchannel
+
+public class Wave {
+// Wav file IO class
+// A.Greensted
+// http://www.labbookpages.co.uk
+
+// File format is based on the information from
+// http://www.sonicspot.com/guide/wavefiles.html
+// http://www.blitter.com/~russtopia/MIDI/~jglatt/tech/wave.htm
+
+// Version 1.0
+
+//import java.io.*;
+
+    public static class WavFile
+    {
+        private enum IOState {READING, WRITING, CLOSED};
+        private final static int BUFFER_SIZE = 4096;
+        private final static int IO_BUFFER_SIZE = 64 * 1024; // Holds at least one frame of the largest block align
+
+        private final static int FMT_CHUNK_ID = 0x20746D66;
+        private final static int DATA_CHUNK_ID = 0x61746164;
+        private final static int RIFF_CHUNK_ID = 0x46464952;
+        private final static int RIFF_TYPE_ID = 0x45564157;
+        private final static int RF64_CHUNK_ID = 0x34364652;
+        private final static int DS64_CHUNK_ID = 0x34367364;
+        private final static int JUNK_CHUNK_ID = 0x4B4E554A;
+        private final static int DS64_SIZE = 28;                // RIFF size, data size, sample count and an empty table
+        private final static long MAX_CHUNK_SIZE = 0xFFFFFFFFL;
+
+// Sony Wave64 identifies its chunks by GUID, with 64 bit sizes that include the 24 byte chunk header. The
+// GUIDs of the wave, fmt and data chunks start with their RIFF ID and share the remaining 12 bytes
+        private final static int W64_RIFF_CHUNK_ID = 0x66666972;
+        private final static byte[] W64_RIFF_GUID_SUFFIX = {(byte) 0x2E, (byte) 0x91, (byte) 0xCF, (byte) 0x11, (byte) 0xA5, (byte) 0xD6, (byte) 0x28, (byte) 0xDB, (byte) 0x04, (byte) 0xC1, (byte) 0x00, (byte) 0x00};
+        private final static byte[] W64_GUID_SUFFIX = {(byte) 0xF3, (byte) 0xAC, (byte) 0xD3, (byte) 0x11, (byte) 0x8C, (byte) 0xD1, (byte) 0x00, (byte) 0xC0, (byte) 0x4F, (byte) 0x8E, (byte) 0xDB, (byte) 0x8A};
+        private final static int W64_TYPE_ID = 0x65766177;
+        private final static int W64_CHUNK_HEADER_SIZE = 24;
+
+        public final static int FORMAT_PCM = 1;
+        public final static int FORMAT_IEEE_FLOAT = 3;
+        private final static int FORMAT_EXTENSIBLE = 0xFFFE;
+        private final static int FMT_EXTENSIBLE_SIZE = 40;
+
+        private File file;                      // File that will be read from or written to
+        private IOState ioState;                // Specifies the IO State of the Wav File (used for snaity checking)
+        private int bytesPerSample;         // Number of bytes required to store a single sample
+        private long numFrames;                 // Number of frames within the data section
+        private FileOutputStream oStream;   // Output stream used for writting data
+        private FileInputStream iStream;        // Input stream used for reading data
+        private double floatScale;              // Scaling factor used for int <-> float conversion
+        private double floatOffset;         // Offset factor used for int <-> float conversion
+        private boolean wordAlignAdjust;        // Specify if an extra byte at the end of the data chunk is required for word alignment
+        private boolean streaming;              // Written without knowing the number of frames, the header is patched on close
+
+        // Wav Header
+        private int numChannels;                // 2 bytes unsigned, 0x0001 (1) to 0xFFFF (65,535)
+        private long sampleRate;                // 4 bytes unsigned, 0x00000001 (1) to 0xFFFFFFFF (4,294,967,295)
+        // Although a java int is 4 bytes, it is signed, so need to use a long
+        private int blockAlign;                 // 2 bytes unsigned, 0x0001 (1) to 0xFFFF (65,535)
+        private int validBits;                  // 2 bytes unsigned, 0x0002 (2) to 0xFFFF (65,535)
+        private int formatCode;                 // FORMAT_PCM or FORMAT_IEEE_FLOAT, also for extensible headers
+        private long dataOffset;                // File position of the first sample
+
+        // Buffering
+        private byte[] buffer;                  // Local buffer used for header IO
+        private ByteBuffer ioBuffer;            // Direct little endian buffer the samples move through, whole frames at a time
+        private long frameCounter;              // Current number of frames read or written
+        private final ThreadLocal<ByteBuffer> positionalBuffer = new ThreadLocal<ByteBuffer>()
+        {
+            @Override
+            protected ByteBuffer initialValue()
+            {
+                return ByteBuffer.allocateDirect(IO_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        };
+
+        // Cannot instantiate WavFile directly, must either use newWavFile() or openWavFile()
+        private WavFile()
+        {
+            buffer = new byte[BUFFER_SIZE];
+            ioBuffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public int getNumChannels()
+        {
+            return numChannels;
+        }
+
+        public long getNumFrames()
+        {
+            return numFrames;
+        }
+
+        public long getFramesRemaining()
+        {
+            return numFrames - frameCounter;
+        }
+
+        public long getSampleRate()
+        {
+            return sampleRate;
+        }
+
+        public int getValidBits()
+        {
+            return validBits;
+        }
+
+        public int getFormatCode()
+        {
+            return formatCode;
+        }
+
+        public int getBytesPerSample()
+        {
+            return bytesPerSample;
+        }
+
+        public int getBlockAlign()
+        {
+            return blockAlign;
+        }
+
+        public long getDataOffset()
+        {
+            return dataOffset;
+        }
+
+        public static WavFile newWavFile(File file, int numChannels, long numFrames, int validBits, long sampleRate) throws IOException, WavFileException
+        {
+            return newWavFile(file, numChannels, numFrames, validBits, sampleRate, false);
+        }
+
+        // Start a file of which the number of frames is not known up front, as for a live capture. Frames are
+        // accepted until close(), which patches the chunk sizes. If the data passes 4 GB the file is turned into
+        // RF64, using the room a JUNK chunk keeps free for the ds64 chunk
+        public static WavFile newStreamingWavFile(File file, int numChannels, int validBits, long sampleRate) throws IOException, WavFileException
+        {
+            return newWavFile(file, numChannels, 0, validBits, sampleRate, true);
+        }
+
+        private static WavFile newWavFile(File file, int numChannels, long numFrames, int validBits, long sampleRate, boolean streaming) throws IOException, WavFileException
+        {
+// Instantiate new Wavfile and initialise
+            WavFile wavFile = new WavFile();
+            wavFile.streaming = streaming;
+            wavFile.file = file;
+            wavFile.numChannels = numChannels;
+            wavFile.numFrames = numFrames;
+            wavFile.sampleRate = sampleRate;
+            wavFile.bytesPerSample = (validBits + 7) / 8;
+            wavFile.blockAlign = wavFile.bytesPerSample * numChannels;
+            wavFile.validBits = validBits;
+
+// Sanity check arguments
+            if (numChannels < 1 || numChannels > 65535) throw new WavFileException("Illegal number of channels, valid range 1 to 65536");
+            if (numFrames < 0) throw new WavFileException("Number of frames must be positive");
+            if (validBits < 2 || validBits > 65535) throw new WavFileException("Illegal number of valid bits, valid range 2 to 65536");
+            if (sampleRate < 0) throw new WavFileException("Sample rate must be positive");
+
+// Create output stream for writing data
+            wavFile.oStream = new FileOutputStream(file);
+
+// Calculate the chunk sizes
+            long dataChunkSize = wavFile.blockAlign * numFrames;
+            long mainChunkSize =    4 + // Riff Type
+                    8 + // Format ID and size
+                    16 +    // Format data
+                    8 +     // Data ID and size
+                    dataChunkSize;
+
+// Chunks must be word aligned, so if odd number of audio data bytes
+// adjust the main chunk size
+            if (dataChunkSize % 2 == 1) {
+                mainChunkSize += 1;
+                wavFile.wordAlignAdjust = true;
+            }
+            else {
+                wavFile.wordAlignAdjust = false;
+            }
+
+// Sizes that do not fit in 32 bits go into the ds64 chunk of an RF64 file
+            boolean rf64 = !streaming && mainChunkSize > MAX_CHUNK_SIZE;
+            if (rf64) mainChunkSize += 8 + DS64_SIZE;
+
+// Set the main chunk size, left unset until close when streaming
+            putLE(rf64 ? RF64_CHUNK_ID : RIFF_CHUNK_ID,    wavFile.buffer, 0, 4);
+            putLE(streaming || rf64 ? MAX_CHUNK_SIZE : mainChunkSize,    wavFile.buffer, 4, 4);
+            putLE(RIFF_TYPE_ID, wavFile.buffer, 8, 4);
+
+// Write out the header
+            wavFile.oStream.write(wavFile.buffer, 0, 12);
+
+// Write the ds64 chunk, or keep room for it
+            if (streaming || rf64)
+            {
+                putLE(rf64 ? DS64_CHUNK_ID : JUNK_CHUNK_ID,    wavFile.buffer, 0, 4);
+                putLE(DS64_SIZE,        wavFile.buffer, 4, 4);
+                for (int b=8 ; b<8+DS64_SIZE ; b++) wavFile.buffer[b] = 0;
+                if (rf64)
+                {
+                    putLE(mainChunkSize,    wavFile.buffer, 8, 8);
+                    putLE(dataChunkSize,    wavFile.buffer, 16, 8);
+                    putLE(numFrames,        wavFile.buffer, 24, 8);
+                }
+                wavFile.oStream.write(wavFile.buffer, 0, 8 + DS64_SIZE);
+            }
+
+// Put format data in buffer
+            long averageBytesPerSecond = sampleRate * wavFile.blockAlign;
+
+            putLE(FMT_CHUNK_ID,             wavFile.buffer, 0, 4);      // Chunk ID
+            putLE(16,                           wavFile.buffer, 4, 4);      // Chunk Data Size
+            putLE(1,                                wavFile.buffer, 8, 2);      // Compression Code (Uncompressed)
+            putLE(numChannels,              wavFile.buffer, 10, 2);     // Number of channels
+            putLE(sampleRate,                   wavFile.buffer, 12, 4);     // Sample Rate
+            putLE(averageBytesPerSecond,    wavFile.buffer, 16, 4);     // Average Bytes Per Second
+            putLE(wavFile.blockAlign,       wavFile.buffer, 20, 2);     // Block Align
+            putLE(validBits,                    wavFile.buffer, 22, 2);     // Valid Bits
+
+// Write Format Chunk
+            wavFile.oStream.write(wavFile.buffer, 0, 24);
+
+// Start Data Chunk
+            putLE(DATA_CHUNK_ID,                wavFile.buffer, 0, 4);      // Chunk ID
+            putLE(streaming || rf64 ? MAX_CHUNK_SIZE : dataChunkSize,                wavFile.buffer, 4, 4);      // Chunk Data Size
+
+// Write Format Chunk
+            wavFile.oStream.write(wavFile.buffer, 0, 8);
+            wavFile.dataOffset = wavFile.oStream.getChannel().position();
+
+// Calculate the scaling factor for converting to a normalised double
+            if (wavFile.validBits > 8)
+            {
+// If more than 8 validBits, data is signed
+// Conversion required multiplying by magnitude of max positive value
+                wavFile.floatOffset = 0;
+                wavFile.floatScale = Long.MAX_VALUE >> (64 - wavFile.validBits);
+            }
+            else
+            {
+// Else if 8 or less validBits, data is unsigned
+// Conversion required dividing by max positive value
+                wavFile.floatOffset = 1;
+                wavFile.floatScale = 0.5 * ((1 << wavFile.validBits) - 1);
+            }
+
+// Finally, set the IO State
+            wavFile.ioBuffer.clear();
+            wavFile.frameCounter = 0;
+            wavFile.ioState = IOState.WRITING;
+
+            return wavFile;
+        }
+
+        public static WavFile openWavFile(File file) throws IOException, WavFileException
+        {
+// Instantiate new Wavfile and store the file reference
+            WavFile wavFile = new WavFile();
+            wavFile.file = file;
+
+// Create a new file input stream for reading file data
+            wavFile.iStream = new FileInputStream(file);
+
+// Read the first 12 bytes of the file
+            int bytesRead = wavFile.iStream.read(wavFile.buffer, 0, 12);
+            if (bytesRead != 12) throw new WavFileException("Not enough wav file bytes for header");
+
+// Extract parts from the header
+            long riffChunkID = getLE(wavFile.buffer, 0, 4);
+            long chunkSize = getLE(wavFile.buffer, 4, 4);
+            long riffTypeID = getLE(wavFile.buffer, 8, 4);
+
+// Check the header bytes contains the correct signature, of a RIFF, RF64 or Wave64 file
+            boolean w64 = riffChunkID == W64_RIFF_CHUNK_ID;
+            boolean rf64 = riffChunkID == RF64_CHUNK_ID;
+            if (w64)
+            {
+                bytesRead = readFully(wavFile.iStream, wavFile.buffer, 12, 28);
+                if (bytesRead != 28) throw new WavFileException("Not enough wav file bytes for header");
+                if (!isW64Guid(wavFile.buffer, 0, W64_RIFF_GUID_SUFFIX)) throw new WavFileException("Invalid Wave64 Header data, incorrect riff GUID");
+                if (getLE(wavFile.buffer, 24, 4) != W64_TYPE_ID || !isW64Guid(wavFile.buffer, 24, W64_GUID_SUFFIX)) throw new WavFileException("Invalid Wave64 Header data, incorrect wave GUID");
+            }
+            else
+            {
+                if (riffChunkID != RIFF_CHUNK_ID && !rf64) throw new WavFileException("Invalid Wav Header data, incorrect riff chunk ID");
+                if (riffTypeID != RIFF_TYPE_ID) throw new WavFileException("Invalid Wav Header data, incorrect riff type ID");
+            }
+
+// The RIFF size is not checked against the file size, streaming writers often leave it unset
+
+            boolean foundFormat = false;
+            boolean foundData = false;
+            long ds64DataSize = -1;
+
+// Search for the Format and Data Chunks
+            while (true)
+            {
+// Read the header of the chunk (ID and chunk size)
+                int chunkHeaderSize = w64 ? W64_CHUNK_HEADER_SIZE : 8;
+                bytesRead = readFully(wavFile.iStream, wavFile.buffer, 0, chunkHeaderSize);
+                if (bytesRead == 0) throw new WavFileException("Reached end of file without finding format chunk");
+                if (bytesRead != chunkHeaderSize) throw new WavFileException("Could not read chunk header");
+
+// Extract the chunk ID and Size
+                long chunkID;
+                long numChunkBytes;
+                if (w64)
+                {
+// Chunks of other GUIDs than the ones known are skipped, the size includes the header and chunks are
+// aligned to 8 bytes
+                    chunkID = isW64Guid(wavFile.buffer, 0, W64_GUID_SUFFIX) ? getLE(wavFile.buffer, 0, 4) : 0;
+                    chunkSize = getLE(wavFile.buffer, 16, 8) - W64_CHUNK_HEADER_SIZE;
+                    if (chunkSize < 0) throw new WavFileException("Wave64 chunk size smaller than its header");
+                    numChunkBytes = (chunkSize + 7) & ~7L;
+                }
+                else
+                {
+                    chunkID = getLE(wavFile.buffer, 0, 4);
+                    chunkSize = getLE(wavFile.buffer, 4, 4);
+
+// Word align the chunk size
+// chunkSize specifies the number of bytes holding data. However,
+// the data should be word aligned (2 bytes) so we need to calculate
+// the actual number of bytes in the chunk
+                    numChunkBytes = (chunkSize%2 == 1) ? chunkSize+1 : chunkSize;
+                }
+
+                if (rf64 && chunkID == DS64_CHUNK_ID)
+                {
+// The 64 bit RIFF and data sizes of an RF64 file
+                    if (chunkSize < 16) throw new WavFileException("ds64 chunk too short");
+                    bytesRead = readFully(wavFile.iStream, wavFile.buffer, 0, 16);
+                    if (bytesRead != 16) throw new WavFileException("Could not read ds64 chunk");
+                    ds64DataSize = getLE(wavFile.buffer, 8, 8);
+                    wavFile.iStream.skip(numChunkBytes - 16);
+                }
+                else if (chunkID == FMT_CHUNK_ID)
+                {
+// Flag that the format chunk has been found
+                    foundFormat = true;
+
+// Read in the header info, followed by the extension of an extensible header
+                    int fmtBytes = 16;
+                    bytesRead = readFully(wavFile.iStream, wavFile.buffer, 0, fmtBytes);
+                    if (bytesRead != fmtBytes) throw new WavFileException("Could not read format chunk");
+                    if (getLE(wavFile.buffer, 0, 2) == FORMAT_EXTENSIBLE)
+                    {
+                        if (chunkSize < FMT_EXTENSIBLE_SIZE) throw new WavFileException("Extensible format chunk too short");
+                        fmtBytes = FMT_EXTENSIBLE_SIZE;
+                        bytesRead = readFully(wavFile.iStream, wavFile.buffer, 16, fmtBytes - 16);
+                        if (bytesRead != fmtBytes - 16) throw new WavFileException("Could not read format chunk extension");
+                    }
+
+// Check this is uncompressed data, the sub format of an extensible header starts with the format code
+                    int compressionCode = (int) getLE(wavFile.buffer, 0, 2);
+                    if (compressionCode == FORMAT_EXTENSIBLE) compressionCode = (int) getLE(wavFile.buffer, 24, 2);
+                    if (compressionCode != FORMAT_PCM && compressionCode != FORMAT_IEEE_FLOAT) throw new WavFileException("Compression Code " + compressionCode + " not supported");
+                    wavFile.formatCode = compressionCode;
+
+// Extract the format information
+                    wavFile.numChannels = (int) getLE(wavFile.buffer, 2, 2);
+                    wavFile.sampleRate = getLE(wavFile.buffer, 4, 4);
+                    wavFile.blockAlign = (int) getLE(wavFile.buffer, 12, 2);
+                    wavFile.validBits = (int) getLE(wavFile.buffer, 14, 2);
+
+                    if (wavFile.numChannels == 0) throw new WavFileException("Number of channels specified in header is equal to zero");
+                    if (wavFile.blockAlign == 0) throw new WavFileException("Block Align specified in header is equal to zero");
+                    if (wavFile.validBits < 2) throw new WavFileException("Valid Bits specified in header is less than 2");
+                    if (wavFile.validBits > 64) throw new WavFileException("Valid Bits specified in header is greater than 64, this is greater than a long can hold");
+
+// Calculate the number of bytes required to hold 1 sample. For extensible headers this is the container
+// size, the valid bits of the extension are left justified in it
+                    wavFile.bytesPerSample = (wavFile.validBits + 7) / 8;
+                    if (compressionCode == FORMAT_IEEE_FLOAT && wavFile.bytesPerSample != 4 && wavFile.bytesPerSample != 8)
+                        throw new WavFileException("Float samples of " + wavFile.validBits + " bits not supported");
+                    if (wavFile.bytesPerSample * wavFile.numChannels != wavFile.blockAlign)
+                        throw new WavFileException("Block Align does not agree with bytes required for validBits and number of channels");
+
+// Account for number of format bytes and then skip over
+// any extra format bytes
+                    numChunkBytes -= fmtBytes;
+                    if (numChunkBytes > 0) wavFile.iStream.skip(numChunkBytes);
+                }
+                else if (chunkID == DATA_CHUNK_ID)
+                {
+// Check if we've found the format chunk,
+// If not, throw an exception as we need the format information
+// before we can read the data chunk
+                    if (foundFormat == false) throw new WavFileException("Data chunk found before Format chunk");
+
+// An RF64 data chunk gives its size in the ds64 chunk
+                    if (rf64 && chunkSize == MAX_CHUNK_SIZE && ds64DataSize >= 0) chunkSize = ds64DataSize;
+
+// Calculate the number of frames. A chunk cut short, by a recorder that died or a size left unset, holds
+// the whole frames up to the end of the file
+                    wavFile.dataOffset = wavFile.iStream.getChannel().position();
+                    wavFile.numFrames = Math.min(chunkSize, file.length() - wavFile.dataOffset) / wavFile.blockAlign;
+
+// Flag that we've found the wave data chunk
+                    foundData = true;
+
+                    break;
+                }
+                else
+                {
+// If an unknown chunk ID is found, just skip over the chunk data
+                    wavFile.iStream.skip(numChunkBytes);
+                }
+            }
+
+// Throw an exception if no data chunk has been found
+            if (foundData == false) throw new WavFileException("Did not find a data chunk");
+
+// Calculate the scaling factor for converting to a normalised double
+            if (wavFile.validBits > 8)
+            {
+// If more than 8 validBits, data is signed
+// Conversion required dividing by magnitude of max negative value
+                wavFile.floatOffset = 0;
+                wavFile.floatScale = 1 << (wavFile.validBits - 1);
+            }
+            else
+            {
+// Else if 8 or less validBits, data is unsigned
+// Conversion required dividing by max positive value
+                wavFile.floatOffset = -1;
+                wavFile.floatScale = 0.5 * ((1 << wavFile.validBits) - 1);
+            }
+
+            wavFile.ioBuffer.limit(0);
+            wavFile.frameCounter = 0;
+            wavFile.ioState = IOState.READING;
+
+            return wavFile;
+        }
+
+        // Is the GUID at pos one that ends in the suffix given
+        private static boolean isW64Guid(byte[] buffer, int pos, byte[] suffix)
+        {
+            for (int b=0 ; b<suffix.length ; b++)
+            {
+                if (buffer[pos + 4 + b] != suffix[b]) return false;
+            }
+            return true;
+        }
+
+        // Read until the count is reached or the stream ends, a single read may return less
+        private static int readFully(FileInputStream stream, byte[] buffer, int offset, int count) throws IOException
+        {
+            int total = 0;
+            while (total < count)
+            {
+                int read = stream.read(buffer, offset + total, count - total);
+                if (read == -1) break;
+                total += read;
+            }
+            return total;
+        }
+
+        // Get and Put little endian data from local buffer
+// ------------------------------------------------
+        private static long getLE(byte[] buffer, int pos, int numBytes)
+        {
+            numBytes --;
+            pos += numBytes;
+
+            long val = buffer[pos] & 0xFF;
+            for (int b=0 ; b<numBytes ; b++) val = (val << 8) + (buffer[--pos] & 0xFF);
+
+            return val;
+        }
+
+        private static void putLE(long val, byte[] buffer, int pos, int numBytes)
+        {
+            for (int b=0 ; b<numBytes ; b++)
+            {
+                buffer[pos] = (byte) (val & 0xFF);
+                val >>= 8;
+                pos ++;
+            }
+        }
+
+        // Sample Writing and Reading
+// --------------------------
+// Samples move through ioBuffer in blocks of whole frames. Each block is decoded or encoded by a loop
+// specialised for the sample width, so there is no branch or refill check per byte
+
+        // Frames a read or write of numFramesToMove frames covers, before the end of the data chunk, which a
+        // streamed file does not have
+        private int getFramesToMove(int numFramesToMove)
+        {
+            if (streaming) return Math.max(0, numFramesToMove);
+            return (int) Math.max(0, Math.min(numFramesToMove, numFrames - frameCounter));
+        }
+
+        // Make sure ioBuffer holds at least one whole frame from its position
+        // Returns the amount of whole frames, up to maxFrames, that can be decoded from the position
+        private int fillFrames(int maxFrames) throws IOException, WavFileException
+        {
+            if (ioBuffer.remaining() < blockAlign)
+            {
+                ioBuffer.compact();
+                FileChannel channel = iStream.getChannel();
+                while (ioBuffer.position() < blockAlign)
+                {
+                    if (channel.read(ioBuffer) == -1) break;
+                }
+                ioBuffer.flip();
+                if (ioBuffer.remaining() < blockAlign) throw new WavFileException("Not enough data available");
+            }
+            return Math.min(maxFrames, ioBuffer.remaining() / blockAlign);
+        }
+
+        // Make sure ioBuffer has room for at least one whole frame from its position
+        // Returns the amount of whole frames, up to maxFrames, that can be encoded from the position
+        private int reserveFrames(int maxFrames) throws IOException
+        {
+            if (ioBuffer.remaining() < blockAlign) flushFrames();
+            return Math.min(maxFrames, ioBuffer.remaining() / blockAlign);
+        }
+
+        // Write out the frames encoded into ioBuffer
+        private void flushFrames() throws IOException
+        {
+            ioBuffer.flip();
+            FileChannel channel = oStream.getChannel();
+            while (ioBuffer.hasRemaining()) channel.write(ioBuffer);
+            ioBuffer.clear();
+        }
+
+        // Move past frames that were decoded or encoded
+        private int skipFrames(int frames)
+        {
+            ioBuffer.position(ioBuffer.position() + frames * blockAlign);
+            frameCounter += frames;
+            if (streaming) numFrames = frameCounter;
+            return frames;
+        }
+
+        // Random Access
+// -------------
+// seek moves the sequential reads. The positional readFrames overloads leave the state of the instance alone
+// and read through a buffer of their own, so several threads can read regions of one file at the same time
+
+        public long getFramePosition()
+        {
+            return frameCounter;
+        }
+
+        public void seek(long frame) throws IOException, WavFileException
+        {
+            if (ioState != IOState.READING) throw new IOException("Cannot seek in WavFile instance");
+            if (frame < 0 || frame > numFrames) throw new WavFileException("Frame " + frame + " is outside the data chunk of " + numFrames + " frames");
+
+// Stay within the frames already buffered if possible, else drop them and start reading at the frame
+            long bufferStartFrame = frameCounter - ioBuffer.position() / blockAlign;
+            long bufferEndFrame = bufferStartFrame + ioBuffer.limit() / blockAlign;
+            if (frame >= bufferStartFrame && frame <= bufferEndFrame)
+            {
+                ioBuffer.position((int) (frame - bufferStartFrame) * blockAlign);
+            }
+            else
+            {
+                ioBuffer.limit(0);
+                iStream.getChannel().position(dataOffset + frame * blockAlign);
+            }
+            frameCounter = frame;
+        }
+
+        public int readFrames(long frameIndex, short[] sampleBuffer, int numFramesToRead) throws IOException, WavFileException
+        {
+            return readFrames(frameIndex, sampleBuffer, 0, numFramesToRead);
+        }
+
+        public int readFrames(long frameIndex, short[] sampleBuffer, int offset, int numFramesToRead) throws IOException, WavFileException
+        {
+            ByteBuffer bytes = getPositionalBuffer(frameIndex);
+            int f = 0;
+            int frames;
+            while ((frames = readAt(bytes, frameIndex + f, numFramesToRead - f)) > 0)
+            {
+                decode(bytes, sampleBuffer, offset, 0, bytesPerSample, frames * numChannels);
+                offset += frames * numChannels;
+                f += frames;
+            }
+
+            return f;
+        }
+
+        public int readFrames(long frameIndex, double[] sampleBuffer, int numFramesToRead) throws IOException, WavFileException
+        {
+            return readFrames(frameIndex, sampleBuffer, 0, numFramesToRead);
+        }
+
+        public int readFrames(long frameIndex, double[] sampleBuffer, int offset, int numFramesToRead) throws IOException, WavFileException
+        {
+            ByteBuffer bytes = getPositionalBuffer(frameIndex);
+            int f = 0;
+            int frames;
+            while ((frames = readAt(bytes, frameIndex + f, numFramesToRead - f)) > 0)
+            {
+                decode(bytes, sampleBuffer, offset, 0, bytesPerSample, frames * numChannels);
+                offset += frames * numChannels;
+                f += frames;
+            }
+
+            return f;
+        }
+
+        // Buffer of the calling thread for positional reads
+        private ByteBuffer getPositionalBuffer(long frameIndex) throws IOException, WavFileException
+        {
+            if (ioState != IOState.READING) throw new IOException("Cannot read from WavFile instance");
+            if (frameIndex < 0) throw new WavFileException("Frame " + frameIndex + " is outside the data chunk");
+            return positionalBuffer.get();
+        }
+
+        // Fill bytes with whole frames starting at a frame, without touching the position of the stream
+        // Returns the amount of frames read, 0 at the end of the data chunk or the file
+        private int readAt(ByteBuffer bytes, long frame, int maxFrames) throws IOException
+        {
+            int frames = (int) Math.min(Math.min(maxFrames, numFrames - frame), bytes.capacity() / blockAlign);
+            if (frames <= 0) return 0;
+            bytes.clear();
+            bytes.limit(frames * blockAlign);
+            long position = dataOffset + frame * blockAlign;
+            FileChannel channel = iStream.getChannel();
+            while (bytes.hasRemaining())
+            {
+                if (channel.read(bytes, position + bytes.position()) == -1) break;
+            }
+            bytes.flip();
+            return bytes.remaining() / blockAlign;
+        }
+
+        private static int getInt24(ByteBuffer bytes, int pos)
+        {
+            return (bytes.get(pos) & 0xFF) | ((bytes.get(pos + 1) & 0xFF) << 8) | (bytes.get(pos + 2) << 16);
+        }
+
+        private static void putInt24(ByteBuffer bytes, int pos, int val)
+        {
+            bytes.put(pos, (byte) val);
+            bytes.put(pos + 1, (byte) (val >> 8));
+            bytes.put(pos + 2, (byte) (val >> 16));
+        }
+
+        // Samples of 5 to 8 bytes, signed by their most significant byte
+        private long getLong(ByteBuffer bytes, int pos)
+        {
+            int b = bytesPerSample - 1;
+            long val = bytes.get(pos + b);
+            while (b > 0) val = (val << 8) | (bytes.get(pos + --b) & 0xFF);
+            return val;
+        }
+
+        private void putLong(ByteBuffer bytes, int pos, long val)
+        {
+            for (int b=0 ; b<bytesPerSample ; b++)
+            {
+                bytes.put(pos + b, (byte) val);
+                val >>= 8;
+            }
+        }
+
+        private long toLong(double val)
+        {
+            return (long) (floatScale * (floatOffset + val));
+        }
+
+
+        // Short
+// ----mono:
+        public int readFramesChanel(short[] sampleBuffer, int numFramesToRead,int channel) throws IOException, WavFileException
+        {
+            return readFramesChanel(sampleBuffer, 0, numFramesToRead,channel);
+        }
+
+        public int readFramesChanel(short[] sampleBuffer, int offset, int numFramesToRead,int channel) throws IOException, WavFileException
+        {
+            if (ioState != IOState.READING) throw new IOException("Cannot read from WavFile instance");
+
+            int framesToRead = getFramesToMove(numFramesToRead);
+            int f = 0;
+            while (f < framesToRead)
+            {
+                int frames = fillFrames(framesToRead - f);
+                if (channel >= 0 && channel < numChannels) decode(ioBuffer, sampleBuffer, offset, ioBuffer.position() + channel * bytesPerSample, blockAlign, frames);
+                offset += frames;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+        // ----
+        public int readFrames(short[] sampleBuffer, int numFramesToRead) throws IOException, WavFileException
+        {
+            return readFrames(sampleBuffer, 0, numFramesToRead);
+        }
+
+        public int readFrames(short[] sampleBuffer, int offset, int numFramesToRead) throws IOException, WavFileException
+        {
+            if (ioState != IOState.READING) throw new IOException("Cannot read from WavFile instance");
+
+            int framesToRead = getFramesToMove(numFramesToRead);
+            int f = 0;
+            while (f < framesToRead)
+            {
+                int frames = fillFrames(framesToRead - f);
+                decode(ioBuffer, sampleBuffer, offset, ioBuffer.position(), bytesPerSample, frames * numChannels);
+                offset += frames * numChannels;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        public int readFrames(short[][] sampleBuffer, int numFramesToRead) throws IOException, WavFileException
+        {
+            return readFrames(sampleBuffer, 0, numFramesToRead);
+        }
+
+        public int readFrames(short[][] sampleBuffer, int offset, int numFramesToRead) throws IOException, WavFileException
+        {
+            if (ioState != IOState.READING) throw new IOException("Cannot read from WavFile instance");
+
+            int framesToRead = getFramesToMove(numFramesToRead);
+            int f = 0;
+            while (f < framesToRead)
+            {
+                int frames = fillFrames(framesToRead - f);
+                for (int c=0 ; c<numChannels ; c++) decode(ioBuffer, sampleBuffer[c], offset, ioBuffer.position() + c * bytesPerSample, blockAlign, frames);
+                offset += frames;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        public int writeFrames(short[] sampleBuffer, int numFramesToWrite) throws IOException, WavFileException
+        {
+            return writeFrames(sampleBuffer, 0, numFramesToWrite);
+        }
+
+        public int writeFrames(short[] sampleBuffer, int offset, int numFramesToWrite) throws IOException, WavFileException
+        {
+            if (ioState != IOState.WRITING) throw new IOException("Cannot write to WavFile instance");
+
+            int framesToWrite = getFramesToMove(numFramesToWrite);
+            int f = 0;
+            while (f < framesToWrite)
+            {
+                int frames = reserveFrames(framesToWrite - f);
+                encode(ioBuffer, sampleBuffer, offset, ioBuffer.position(), bytesPerSample, frames * numChannels);
+                offset += frames * numChannels;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        public int writeFrames(short[][] sampleBuffer, int numFramesToWrite) throws IOException, WavFileException
+        {
+            return writeFrames(sampleBuffer, 0, numFramesToWrite);
+        }
+
+        public int writeFrames(short[][] sampleBuffer, int offset, int numFramesToWrite) throws IOException, WavFileException
+        {
+            if (ioState != IOState.WRITING) throw new IOException("Cannot write to WavFile instance");
+
+            int framesToWrite = getFramesToMove(numFramesToWrite);
+            int f = 0;
+            while (f < framesToWrite)
+            {
+                int frames = reserveFrames(framesToWrite - f);
+                for (int c=0 ; c<numChannels ; c++) encode(ioBuffer, sampleBuffer[c], offset, ioBuffer.position() + c * bytesPerSample, blockAlign, frames);
+                offset += frames;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        // Decode count samples, stride bytes apart from pos, into consecutive elements of the sample buffer
+        private void decode(ByteBuffer bytes, short[] sampleBuffer, int offset, int pos, int stride, int count)
+        {
+            int end = offset + count;
+            if (bytesPerSample == 2 && stride == 2 && pos == bytes.position())
+            {
+                bytes.asShortBuffer().get(sampleBuffer, offset, count);
+                return;
+            }
+            switch (bytesPerSample)
+            {
+                case 1:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = (short) (bytes.get(pos) & 0xFF);
+                    break;
+                case 2:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = bytes.getShort(pos);
+                    break;
+                case 3:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = (short) getInt24(bytes, pos);
+                    break;
+                case 4:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = (short) bytes.getInt(pos);
+                    break;
+                default:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = (short) getLong(bytes, pos);
+                    break;
+            }
+        }
+
+        // Encode count consecutive elements of the sample buffer into samples, stride bytes apart from pos
+        private void encode(ByteBuffer bytes, short[] sampleBuffer, int offset, int pos, int stride, int count)
+        {
+            int end = offset + count;
+            if (bytesPerSample == 2 && stride == 2 && pos == bytes.position())
+            {
+                bytes.asShortBuffer().put(sampleBuffer, offset, count);
+                return;
+            }
+            switch (bytesPerSample)
+            {
+                case 1:
+                    for (int i = offset; i < end; i++, pos += stride) bytes.put(pos, (byte) sampleBuffer[i]);
+                    break;
+                case 2:
+                    for (int i = offset; i < end; i++, pos += stride) bytes.putShort(pos, sampleBuffer[i]);
+                    break;
+                case 3:
+                    for (int i = offset; i < end; i++, pos += stride) putInt24(bytes, pos, sampleBuffer[i]);
+                    break;
+                case 4:
+                    for (int i = offset; i < end; i++, pos += stride) bytes.putInt(pos, (int) sampleBuffer[i]);
+                    break;
+                default:
+                    for (int i = offset; i < end; i++, pos += stride) putLong(bytes, pos, sampleBuffer[i]);
+                    break;
+            }
+        }
+
+        // Integer
+// -------
+        public int readFrames(int[] sampleBuffer, int numFramesToRead) throws IOException, WavFileException
+        {
+            return readFrames(sampleBuffer, 0, numFramesToRead);
+        }
+
+        public int readFrames(int[] sampleBuffer, int offset, int numFramesToRead) throws IOException, WavFileException
+        {
+            if (ioState != IOState.READING) throw new IOException("Cannot read from WavFile instance");
+
+            int framesToRead = getFramesToMove(numFramesToRead);
+            int f = 0;
+            while (f < framesToRead)
+            {
+                int frames = fillFrames(framesToRead - f);
+                decode(ioBuffer, sampleBuffer, offset, ioBuffer.position(), bytesPerSample, frames * numChannels);
+                offset += frames * numChannels;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        public int readFrames(int[][] sampleBuffer, int numFramesToRead) throws IOException, WavFileException
+        {
+            return readFrames(sampleBuffer, 0, numFramesToRead);
+        }
+
+        public int readFrames(int[][] sampleBuffer, int offset, int numFramesToRead) throws IOException, WavFileException
+        {
+            if (ioState != IOState.READING) throw new IOException("Cannot read from WavFile instance");
+
+            int framesToRead = getFramesToMove(numFramesToRead);
+            int f = 0;
+            while (f < framesToRead)
+            {
+                int frames = fillFrames(framesToRead - f);
+                for (int c=0 ; c<numChannels ; c++) decode(ioBuffer, sampleBuffer[c], offset, ioBuffer.position() + c * bytesPerSample, blockAlign, frames);
+                offset += frames;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        public int writeFrames(int[] sampleBuffer, int numFramesToWrite) throws IOException, WavFileException
+        {
+            return writeFrames(sampleBuffer, 0, numFramesToWrite);
+        }
+
+        public int writeFrames(int[] sampleBuffer, int offset, int numFramesToWrite) throws IOException, WavFileException
+        {
+            if (ioState != IOState.WRITING) throw new IOException("Cannot write to WavFile instance");
+
+            int framesToWrite = getFramesToMove(numFramesToWrite);
+            int f = 0;
+            while (f < framesToWrite)
+            {
+                int frames = reserveFrames(framesToWrite - f);
+                encode(ioBuffer, sampleBuffer, offset, ioBuffer.position(), bytesPerSample, frames * numChannels);
+                offset += frames * numChannels;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        public int writeFrames(int[][] sampleBuffer, int numFramesToWrite) throws IOException, WavFileException
+        {
+            return writeFrames(sampleBuffer, 0, numFramesToWrite);
+        }
+
+        public int writeFrames(int[][] sampleBuffer, int offset, int numFramesToWrite) throws IOException, WavFileException
+        {
+            if (ioState != IOState.WRITING) throw new IOException("Cannot write to WavFile instance");
+
+            int framesToWrite = getFramesToMove(numFramesToWrite);
+            int f = 0;
+            while (f < framesToWrite)
+            {
+                int frames = reserveFrames(framesToWrite - f);
+                for (int c=0 ; c<numChannels ; c++) encode(ioBuffer, sampleBuffer[c], offset, ioBuffer.position() + c * bytesPerSample, blockAlign, frames);
+                offset += frames;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        // Decode count samples, stride bytes apart from pos, into consecutive elements of the sample buffer
+        private void decode(ByteBuffer bytes, int[] sampleBuffer, int offset, int pos, int stride, int count)
+        {
+            int end = offset + count;
+            if (bytesPerSample == 4 && stride == 4 && pos == bytes.position())
+            {
+                bytes.asIntBuffer().get(sampleBuffer, offset, count);
+                return;
+            }
+            switch (bytesPerSample)
+            {
+                case 1:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = (bytes.get(pos) & 0xFF);
+                    break;
+                case 2:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = bytes.getShort(pos);
+                    break;
+                case 3:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = getInt24(bytes, pos);
+                    break;
+                case 4:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = bytes.getInt(pos);
+                    break;
+                default:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = (int) getLong(bytes, pos);
+                    break;
+            }
+        }
+
+        // Encode count consecutive elements of the sample buffer into samples, stride bytes apart from pos
+        private void encode(ByteBuffer bytes, int[] sampleBuffer, int offset, int pos, int stride, int count)
+        {
+            int end = offset + count;
+            if (bytesPerSample == 4 && stride == 4 && pos == bytes.position())
+            {
+                bytes.asIntBuffer().put(sampleBuffer, offset, count);
+                return;
+            }
+            switch (bytesPerSample)
+            {
+                case 1:
+                    for (int i = offset; i < end; i++, pos += stride) bytes.put(pos, (byte) sampleBuffer[i]);
+                    break;
+                case 2:
+                    for (int i = offset; i < end; i++, pos += stride) bytes.putShort(pos, (short) sampleBuffer[i]);
+                    break;
+                case 3:
+                    for (int i = offset; i < end; i++, pos += stride) putInt24(bytes, pos, sampleBuffer[i]);
+                    break;
+                case 4:
+                    for (int i = offset; i < end; i++, pos += stride) bytes.putInt(pos, sampleBuffer[i]);
+                    break;
+                default:
+                    for (int i = offset; i < end; i++, pos += stride) putLong(bytes, pos, sampleBuffer[i]);
+                    break;
+            }
+        }
+
+        // Long
+// ----
+        public int readFrames(long[] sampleBuffer, int numFramesToRead) throws IOException, WavFileException
+        {
+            return readFrames(sampleBuffer, 0, numFramesToRead);
+        }
+
+        public int readFrames(long[] sampleBuffer, int offset, int numFramesToRead) throws IOException, WavFileException
+        {
+            if (ioState != IOState.READING) throw new IOException("Cannot read from WavFile instance");
+
+            int framesToRead = getFramesToMove(numFramesToRead);
+            int f = 0;
+            while (f < framesToRead)
+            {
+                int frames = fillFrames(framesToRead - f);
+                decode(ioBuffer, sampleBuffer, offset, ioBuffer.position(), bytesPerSample, frames * numChannels);
+                offset += frames * numChannels;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        public int readFrames(long[][] sampleBuffer, int numFramesToRead) throws IOException, WavFileException
+        {
+            return readFrames(sampleBuffer, 0, numFramesToRead);
+        }
+
+        public int readFrames(long[][] sampleBuffer, int offset, int numFramesToRead) throws IOException, WavFileException
+        {
+            if (ioState != IOState.READING) throw new IOException("Cannot read from WavFile instance");
+
+            int framesToRead = getFramesToMove(numFramesToRead);
+            int f = 0;
+            while (f < framesToRead)
+            {
+                int frames = fillFrames(framesToRead - f);
+                for (int c=0 ; c<numChannels ; c++) decode(ioBuffer, sampleBuffer[c], offset, ioBuffer.position() + c * bytesPerSample, blockAlign, frames);
+                offset += frames;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        public int writeFrames(long[] sampleBuffer, int numFramesToWrite) throws IOException, WavFileException
+        {
+            return writeFrames(sampleBuffer, 0, numFramesToWrite);
+        }
+
+        public int writeFrames(long[] sampleBuffer, int offset, int numFramesToWrite) throws IOException, WavFileException
+        {
+            if (ioState != IOState.WRITING) throw new IOException("Cannot write to WavFile instance");
+
+            int framesToWrite = getFramesToMove(numFramesToWrite);
+            int f = 0;
+            while (f < framesToWrite)
+            {
+                int frames = reserveFrames(framesToWrite - f);
+                encode(ioBuffer, sampleBuffer, offset, ioBuffer.position(), bytesPerSample, frames * numChannels);
+                offset += frames * numChannels;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        public int writeFrames(long[][] sampleBuffer, int numFramesToWrite) throws IOException, WavFileException
+        {
+            return writeFrames(sampleBuffer, 0, numFramesToWrite);
+        }
+
+        public int writeFrames(long[][] sampleBuffer, int offset, int numFramesToWrite) throws IOException, WavFileException
+        {
+            if (ioState != IOState.WRITING) throw new IOException("Cannot write to WavFile instance");
+
+            int framesToWrite = getFramesToMove(numFramesToWrite);
+            int f = 0;
+            while (f < framesToWrite)
+            {
+                int frames = reserveFrames(framesToWrite - f);
+                for (int c=0 ; c<numChannels ; c++) encode(ioBuffer, sampleBuffer[c], offset, ioBuffer.position() + c * bytesPerSample, blockAlign, frames);
+                offset += frames;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        // Decode count samples, stride bytes apart from pos, into consecutive elements of the sample buffer
+        private void decode(ByteBuffer bytes, long[] sampleBuffer, int offset, int pos, int stride, int count)
+        {
+            int end = offset + count;
+            if (bytesPerSample == 8 && stride == 8 && pos == bytes.position())
+            {
+                bytes.asLongBuffer().get(sampleBuffer, offset, count);
+                return;
+            }
+            switch (bytesPerSample)
+            {
+                case 1:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = (bytes.get(pos) & 0xFF);
+                    break;
+                case 2:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = bytes.getShort(pos);
+                    break;
+                case 3:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = getInt24(bytes, pos);
+                    break;
+                case 4:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = bytes.getInt(pos);
+                    break;
+                default:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = getLong(bytes, pos);
+                    break;
+            }
+        }
+
+        // Encode count consecutive elements of the sample buffer into samples, stride bytes apart from pos
+        private void encode(ByteBuffer bytes, long[] sampleBuffer, int offset, int pos, int stride, int count)
+        {
+            int end = offset + count;
+            if (bytesPerSample == 8 && stride == 8 && pos == bytes.position())
+            {
+                bytes.asLongBuffer().put(sampleBuffer, offset, count);
+                return;
+            }
+            switch (bytesPerSample)
+            {
+                case 1:
+                    for (int i = offset; i < end; i++, pos += stride) bytes.put(pos, (byte) sampleBuffer[i]);
+                    break;
+                case 2:
+                    for (int i = offset; i < end; i++, pos += stride) bytes.putShort(pos, (short) sampleBuffer[i]);
+                    break;
+                case 3:
+                    for (int i = offset; i < end; i++, pos += stride) putInt24(bytes, pos, (int) sampleBuffer[i]);
+                    break;
+                case 4:
+                    for (int i = offset; i < end; i++, pos += stride) bytes.putInt(pos, (int) sampleBuffer[i]);
+                    break;
+                default:
+                    for (int i = offset; i < end; i++, pos += stride) putLong(bytes, pos, sampleBuffer[i]);
+                    break;
+            }
+        }
+
+        // Double
+// ------
+        public int readFrames(double[] sampleBuffer, int numFramesToRead) throws IOException, WavFileException
+        {
+            return readFrames(sampleBuffer, 0, numFramesToRead);
+        }
+
+        public int readFrames(double[] sampleBuffer, int offset, int numFramesToRead) throws IOException, WavFileException
+        {
+            if (ioState != IOState.READING) throw new IOException("Cannot read from WavFile instance");
+
+            int framesToRead = getFramesToMove(numFramesToRead);
+            int f = 0;
+            while (f < framesToRead)
+            {
+                int frames = fillFrames(framesToRead - f);
+                decode(ioBuffer, sampleBuffer, offset, ioBuffer.position(), bytesPerSample, frames * numChannels);
+                offset += frames * numChannels;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        public int readFrames(double[][] sampleBuffer, int numFramesToRead) throws IOException, WavFileException
+        {
+            return readFrames(sampleBuffer, 0, numFramesToRead);
+        }
+
+        public int readFrames(double[][] sampleBuffer, int offset, int numFramesToRead) throws IOException, WavFileException
+        {
+            if (ioState != IOState.READING) throw new IOException("Cannot read from WavFile instance");
+
+            int framesToRead = getFramesToMove(numFramesToRead);
+            int f = 0;
+            while (f < framesToRead)
+            {
+                int frames = fillFrames(framesToRead - f);
+                for (int c=0 ; c<numChannels ; c++) decode(ioBuffer, sampleBuffer[c], offset, ioBuffer.position() + c * bytesPerSample, blockAlign, frames);
+                offset += frames;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        public int writeFrames(double[] sampleBuffer, int numFramesToWrite) throws IOException, WavFileException
+        {
+            return writeFrames(sampleBuffer, 0, numFramesToWrite);
+        }
+
+        public int writeFrames(double[] sampleBuffer, int offset, int numFramesToWrite) throws IOException, WavFileException
+        {
+            if (ioState != IOState.WRITING) throw new IOException("Cannot write to WavFile instance");
+
+            int framesToWrite = getFramesToMove(numFramesToWrite);
+            int f = 0;
+            while (f < framesToWrite)
+            {
+                int frames = reserveFrames(framesToWrite - f);
+                encode(ioBuffer, sampleBuffer, offset, ioBuffer.position(), bytesPerSample, frames * numChannels);
+                offset += frames * numChannels;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        public int writeFrames(double[][] sampleBuffer, int numFramesToWrite) throws IOException, WavFileException
+        {
+            return writeFrames(sampleBuffer, 0, numFramesToWrite);
+        }
+
+        public int writeFrames(double[][] sampleBuffer, int offset, int numFramesToWrite) throws IOException, WavFileException
+        {
+            if (ioState != IOState.WRITING) throw new IOException("Cannot write to WavFile instance");
+
+            int framesToWrite = getFramesToMove(numFramesToWrite);
+            int f = 0;
+            while (f < framesToWrite)
+            {
+                int frames = reserveFrames(framesToWrite - f);
+                for (int c=0 ; c<numChannels ; c++) encode(ioBuffer, sampleBuffer[c], offset, ioBuffer.position() + c * bytesPerSample, blockAlign, frames);
+                offset += frames;
+                f += skipFrames(frames);
+            }
+
+            return f;
+        }
+
+        // Decode count samples, stride bytes apart from pos, into consecutive elements of the sample buffer
+        private void decode(ByteBuffer bytes, double[] sampleBuffer, int offset, int pos, int stride, int count)
+        {
+            int end = offset + count;
+            switch (bytesPerSample)
+            {
+                case 1:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = floatOffset + (bytes.get(pos) & 0xFF) / floatScale;
+                    break;
+                case 2:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = floatOffset + bytes.getShort(pos) / floatScale;
+                    break;
+                case 3:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = floatOffset + getInt24(bytes, pos) / floatScale;
+                    break;
+                case 4:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = floatOffset + bytes.getInt(pos) / floatScale;
+                    break;
+                default:
+                    for (int i = offset; i < end; i++, pos += stride) sampleBuffer[i] = floatOffset + getLong(bytes, pos) / floatScale;
+                    break;
+            }
+        }
+
+        // Encode count consecutive elements of the sample buffer into samples, stride bytes apart from pos
+        private void encode(ByteBuffer bytes, double[] sampleBuffer, int offset, int pos, int stride, int count)
+        {
+            int end = offset + count;
+            switch (bytesPerSample)
+            {
+                case 1:
+                    for (int i = offset; i < end; i++, pos += stride) bytes.put(pos, (byte) toLong(sampleBuffer[i]));
+                    break;
+                case 2:
+                    for (int i = offset; i < end; i++, pos += stride) bytes.putShort(pos, (short) toLong(sampleBuffer[i]));
+                    break;
+                case 3:
+                    for (int i = offset; i < end; i++, pos += stride) putInt24(bytes, pos, (int) toLong(sampleBuffer[i]));
+                    break;
+                case 4:
+                    for (int i = offset; i < end; i++, pos += stride) bytes.putInt(pos, (int) toLong(sampleBuffer[i]));
+                    break;
+                default:
+                    for (int i = offset; i < end; i++, pos += stride) putLong(bytes, pos, toLong(sampleBuffer[i]));
+                    break;
+            }
+        }
+
+        public void close() throws IOException
+        {
+// Close the input stream and set to null
+            if (iStream != null)
+            {
+                iStream.close();
+                iStream = null;
+            }
+
+            if (oStream != null)
+            {
+// Write out anything still in the local buffer
+                flushFrames();
+
+// If an extra byte is required for word alignment, add it to the end
+                if (streaming) patchStreamingHeader();
+                else if (wordAlignAdjust) oStream.write(0);
+
+// Close the stream and set to null
+                oStream.close();
+                oStream = null;
+            }
+
+// Flag that the stream is closed
+            ioState = IOState.CLOSED;
+        }
+
+        // Word align the data chunk of a streamed file and patch the chunk sizes in its header, as RF64 if they
+        // do not fit in 32 bits
+        private void patchStreamingHeader() throws IOException
+        {
+            long dataChunkSize = frameCounter * blockAlign;
+            if (dataChunkSize % 2 == 1) oStream.write(0);
+            long riffChunkSize = dataOffset - 8 + dataChunkSize + dataChunkSize % 2;
+
+            FileChannel channel = oStream.getChannel();
+            if (riffChunkSize <= MAX_CHUNK_SIZE)
+            {
+                writeLE(channel, 4, riffChunkSize, 4);
+                writeLE(channel, dataOffset - 4, dataChunkSize, 4);
+            }
+            else
+            {
+                ByteBuffer ds64 = ByteBuffer.allocate(8 + DS64_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                ds64.putInt(DS64_CHUNK_ID).putInt(DS64_SIZE);
+                ds64.putLong(riffChunkSize).putLong(dataChunkSize).putLong(frameCounter).putInt(0);
+                ds64.flip();
+                while (ds64.hasRemaining()) channel.write(ds64, 12 + ds64.position());
+                writeLE(channel, 0, RF64_CHUNK_ID, 4);
+                writeLE(channel, 4, MAX_CHUNK_SIZE, 4);
+                writeLE(channel, dataOffset - 4, MAX_CHUNK_SIZE, 4);
+            }
+            numFrames = frameCounter;
+        }
+
+        private static void writeLE(FileChannel channel, long position, long val, int numBytes) throws IOException
+        {
+            ByteBuffer bytes = ByteBuffer.allocate(numBytes);
+            putLE(val, bytes.array(), 0, numBytes);
+            while (bytes.hasRemaining()) channel.write(bytes, position + bytes.position());
+        }
+
+        public void display()
+        {
+            display(System.out);
+        }
+
+        public void display(PrintStream out)
+        {
+            out.printf("File: %s\n", file);
+            out.printf("Channels: %d, Frames: %d\n", numChannels, numFrames);
+            out.printf("IO State: %s\n", ioState);
+            out.printf("Sample Rate: %d, Block Align: %d\n", sampleRate, blockAlign);
+            out.printf("Valid Bits: %d, Bytes per sample: %d\n", validBits, bytesPerSample);
+        }
+
+        public static void main(String[] args)
+        {
+            if (args.length < 1)
+            {
+                System.err.println("Must supply filename");
+                System.exit(1);
+            }
+
+            try
+            {
+                for (String filename : args)
+                {
+                    WavFile readWavFile = openWavFile(new File(filename));
+                    readWavFile.display();
+
+                    long numFrames = readWavFile.getNumFrames();
+                    int numChannels = readWavFile.getNumChannels();
+                    int validBits = readWavFile.getValidBits();
+                    long sampleRate = readWavFile.getSampleRate();
+
+                    WavFile writeWavFile = newWavFile(new File("out.wav"), numChannels, numFrames, validBits, sampleRate);
+
+                    final int BUF_SIZE = 5001;
+
+//                  int[] buffer = new int[BUF_SIZE * numChannels];
+//                  long[] buffer = new long[BUF_SIZE * numChannels];
+                    double[] buffer = new double[BUF_SIZE * numChannels];
+
+                    int framesRead = 0;
+                    int framesWritten = 0;
+
+                    do
+                    {
+                        framesRead = readWavFile.readFrames(buffer, BUF_SIZE);
+                        framesWritten = writeWavFile.writeFrames(buffer, BUF_SIZE);
+                        System.out.printf("%d %d\n", framesRead, framesWritten);
+                    }
+                    while (framesRead != 0);
+
+                    readWavFile.close();
+                    writeWavFile.close();
+                }
+
+                WavFile writeWavFile = newWavFile(new File("out2.wav"), 1, 10, 23, 44100);
+                double[] buffer = new double[10];
+                writeWavFile.writeFrames(buffer, 10);
+                writeWavFile.close();
+            }
+            catch (Exception e)
+            {
+                System.err.println(e);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static class WavFileException extends Exception
+    {
+        /**
+         *
+         */
+        private static final long serialVersionUID = 8236151366330602556L;
+
+        public WavFileException()
+        {
+            super();
+        }
+
+        public WavFileException(String message)
+        {
+            super(message);
+        }
+
+        public WavFileException(String message, Throwable cause)
+        {
+            super(message, cause);
+        }
+
+        public WavFileException(Throwable cause)
+        {
+            super(cause);
+        }
+    }
+
+//import java.io.*;
+/*
+public static class ReadExample
+{
+public static void main(String[] args)
+{
+try
+{
+// Open the wav file specified as the first argument
+WavFile wavFile = WavFile.openWavFile(new File(args[0]));
+
+// Display information about the wav file
+wavFile.display();
+
+// Get the number of audio channels in the wav file
+int numChannels = wavFile.getNumChannels();
+
+// Create a buffer of 100 frames
+double[] buffer = new double[100 * numChannels];
+
+int framesRead;
+double min = Double.MAX_VALUE;
+double max = Double.MIN_VALUE;
+
+do
+{
+// Read frames into buffer
+framesRead = wavFile.readFrames(buffer, 100);
+
+// Loop through frames and look for minimum and maximum value
+for (int s=0 ; s<framesRead * numChannels ; s++)
+{
+if (buffer[s] > max) max = buffer[s];
+if (buffer[s] < min) min = buffer[s];
+}
+}
+while (framesRead != 0);
+
+// Close the wavFile
+wavFile.close();
+
+// Output the minimum and maximum value
+System.out.printf("Min: %f, Max: %f\n", min, max);
+}
+catch (Exception e)
+{
+System.err.println(e);
+}
+}
+}
+
+//import java.io.*;
+
+
+public static class WriteExample
+{
+public static void main(String[] args)
+{
+try
+{
+int sampleRate = 44100;     // Samples per second
+double duration = 5.0;      // Seconds
+
+// Calculate the number of frames required for specified duration
+long numFrames = (long)(duration * sampleRate);
+
+// Create a wav file with the name specified as the first argument
+WavFile wavFile = WavFile.newWavFile(new File(args[0]), 2, numFrames, 16, sampleRate);
+
+// Create a buffer of 100 frames
+double[][] buffer = new double[2][100];
+
+// Initialise a local frame counter
+long frameCounter = 0;
+
+// Loop until all frames written
+while (frameCounter < numFrames)
+{
+// Determine how many frames to write, up to a maximum of the buffer size
+long remaining = wavFile.getFramesRemaining();
+int toWrite = (remaining > 100) ? 100 : (int) remaining;
+
+// Fill the buffer, one tone per channel
+for (int s=0 ; s<toWrite ; s++, frameCounter++)
+{
+buffer[0][s] = Math.sin(2.0 * Math.PI * 400 * frameCounter / sampleRate);
+buffer[1][s] = Math.sin(2.0 * Math.PI * 500 * frameCounter / sampleRate);
+}
+
+// Write the buffer
+wavFile.writeFrames(buffer, toWrite);
+}
+
+// Close the wavFile
+wavFile.close();
+}
+catch (Exception e)
+{
+System.err.println(e);
+}
+}
+}
+*/
+
+};
@@ -0,0 +1,130 @@
+package com.treeapps.audiorecorder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Opening a session and editing must not scan the audio. The bytes the process reads are taken from
+ * /proc/self/io, so the test only runs on Linux.
+ */
+public class AudioSampleLengthTest {
+
+    private static final File PROC_SELF_IO = new File("/proc/self/io");
+    private static final long LARGE_SIZE_IN_BYTES = 256L * 1024 * 1024 + 1; // Odd, the last byte is no sample
+    private static final long MAX_BYTES_READ = 1024 * 1024;
+
+    private File fileWorkFolder;
+    private AudioLib audioLib;
+
+    @Before
+    public void setUp() throws IOException {
+        fileWorkFolder = File.createTempFile("audiolib", "");
+        fileWorkFolder.delete();
+        fileWorkFolder.mkdirs();
+        audioLib = new AudioLib(fileWorkFolder.getPath());
+    }
+
+    @After
+    public void tearDown() {
+        deleteFolder(fileWorkFolder);
+    }
+
+    @Test
+    public void testLengthWithoutReading() throws IOException {
+        assumeTrue(PROC_SELF_IO.canRead());
+
+        // Same calls on small files first, so that class loading does not count
+        openAndEdit(1001);
+
+        long lngBytesReadBefore = getBytesRead();
+        openAndEdit(LARGE_SIZE_IN_BYTES);
+        long lngBytesRead = getBytesRead() - lngBytesReadBefore;
+
+        assertTrue("Read " + lngBytesRead + " bytes", lngBytesRead < MAX_BYTES_READ);
+    }
+
+    /**
+     * Open the current and insert samples on sparse files, as on session start, then do the edits
+     * of a recording session
+     * @param lngSizeInBytes
+     * @throws IOException
+     */
+    private void openAndEdit(long lngSizeInBytes) throws IOException {
+        createSparseFile(new File(fileWorkFolder, "audio/audiocurrent.pcm"), lngSizeInBytes);
+        createSparseFile(new File(fileWorkFolder, "audio/audioinsert.pcm"), 200);
+        AudioLib.AudioSample audioSampleCurrent = audioLib.new AudioSample("audiocurrent");
+        AudioLib.AudioSample audioSampleInsert = audioLib.new AudioSample("audioinsert");
+        assertEquals(lngSizeInBytes / 2, audioSampleCurrent.lngSizePcmInShorts);
+        assertEquals(100, audioSampleInsert.lngSizePcmInShorts);
+
+        long lngSize = audioSampleCurrent.getSizeInBytes();
+        audioSampleCurrent.replaceRange(lngSize / 4, lngSize / 2, audioSampleInsert);
+        audioSampleCurrent.deleteRange(0, 200);
+        audioSampleCurrent.insert(0, audioSampleInsert);
+
+        AudioLib.AudioSample audioSampleEdit = audioLib.new AudioSample("audioedit", audioSampleCurrent);
+        audioSampleEdit.trimLeft(lngSize / 4);
+        audioSampleEdit.trimRight(lngSize / 8);
+        ArrayList<AudioLib.AudioSample> audioSamples = new ArrayList<AudioLib.AudioSample>();
+        audioSamples.add(audioSampleEdit);
+        audioSamples.add(audioSampleInsert);
+        audioSampleEdit.mergeInto(audioSamples);
+        audioSampleEdit.clear();
+
+        audioSampleCurrent.deleteRange(audioSampleCurrent.getSizeInBytes() - 200, audioSampleCurrent.getSizeInBytes());
+        audioLib.deleteUnusedPieceFiles(audioSampleCurrent, audioSampleInsert);
+        assertEquals((lngSize / 4) * 3, audioSampleCurrent.getSizeInBytes());
+    }
+
+    private static void createSparseFile(File file, long lngSizeInBytes) throws IOException {
+        file.delete();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            PcmFormat.writeHeader(raf.getChannel());
+            raf.setLength(PcmFormat.HEADER_SIZE + lngSizeInBytes);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static long getBytesRead() throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(PROC_SELF_IO));
+        try {
+            String strLine;
+            while ((strLine = reader.readLine()) != null) {
+                if (strLine.startsWith("rchar:")) {
+                    return Long.parseLong(strLine.substring(6).trim());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        throw new IOException("No rchar in " + PROC_SELF_IO);
+    }
+
+    private static void deleteFolder(File fileFolder) {
+        File[] files = fileFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteFolder(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        fileFolder.delete();
+    }
+}
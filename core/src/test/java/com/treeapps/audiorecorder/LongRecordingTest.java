@@ -0,0 +1,236 @@
+package com.treeapps.audiorecorder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 8 hour recordings at 44.1 kHz, past the 2 GB of an int byte offset and, in stereo 24 bit, past the 4 GB of
+ * a RIFF size. The files are sparse with a few marker samples written, so nothing is held in memory and
+ * hardly anything is written to disk.
+ */
+public class LongRecordingTest {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final long FRAME_AMOUNT = 8L * 3600 * SAMPLE_RATE;
+    private static final short MARKER = 12345;
+
+    private File fileWorkFolder;
+    private AudioLib audioLib;
+
+    @Before
+    public void setUp() throws IOException {
+        fileWorkFolder = File.createTempFile("audiolib", "");
+        fileWorkFolder.delete();
+        fileWorkFolder.mkdirs();
+        audioLib = new AudioLib(fileWorkFolder.getPath());
+    }
+
+    @After
+    public void tearDown() {
+        deleteFolder(fileWorkFolder);
+    }
+
+    @Test
+    public void testEightHourSample() throws IOException {
+        long[] lngMarkers = {0, Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2 + 1, FRAME_AMOUNT - 1};
+        File filePcm = new File(fileWorkFolder, "audio/audiocurrent.pcm");
+        RandomAccessFile raf = new RandomAccessFile(filePcm, "rw");
+        try {
+            PcmFormat.writeHeader(raf.getChannel());
+            raf.setLength(PcmFormat.HEADER_SIZE + FRAME_AMOUNT * 2);
+            for (long lngMarker : lngMarkers) {
+                writeMarker(raf.getChannel(), PcmFormat.HEADER_SIZE + lngMarker * 2);
+            }
+        } finally {
+            raf.close();
+        }
+
+        AudioLib.AudioSample audioSample = audioLib.new AudioSample("audiocurrent");
+        assertEquals(FRAME_AMOUNT, audioSample.lngSizePcmInShorts);
+        for (long lngMarker : lngMarkers) {
+            assertEquals(MARKER, readShort(audioSample, lngMarker));
+        }
+
+        // Cut the first 4 hours, the markers behind them move to the front
+        audioSample.deleteRange(0, FRAME_AMOUNT);
+        assertEquals(FRAME_AMOUNT / 2, audioSample.lngSizePcmInShorts);
+        assertEquals(0, readShort(audioSample, 0));
+        assertEquals(MARKER, readShort(audioSample, lngMarkers[1] - FRAME_AMOUNT / 2));
+        assertEquals(MARKER, readShort(audioSample, lngMarkers[2] - FRAME_AMOUNT / 2));
+        assertEquals(MARKER, readShort(audioSample, FRAME_AMOUNT / 2 - 1));
+    }
+
+    @Test
+    public void testEightHourStereoWavIsRf64() throws IOException, Wave.WavFileException {
+        File fileWav = new File(fileWorkFolder, "stereo.wav");
+        Wave.WavFile.newWavFile(fileWav, 2, FRAME_AMOUNT, 24, SAMPLE_RATE).close();
+        long lngDataOffset;
+        RandomAccessFile raf = new RandomAccessFile(fileWav, "rw");
+        try {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            raf.getChannel().read(header, 0);
+            assertEquals("RF64", new String(header.array(), "US-ASCII"));
+            lngDataOffset = raf.length();
+            raf.setLength(lngDataOffset + FRAME_AMOUNT * 6);
+            writeMarker(raf.getChannel(), lngDataOffset + (FRAME_AMOUNT - 1) * 6 + 3); // Right channel of the last frame
+        } finally {
+            raf.close();
+        }
+
+        Wave.WavFile wavFile = Wave.WavFile.openWavFile(fileWav);
+        try {
+            assertEquals(FRAME_AMOUNT, wavFile.getNumFrames());
+            assertEquals(lngDataOffset, wavFile.getDataOffset());
+            short[] sampleBuffer = new short[4];
+            assertEquals(1, wavFile.readFrames(FRAME_AMOUNT - 1, sampleBuffer, 2));
+            assertEquals(0, sampleBuffer[0]);
+            assertEquals(MARKER, sampleBuffer[1]);
+            wavFile.seek(FRAME_AMOUNT - 1);
+            assertEquals(1, wavFile.readFrames(sampleBuffer, 2));
+            assertEquals(MARKER, sampleBuffer[1]);
+        } finally {
+            wavFile.close();
+        }
+    }
+
+    @Test
+    public void testContainerPast4GbIsRf64() throws IOException, Wave.WavFileException {
+        long lngDataLengthInBytes = 5L * 1024 * 1024 * 1024;
+        File fileContainer = new File(fileWorkFolder, "audio/audiocurrent.wav");
+        RandomAccessFile raf = new RandomAccessFile(fileContainer, "rw");
+        try {
+            raf.setLength(WavContainer.HEADER_SIZE + lngDataLengthInBytes);
+            writeMarker(raf.getChannel(), WavContainer.HEADER_SIZE + lngDataLengthInBytes - 2);
+        } finally {
+            raf.close();
+        }
+        WavContainer.patchHeader(fileContainer, SAMPLE_RATE);
+        assertEquals(SAMPLE_RATE, WavContainer.readSampleRate(fileContainer));
+
+        Wave.WavFile wavFile = Wave.WavFile.openWavFile(fileContainer);
+        try {
+            assertEquals(lngDataLengthInBytes / 2, wavFile.getNumFrames());
+            assertEquals(WavContainer.HEADER_SIZE, wavFile.getDataOffset());
+            short[] sampleBuffer = new short[1];
+            assertEquals(1, wavFile.readFrames(lngDataLengthInBytes / 2 - 1, sampleBuffer, 1));
+            assertEquals(MARKER, sampleBuffer[0]);
+        } finally {
+            wavFile.close();
+        }
+
+        AudioLib.AudioSample audioSample = audioLib.new AudioSample("audiocurrent", true);
+        assertEquals(lngDataLengthInBytes / 2, audioSample.lngSizePcmInShorts);
+        assertEquals(MARKER, readShort(audioSample, lngDataLengthInBytes / 2 - 1));
+    }
+
+    @Test
+    public void testWave64RoundTrip() throws IOException, Wave.WavFileException {
+        // Sony Wave64, with a format chunk of 18 bytes and an unknown chunk of 5 ahead of the data, both padded to 8
+        short[] samples = {1, -1, MARKER, -MARKER, Short.MAX_VALUE, Short.MIN_VALUE};
+        ByteBuffer bytes = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+        putW64ChunkHeader(bytes, "riff", W64_RIFF_GUID_SUFFIX, 0);
+        putW64Guid(bytes, "wave", W64_GUID_SUFFIX);
+        putW64ChunkHeader(bytes, "fmt ", W64_GUID_SUFFIX, 18);
+        bytes.putShort((short) 1).putShort((short) 2).putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * 4).putShort((short) 4).putShort((short) 16);
+        bytes.putShort((short) 0).putShort((short) 0).putInt(0); // cbSize, then padding
+        putW64ChunkHeader(bytes, "junk", new byte[12], 5);
+        bytes.put(new byte[8]);
+        long lngDataOffset = bytes.position() + 24;
+        putW64ChunkHeader(bytes, "data", W64_GUID_SUFFIX, samples.length * 2);
+        for (short sample : samples) {
+            bytes.putShort(sample);
+        }
+        bytes.putLong(16, bytes.position()); // Size of the whole file
+        bytes.flip();
+        File fileW64 = new File(fileWorkFolder, "stereo.w64");
+        RandomAccessFile raf = new RandomAccessFile(fileW64, "rw");
+        try {
+            while (bytes.hasRemaining()) {
+                raf.getChannel().write(bytes);
+            }
+        } finally {
+            raf.close();
+        }
+
+        Wave.WavFile wavFile = Wave.WavFile.openWavFile(fileW64);
+        try {
+            assertEquals(2, wavFile.getNumChannels());
+            assertEquals(SAMPLE_RATE, wavFile.getSampleRate());
+            assertEquals(samples.length / 2, wavFile.getNumFrames());
+            assertEquals(lngDataOffset, wavFile.getDataOffset());
+            short[] sampleBuffer = new short[samples.length];
+            assertEquals(samples.length / 2, wavFile.readFrames(sampleBuffer, samples.length / 2));
+            for (int i = 0; i < samples.length; i++) {
+                assertEquals(samples[i], sampleBuffer[i]);
+            }
+        } finally {
+            wavFile.close();
+        }
+    }
+
+    private static final byte[] W64_RIFF_GUID_SUFFIX = {(byte) 0x2E, (byte) 0x91, (byte) 0xCF, (byte) 0x11, (byte) 0xA5, (byte) 0xD6,
+            (byte) 0x28, (byte) 0xDB, (byte) 0x04, (byte) 0xC1, (byte) 0x00, (byte) 0x00};
+    private static final byte[] W64_GUID_SUFFIX = {(byte) 0xF3, (byte) 0xAC, (byte) 0xD3, (byte) 0x11, (byte) 0x8C, (byte) 0xD1,
+            (byte) 0x00, (byte) 0xC0, (byte) 0x4F, (byte) 0x8E, (byte) 0xDB, (byte) 0x8A};
+
+    private static void putW64Guid(ByteBuffer bytes, String strId, byte[] guidSuffix) throws IOException {
+        bytes.put(strId.getBytes("US-ASCII"));
+        bytes.put(guidSuffix);
+    }
+
+    /**
+     * A chunk header of a GUID and a 64 bit size that includes the header
+     */
+    private static void putW64ChunkHeader(ByteBuffer bytes, String strId, byte[] guidSuffix, long lngBodySize) throws IOException {
+        putW64Guid(bytes, strId, guidSuffix);
+        bytes.putLong(24 + lngBodySize);
+    }
+
+    /**
+     * Write the marker as a little endian short. Reading 24 bit samples into shorts keeps their low 16 bits,
+     * so the same marker works there.
+     */
+    private static void writeMarker(FileChannel channel, long lngPosition) throws IOException {
+        ByteBuffer marker = ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN);
+        marker.putShort(MARKER);
+        marker.flip();
+        while (marker.hasRemaining()) {
+            channel.write(marker, lngPosition + marker.position());
+        }
+    }
+
+    private static short readShort(AudioLib.AudioSample audioSample, long lngShort) throws IOException {
+        PcmReader pcmReader = audioSample.openReader();
+        try {
+            short[] audioData = new short[1];
+            assertEquals(1, pcmReader.read(lngShort, audioData, 0, 1));
+            return audioData[0];
+        } finally {
+            pcmReader.close();
+        }
+    }
+
+    private static void deleteFolder(File fileFolder) {
+        File[] files = fileFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteFolder(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        fileFolder.delete();
+    }
+}